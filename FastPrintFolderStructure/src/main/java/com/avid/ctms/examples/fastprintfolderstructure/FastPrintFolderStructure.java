@@ -1,16 +1,24 @@
 package com.avid.ctms.examples.fastprintfolderstructure;
 
 import java.net.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
 import java.util.Formatter;
 import java.util.logging.*;
 
-import com.avid.ctms.examples.tools.common.AuthorizationResponse;
-import com.avid.ctms.examples.tools.common.ItemInfo;
+import com.avid.ctms.examples.tools.common.CollectionPageReader;
+import com.avid.ctms.examples.tools.common.CompactItemInfo;
+import com.avid.ctms.examples.tools.common.PlatformStartup;
 import com.avid.ctms.examples.tools.common.PlatformTools;
+import com.avid.ctms.examples.tools.common.jfr.FolderTraversalEvent;
+import com.avid.ctms.examples.tools.common.jfr.PageFetchEvent;
+import com.avid.ctms.examples.tools.common.progress.CrawlProgress;
+import com.avid.ctms.examples.tools.common.progress.ProgressReporter;
+import com.avid.ctms.examples.tools.common.transport.TransferCounters;
 import kong.unirest.HttpResponse;
 import kong.unirest.Unirest;
-import kong.unirest.json.*;
 
 
 /**
@@ -23,14 +31,47 @@ import kong.unirest.json.*;
 
 /**
  * This example traverses the structure of the folder tree (location structure) with embedded resources and prints the
- * results to stdout.
+ * results to stdout. The progress of the traversal is reported to stderr periodically and, optionally, written as time
+ * series to a CSV file.
  */
 public class FastPrintFolderStructure {
     private static final Logger LOG = Logger.getLogger(FastPrintFolderStructure.class.getName());
 
+    /**
+     * Only name, depth and the presence of children are printed, so the attributes of the items are not read. All
+     * items are kept until the traversal has ended, so the compact item representation is used.
+     */
+    private static final CollectionPageReader<CompactItemInfo> PAGE_READER = CompactItemInfo.reader(false);
+
+    private static final Duration PROGRESS_INTERVAL = Duration.ofSeconds(5);
+
     private FastPrintFolderStructure() {
     }
 
+    /**
+     * Gets a page of a folder.
+     *
+     * @param pageURL  the URL of the page
+     * @param depth    the depth of the folder
+     * @param itemPage receives the items of the page
+     * @return the response
+     */
+    private static HttpResponse<CollectionPageReader.Page<CompactItemInfo>> fetchPage(String pageURL, int depth, Collection<CompactItemInfo> itemPage) {
+        final PageFetchEvent event = new PageFetchEvent();
+        event.begin();
+        event.url = pageURL;
+        final int itemsBefore = itemPage.size();
+        try {
+            final HttpResponse<CollectionPageReader.Page<CompactItemInfo>> response
+                    = Unirest.get(pageURL).asObject(PAGE_READER.bodyHandler(depth, itemPage::add));
+            event.status = response.getStatus();
+            return response;
+        } finally {
+            event.items = itemPage.size() - itemsBefore;
+            event.commit();
+        }
+    }
+
     /**
      * Traverses the structure of the folder tree (location structure) with embedded resources and collects the results
      * in the passed list.
@@ -38,125 +79,105 @@ public class FastPrintFolderStructure {
      * @param rootItem the URL to start traversal from
      * @param results  the list, in which the results of traversal will be collected !!will be modified!!
      * @param depth    the depth of the traversal
+     * @param progress counts the traversed folders, pages and items, the root item must have been counted as queued
      */
-    private static void traverse(ItemInfo rootItem, List<ItemInfo> results, int depth) throws Exception {
-        final Collection<ItemInfo> children = new ArrayList<>();
-        final URL itemURL = rootItem.href; //new URL(rootItem.href.replace(" ", "%20"));
-
+    private static void traverse(CompactItemInfo rootItem, List<CompactItemInfo> results, int depth, CrawlProgress progress) throws Exception {
+        progress.folderStarted(depth);
+        final Collection<CompactItemInfo> children = new ArrayList<>();
+        final String itemURL = rootItem.href; //rootItem.href.replace(" ", "%20");
 
+        final FolderTraversalEvent folderEvent = new FolderTraversalEvent();
+        folderEvent.begin();
+        folderEvent.url = itemURL;
+        folderEvent.depth = depth;
 
-        final HttpResponse<String> response = Unirest.get(itemURL.toString()).asString();
+        final Collection<CompactItemInfo> itemPage = new ArrayList<>();
+        final HttpResponse<CollectionPageReader.Page<CompactItemInfo>> response = fetchPage(itemURL, depth, itemPage);
 
         final int itemStatus = response.getStatus();
+        folderEvent.status = itemStatus;
         if (HttpURLConnection.HTTP_OK == itemStatus) {
-            final String rawItemPageResults = response.getBody();
-            final JSONObject itemResult = new JSONObject(rawItemPageResults);
-            final ItemInfo newItem = new ItemInfo(itemResult, depth);
-            results.add(newItem);
-            /**/ System.out.printf("%s <%s>%n", newItem, newItem.href);
+            CollectionPageReader.Page<CompactItemInfo> page = response.getBody();
+            final CompactItemInfo newItem = page.getSelf();
+            if (null != newItem) {
+                results.add(newItem);
+                /**/ System.out.printf("%s <%s>%n", newItem, newItem.href);
+            }
 
+            // The item to traverse is a folder, get the items of the folder pagewise:
+            while (null != page) {
+                progress.pageRead(itemPage.size());
+                ++folderEvent.pages;
+                children.addAll(itemPage);
+
+//                if (itemPage.stream().anyMatch(it -> null != it.id && it.id.contains("1130.11354"))) {
+//                    break;
+//                }
+                if (itemPage.stream().anyMatch(it -> null != it.name && it.name.contains("Draft"))) {
+                    break;
+                }
 
-            final JSONObject embedded = (JSONObject) itemResult.opt("_embedded");
-            JSONObject collection = null;
-            if (null != embedded) {
-                collection = (JSONObject) embedded.opt("loc:collection");
+                final String linkToNextPage = page.getNext();
+                if (null != linkToNextPage) {
+                    itemPage.clear();
+                    final HttpResponse<CollectionPageReader.Page<CompactItemInfo>> nextPage
+                            = fetchPage(linkToNextPage.replace(" ", "%20"), depth, itemPage);
+                    page = HttpURLConnection.HTTP_OK == nextPage.getStatus() ? nextPage.getBody() : null;
+                } else {
+                    page = null;
+                }
             }
-            // The item to traverse is a folder:
-            if (null != collection) {
-                // Get the items of the folder pagewise:
-                JSONObject embeddedItems = (JSONObject) collection.opt("_embedded");
-                if (null != embeddedItems) {
-                    do {
-                        final Object itemsObject = embeddedItems.opt("loc:item");
-                        if (null != itemsObject) {
-                            if (itemsObject instanceof JSONArray) {
-                                final JSONArray items = (JSONArray) itemsObject;
-
-                                final Collection<ItemInfo> itemPage = new ArrayList<>(items.length());
-                                for (final Object item : items) {
-                                    final JSONObject folderItem = (JSONObject) item;
-                                    itemPage.add(new ItemInfo(folderItem, depth + 1));
-                                }
-                                children.addAll(itemPage);
-
-//                                if (itemPage.stream().anyMatch(it -> null != it.id && it.id.contains("1130.11354"))) {
-//                                    break;
-//                                }
-                                if (itemPage.stream().anyMatch(it -> null != it.name && it.name.contains("Draft"))) {
-                                    break;
-                                }
-                            } else {
-                                children.add(new ItemInfo((JSONObject) itemsObject, depth + 1));
-                            }
-                        }
 
-                        final JSONObject linkToNextPage = (JSONObject) collection.getJSONObject("_links").opt("next");
-                        if (null != linkToNextPage) {
-
-                            final HttpResponse<String> page = Unirest.get(linkToNextPage.getString("href").replace(" ", "%20")).asString();
-                            final int itemNextPageStatus = page.getStatus();
-                            if (HttpURLConnection.HTTP_OK == itemNextPageStatus) {
-                                final String rawNextItemPageResults = page.getBody();
-                                collection = new JSONObject(rawNextItemPageResults);
-                                embeddedItems = (JSONObject) collection.opt("_embedded");
-                            } else {
-                                collection = null;
-                            }
-                        } else {
-                            collection = null;
-                        }
-                    } while (null != collection && null != embeddedItems);
+            for (final CompactItemInfo item : children) {
+                if (item.hasChildren) {
+                    progress.folderQueued(depth + 1);
                 }
             }
+            progress.folderDone(depth);
+            folderEvent.items = children.size();
+            folderEvent.commit();
 
-            //for (final ItemInfo item : children.stream().filter(it -> null != it.name && it.name.contains("Personal")).toArray(ItemInfo[]::new)) {
-            for (final ItemInfo item : children) {
+            //for (final CompactItemInfo item : children.stream().filter(it -> null != it.name && it.name.contains("Personal")).toArray(CompactItemInfo[]::new)) {
+            for (final CompactItemInfo item : children) {
                 if (item.hasChildren) {
-                    traverse(item, results, depth + 1);
+                    traverse(item, results, depth + 1, progress);
                 }
             }
 
-            for (final ItemInfo item : children) {
+            for (final CompactItemInfo item : children) {
                 if (!item.hasChildren) {
                     results.add(item);
                     /**/ System.out.printf("%s <%s>%n", item, item.href);
                 }
             }
         } else {
+            progress.folderDone(depth);
+            folderEvent.commit();
             final String message = response.getStatusText();
             LOG.log(Level.INFO, "Get item failed for item <{0}>. -> {1}", new Object[] {itemURL, message});
         }
     }
 
     public static void main(String[] args) throws Exception {
-        if (5 != args.length) {
-            LOG.log(Level.INFO, "Usage: {0} <apidomain> <httpbasicauthstring> <servicetype> <serviceversion> <realm>", FastPrintFolderStructure.class.getSimpleName());
+        if (5 != args.length && 6 != args.length) {
+            LOG.log(Level.INFO, "Usage: {0} <apidomain> <httpbasicauthstring> <servicetype> <serviceversion> <realm> [progresstimeseriesfile]", FastPrintFolderStructure.class.getSimpleName());
         } else {
             final String apiDomain = args[0];
             final String httpBasicAuthString = args[1];
             final String serviceType = args[2];
             final String serviceVersion = args[3];
             final String realm = args[4];
+            final Path progressTimeSeriesFile = 6 == args.length ? Paths.get(args[5]) : null;
 
-            final AuthorizationResponse authorizationResponse = PlatformTools.authorize(apiDomain, httpBasicAuthString);
-            if (authorizationResponse.getLoginResponse().map(HttpResponse::isSuccess).orElse(false)) {
+            /// Authorize, query CTMS Registry and get the root folder item with maximum overlap:
+            final String registryServiceVersion = "0";
+            final PlatformStartup.Target target = new PlatformStartup.Target(serviceType, serviceVersion, realm);
+            final PlatformStartup.Result startup = PlatformStartup.start(apiDomain, httpBasicAuthString, registryServiceVersion, Collections.singletonList(target));
+            if (startup.isAuthorized()) {
                 try {
-                    /// Query CTMS Registry:
-                    final String registryServiceVersion = "0";
-                    final String defaultLocationsUriTemplate = String.format("https://%s/apis/%s;version=%s;realm=%s/locations", apiDomain, serviceType, serviceVersion, realm);
-                    final List<String> locationsUriTemplates = PlatformTools.findInRegistry(apiDomain, Collections.singletonList(serviceType), registryServiceVersion, "loc:locations", defaultLocationsUriTemplate);
-
-                    /// Check presence of the locations resource and continue with HATEOAS:
-                    final String urlLocation = locationsUriTemplates.stream().filter(it -> it.contains(realm)).findFirst().get();
-                    final HttpResponse<String> response = Unirest.get(urlLocation).asString();
-
-                    final int locationsStatus = response.getStatus();
-                    if (HttpURLConnection.HTTP_OK == locationsStatus) {
-                        /// Get the root folder item:
-                        final String rawLocationsResults = response.getBody();
-                        final JSONObject locationsResults = new JSONObject(rawLocationsResults);
-                        final String urlRootItem = locationsResults.getJSONObject("_links").getJSONObject("loc:root-item").getString("href");
-
+                    final Optional<String> urlRootItem = startup.getRootItemURL(target);
+                    if (urlRootItem.isPresent()) {
+                        LOG.log(Level.INFO, "time to root item: {0} ms", startup.getReport().getCriticalPathMillis());
 
                         // !!
                         // The MAM Connectivity Toolkit Connector does always embed all direct items of a folder. For other
@@ -166,23 +187,31 @@ public class FastPrintFolderStructure {
 
                         //https://kl-sm-ics/apis/avid.mam.assets.access;version=9999;realm=18046458-EE19-4F42-80F3-47C8A977C688/locations/items/1131?offset=0&limit=100
                         //final ItemInfo rootItem = new ItemInfo(null, null, 0, new URL(urlRootItem/*+"/25"?filter=item-type-folder"*/), true);
-                        final ItemInfo rootItem = new ItemInfo(null, null, 0, new URL(urlRootItem), true);
+                        final CompactItemInfo rootItem = new CompactItemInfo(null, null, 0, urlRootItem.get(), true);
 
 
-                        final List<ItemInfo> results = new ArrayList<>();
+                        final List<CompactItemInfo> results = new ArrayList<>();
                         /// Traverse the folder tree and collect the results in the passed list:
                         final long then = System.currentTimeMillis();
-                        traverse(rootItem, results, 0);
+                        final CrawlProgress progress = new CrawlProgress();
+                        progress.folderQueued(0);
+                        final ProgressReporter progressReporter = new ProgressReporter(progress, PROGRESS_INTERVAL, System.err, progressTimeSeriesFile);
+                        try {
+                            traverse(rootItem, results, 0, progress);
+                        } finally {
+                            progressReporter.close();
+                        }
                         final StringBuilder sb = new StringBuilder();
                         try (final Formatter formatter = new Formatter(sb)) {
-                            for (final ItemInfo item : results) {
+                            for (final CompactItemInfo item : results) {
                                formatter.format("%s <%s>%n", item, item.href);
                             }
                         }
                         final long took = System.currentTimeMillis() - then;
                         LOG.log(Level.INFO, "{0}elapsed: {1}", new Object[] {sb, took});
+                        LOG.log(Level.INFO, "transfer: {0}", TransferCounters.SHARED);
                     } else {
-                        LOG.log(Level.INFO, "Resource <{0}> not found. - {1}", new Object[] {urlLocation, response.getStatusText()});
+                        LOG.log(Level.INFO, "Root item of <{0}> not found.", target);
                     }
                 } catch (final Exception exception) {
                     LOG.log(Level.SEVERE, "failure", exception);
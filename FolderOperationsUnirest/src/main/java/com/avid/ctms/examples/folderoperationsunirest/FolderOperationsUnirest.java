@@ -1,12 +1,24 @@
 package com.avid.ctms.examples.folderoperationsunirest;
 
 import java.net.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.*;
 
 import com.avid.ctms.examples.tools.common.AuthorizationResponse;
+import com.avid.ctms.examples.tools.common.CompactItemInfo;
 import com.avid.ctms.examples.tools.common.ItemInfo;
 import com.avid.ctms.examples.tools.common.PlatformTools;
+import com.avid.ctms.examples.tools.common.folders.BulkFolderOperations;
+import com.avid.ctms.examples.tools.common.folders.DirectoryMirror;
+import com.avid.ctms.examples.tools.common.folders.FolderCommand;
+import com.avid.ctms.examples.tools.common.folders.FolderRef;
+import com.avid.ctms.examples.tools.common.folders.SubtreeDelete;
+import com.avid.ctms.examples.tools.common.locations.ItemByIdResolver;
+import com.avid.ctms.examples.tools.common.locations.PathResolver;
 import kong.unirest.*;
 
 import javax.ws.rs.core.HttpHeaders;
@@ -28,33 +40,49 @@ import javax.ws.rs.core.UriBuilder;
 public class FolderOperationsUnirest {
     private static final Logger LOG = Logger.getLogger(FolderOperationsUnirest.class.getName());
 
+    private static final int BULK_FOLDER_COUNT = 10;
+    private static final int BULK_CONCURRENCY = 8;
+    private static final double BULK_REQUESTS_PER_SECOND = 20;
+    private static final int DELETE_MAX_RETRIES = 3;
+    private static final int PATH_CACHE_SIZE = 10_000;
+    private static final Duration PATH_CACHE_NEGATIVE_TTL = Duration.ofMinutes(1);
+
     private FolderOperationsUnirest() {
     }
 
-    private static void performItemOperations(String locationsURL) {
-        final HttpResponse<JsonNode> locationsResponse =
-                Unirest.get(locationsURL)
-                        .header( HttpHeaders.ACCEPT, "application/hal+json")
-                        .asJson();
-
-        final int locationsStatus = locationsResponse.getStatus();
-        if (HttpURLConnection.HTTP_OK == locationsStatus) {
-            String itemByIDTemplated = locationsResponse.getBody().getObject().getJSONObject("_links").getJSONObject("loc:item-by-id").getString("href");
-
-            itemByIDTemplated = itemByIDTemplated.replace("{id}", "/Catalogs/OneArchive/Admin/Success/");
-
-
-
-
+    private static void performItemOperations(String locationsURL) throws InterruptedException {
+        final Optional<String> itemByIdUriTemplate = ItemByIdResolver.findItemByIdUriTemplate(locationsURL);
+        if (itemByIdUriTemplate.isPresent()) {
+            final ItemByIdResolver itemByIdResolver = new ItemByIdResolver(itemByIdUriTemplate.get(), BULK_CONCURRENCY);
 
+            final String itemId = "/Catalogs/OneArchive/Admin/Success/";
             final HttpResponse<JsonNode> itemByIDResponse =
-                    Unirest.get("https://kl-serenity-mcs/apis/avid.pam;version=9999;realm=3D6B717E-B061-451B-A991-9CBDEA634050/locations/items/%2FCatalogs%2FOneArchive%2FAdmin%2FSuccess%2F")
+                    Unirest.get(itemByIdResolver.hrefOf(itemId))
                             .header( HttpHeaders.ACCEPT, "application/hal+json")
                             .asJson();
 
             final int itemByIDResponseStatus = itemByIDResponse.getStatus();
 
             LOG.log(Level.INFO, "Response status: {0}", itemByIDResponseStatus);
+
+            /// Resolve several ids in one batch:
+            final Map<String, CompactItemInfo> items
+                    = itemByIdResolver.resolveAll(Arrays.asList(itemId, "/Catalogs/OneArchive/Admin/", "/Catalogs/OneArchive/"));
+            for (final Map.Entry<String, CompactItemInfo> item : items.entrySet()) {
+                LOG.log(Level.INFO, "{0} -> {1}", new Object[] {item.getKey(), item.getValue()});
+            }
+
+            /// Resolve paths through a prefix cache, siblings of a listed folder are answered from the cache:
+            final PathResolver pathResolver = new PathResolver(itemByIdResolver, PATH_CACHE_SIZE, PATH_CACHE_NEGATIVE_TTL);
+            try {
+                pathResolver.children("/Catalogs/OneArchive/Admin/").get();
+                for (final String path : Arrays.asList(itemId, "/Catalogs/OneArchive/Admin/Failed/", "/Catalogs/OneArchive/Admin/Failed/Sub/")) {
+                    LOG.log(Level.INFO, "{0} -> {1}", new Object[] {path, pathResolver.resolve(path).get()});
+                }
+            } catch (final ExecutionException exception) {
+                LOG.log(Level.WARNING, "Resolving paths failed: {0}", exception.getCause().toString());
+            }
+            LOG.log(Level.INFO, "Path cache: {0}", pathResolver);
         }
     }
 
@@ -78,7 +106,7 @@ public class FolderOperationsUnirest {
         }
     }
 
-    private static void performFolderOperations(ItemInfo parentItem) {
+    private static void performFolderOperations(ItemInfo parentItem) throws InterruptedException {
         final String now = PlatformTools.nowFormatted().replaceAll("[\\-.:\\s+]", "_");
         final String newFolderName = "Java_Unirest_Example_Folder_" + now;
         final String newFolderDescription = "{\"common\": {\"name\": \"" + newFolderName + "\"}}";
@@ -96,10 +124,12 @@ public class FolderOperationsUnirest {
                 urlCreatedFolder = createFolderResponse.getBody().getObject().getJSONObject("_links").getJSONObject("self").getString("href");
                 renameFolder(urlCreatedFolder, newFolderName + "_REN");
             } finally {
-                final HttpResponse<JsonNode> deleteFolderResponse = Unirest.delete(urlCreatedFolder).asJson();
-                final int code = deleteFolderResponse.getStatus();
-                if (HttpURLConnection.HTTP_NO_CONTENT != code) {
-                    LOG.log(Level.INFO, "Folder deletion, error in resource <{0}>. -> {1}", new Object[] {urlCreatedFolder, deleteFolderResponse.getBody()});
+                // Delete the folder with all folders, which might have been created in it meanwhile:
+                final SubtreeDelete.Result deleteFolderResult
+                        = new SubtreeDelete(BULK_CONCURRENCY, DELETE_MAX_RETRIES)
+                        .delete(urlCreatedFolder, progress -> LOG.log(Level.FINE, "Folder deletion: {0}", progress));
+                if (!deleteFolderResult.isSuccess()) {
+                    LOG.log(Level.INFO, "Folder deletion, error in resource <{0}>. -> {1}", new Object[] {urlCreatedFolder, deleteFolderResult.getFailures()});
                 }
             }
         } else {
@@ -107,15 +137,65 @@ public class FolderOperationsUnirest {
         }
     }
 
+    /**
+     * Creates a small tree of folders below the passed parent folder, renames and finally deletes them as one batch.
+     * The commands are executed concurrently, but each folder is created after its parent and deleted after all
+     * operations on it have completed.
+     */
+    private static void performBulkFolderOperations(ItemInfo parentItem) throws InterruptedException {
+        final String now = PlatformTools.nowFormatted().replaceAll("[\\-.:\\s+]", "_");
+        final FolderRef parent = FolderRef.url(parentItem.href.toString());
+
+        final List<FolderCommand> commands = new ArrayList<>();
+        for (int i = 0; i < BULK_FOLDER_COUNT; ++i) {
+            final String key = "folder" + i;
+            commands.add(FolderCommand.create(key, parent, "Java_Unirest_Example_Folder_" + now + "_" + i));
+            commands.add(FolderCommand.create(key + "/sub", FolderRef.created(key), "Sub_Folder"));
+            commands.add(FolderCommand.rename(FolderRef.created(key), "Java_Unirest_Example_Folder_" + now + "_" + i + "_REN"));
+        }
+        for (int i = 0; i < BULK_FOLDER_COUNT; ++i) {
+            commands.add(FolderCommand.delete(FolderRef.created("folder" + i + "/sub")));
+            commands.add(FolderCommand.delete(FolderRef.created("folder" + i)));
+        }
+
+        final BulkFolderOperations.Report report
+                = new BulkFolderOperations(BULK_CONCURRENCY, BULK_REQUESTS_PER_SECOND)
+                .execute(commands.stream(), outcome -> {
+                    if (!outcome.isSuccess()) {
+                        LOG.log(Level.INFO, "Folder operation failed: {0}", outcome);
+                    }
+                });
+        LOG.log(Level.INFO, "Bulk folder operations: {0}", report);
+    }
+
+    /**
+     * Recreates the directory structure below the passed local directory as folders below the passed parent folder.
+     * Folders, which already exist, are skipped, so that the mirror can be run again to catch up with changes.
+     */
+    private static void mirrorDirectory(Path directory, ItemInfo parentItem) throws Exception {
+        final DirectoryMirror.Result result
+                = new DirectoryMirror(BULK_CONCURRENCY, BULK_REQUESTS_PER_SECOND)
+                .mirror(directory, parentItem.href.toString(), outcome -> {
+                    if (!outcome.isSuccess()) {
+                        LOG.log(Level.INFO, "Folder creation failed: {0}", outcome);
+                    }
+                });
+        for (final String listingFailure : result.getListingFailures()) {
+            LOG.log(Level.INFO, "Folder listing failed: {0}", listingFailure);
+        }
+        LOG.log(Level.INFO, "Mirrored <{0}>: {1}", new Object[] {directory, result});
+    }
+
     public static void main(String[] args) throws Exception {
-        if (5 != args.length) {
-            LOG.log(Level.INFO, "Usage: {0} <apidomain> <httpbasicauthstring> <servicetype> <serviceversion> <realm>", FolderOperationsUnirest.class.getSimpleName());
+        if (5 != args.length && 6 != args.length) {
+            LOG.log(Level.INFO, "Usage: {0} <apidomain> <httpbasicauthstring> <servicetype> <serviceversion> <realm> [localdirectorytomirror]", FolderOperationsUnirest.class.getSimpleName());
         } else {
             final String apiDomain = args[0];
             final String httpBasicAuthString = args[1];
             final String serviceType = args[2];
             final String serviceVersion = args[3];
             final String realm = args[4];
+            final Path directoryToMirror = 6 == args.length ? Paths.get(args[5]) : null;
 
             final AuthorizationResponse authorizationResponse = PlatformTools.authorize(apiDomain, httpBasicAuthString);
             if (authorizationResponse.getLoginResponse().map(HttpResponse::isSuccess).orElse(false)) {
@@ -152,7 +232,11 @@ public class FolderOperationsUnirest {
                         // !!
 
                         final ItemInfo rootItem = new ItemInfo(null, null, 0, itemURL, true);
+                        if (null != directoryToMirror) {
+                            mirrorDirectory(directoryToMirror, rootItem);
+                        }
 //                        performFolderOperations(rootItem);
+//                        performBulkFolderOperations(rootItem);
 
                     } else {
                         LOG.log(Level.INFO, "Resource <{0}> not found. -> {1}", new Object[] {urlLocations, locationsResponse.getBody()});
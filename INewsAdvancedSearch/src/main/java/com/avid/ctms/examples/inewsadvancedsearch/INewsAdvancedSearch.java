@@ -0,0 +1,97 @@
+package com.avid.ctms.examples.inewsadvancedsearch;
+
+import com.avid.ctms.examples.tools.common.AuthorizationResponse;
+import com.avid.ctms.examples.tools.common.PlatformTools;
+import com.avid.ctms.examples.tools.common.search.INewsAdvancedSearchClient;
+import com.avid.ctms.examples.tools.common.search.INewsQuery;
+import com.avid.ctms.examples.tools.common.search.SearchHit;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kong.unirest.HttpResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Copyright 2021 by Avid Technology, Inc.
+ * Project: CTMS
+ */
+
+/**
+ * This example performs an advanced search in the iNews dialect and prints the hits to stdout as they arrive. The
+ * query is read from a description file, which contains the query either as XML or as JSON string literal, e.g.:
+ * <pre>
+ *     "&lt;query version='1.0' firsthit='0' lasthit='99'>&lt;objectclasses />&lt;search>&lt;attribute name='MAINTITLE'>*&lt;/attribute>&lt;/search>&lt;/query>"
+ * </pre>
+ * The hit window of the description is ignored, the hits are requested in windows, which are fetched in parallel.
+ */
+public class INewsAdvancedSearch {
+    private static final Logger LOG = Logger.getLogger(INewsAdvancedSearch.class.getName());
+
+    private static final int WINDOW_SIZE = 100;
+    private static final int PARALLEL_WINDOWS = 4;
+
+    private INewsAdvancedSearch() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (6 != args.length) {
+            LOG.log(Level.INFO, "Usage: {0} <apidomain> <httpbasicauthstring> <servicetype> <serviceversion> <realm> <advancedsearchdescriptionfilename>", INewsAdvancedSearch.class.getSimpleName());
+        } else {
+            final String apiDomain = args[0];
+            final String httpBasicAuthString = args[1];
+            final String serviceType = args[2];
+            final String serviceVersion = args[3];
+            final String realm = args[4];
+            final String advancedSearchDescriptionFilePath = args[5];
+
+            final INewsQuery query = readQuery(advancedSearchDescriptionFilePath);
+
+            final AuthorizationResponse authorizationResponse = PlatformTools.authorize(apiDomain, httpBasicAuthString);
+            if (authorizationResponse.getLoginResponse().map(HttpResponse::isSuccess).orElse(false)) {
+                try {
+                    /// Query CTMS Registry:
+                    final String registryServiceVersion = "0";
+                    final String advancedSearchUrl = INewsAdvancedSearchClient.findUrl(apiDomain, serviceType, serviceVersion, realm, registryServiceVersion);
+
+                    /// Stream the hits window by window:
+                    final INewsAdvancedSearchClient advancedSearch = new INewsAdvancedSearchClient(advancedSearchUrl, WINDOW_SIZE, PARALLEL_WINDOWS);
+                    final long then = System.currentTimeMillis();
+                    long hitCount = 0;
+                    try (final Stream<SearchHit> hits = advancedSearch.search(query)) {
+                        for (final SearchHit hit : (Iterable<SearchHit>) hits::iterator) {
+                            LOG.log(Level.INFO, "{0}. {1}", new Object[] {++hitCount, hit});
+                        }
+                    }
+                    final long took = System.currentTimeMillis() - then;
+                    LOG.log(Level.INFO, "hits: {0}, elapsed: {1}", new Object[] {hitCount, took});
+                } catch (final Exception exception) {
+                    LOG.log(Level.SEVERE, "failure", exception);
+                } finally {
+                    PlatformTools.logout(apiDomain);
+                }
+            } else {
+                LOG.log(Level.INFO, "Authorization failed.");
+            }
+
+            LOG.log(Level.INFO, "End");
+        }
+    }
+
+    /**
+     * Reads the query from the passed description file, a leading BOM is skipped.
+     */
+    private static INewsQuery readQuery(String advancedSearchDescriptionFilePath) throws Exception {
+        String description = new String(Files.readAllBytes(Paths.get(advancedSearchDescriptionFilePath)), StandardCharsets.UTF_8).trim();
+        if (description.startsWith("\uFEFF")) {
+            description = description.substring(1);
+        }
+        if (description.startsWith("\"")) {
+            description = new ObjectMapper().readValue(description, String.class);
+        }
+        return INewsQuery.parse(description);
+    }
+}
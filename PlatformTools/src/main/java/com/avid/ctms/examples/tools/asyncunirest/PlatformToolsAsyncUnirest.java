@@ -8,6 +8,9 @@ package com.avid.ctms.examples.tools.asyncunirest;
  */
 
 import com.avid.ctms.examples.tools.common.*;
+import com.avid.ctms.examples.tools.common.transport.EndpointMetrics;
+import com.avid.ctms.examples.tools.common.transport.RequestTrackingInterceptor;
+import com.avid.ctms.examples.tools.common.transport.Transports;
 
 import kong.unirest.*;
 import kong.unirest.apache.ApacheAsyncClient;
@@ -72,15 +75,16 @@ public class PlatformToolsAsyncUnirest {
         final Config requestConfig
                 = new Config()
                 .cookieSpec(CookieSpecs.STANDARD)
+                .interceptor(RequestTrackingInterceptor.INSTANCE)
+                .interceptor(SessionCredentialsInterceptor.INSTANCE)
+                .instrumentWith(EndpointMetrics.SHARED)
                 .proxy((null != proxyHost) ? new kong.unirest.Proxy(proxyHost, Integer.parseInt(proxyPort)) : null);
 
         final CloseableHttpAsyncClient httpAsyncClient
-                = HttpAsyncClients
+                = Transports.build(HttpAsyncClients
                 .custom()
                 .disableCookieManagement()
-                .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
-                .setSSLContext(sslContext)
-                .build();
+                .setSSLStrategy(Transports.sslStrategy(sslContext, NoopHostnameVerifier.INSTANCE)));
         return ApacheAsyncClient.builder(httpAsyncClient).apply(requestConfig);
 
 //        return HttpAsyncClients.custom()
@@ -161,7 +165,7 @@ public class PlatformToolsAsyncUnirest {
                                                                     if (HttpURLConnection.HTTP_OK == response.getStatus() || HttpURLConnection.HTTP_SEE_OTHER == response.getStatus()) {
                                                                         final String id_token = response.getBody().getObject().getString("id_token");
                                                                         final String accessTokenHeaderFieldValue = String.format("Bearer %s", id_token);
-                                                                        Unirest.config().setDefaultHeader(HttpHeaders.AUTHORIZATION, accessTokenHeaderFieldValue);
+                                                                        SessionCredentials.startSession(accessTokenHeaderFieldValue);
 
                                                                         scheduler = Executors.newScheduledThreadPool(1);
                                                                         final Runnable sessionRefresherCode = () -> {
@@ -424,7 +428,7 @@ public class PlatformToolsAsyncUnirest {
                             .get("href")
                             .toString();
                     final String accessToken = currentTokenResult.getString("accessToken");
-                    Unirest.config().setDefaultHeader(HttpHeaders.COOKIE, "avidAccessToken="+accessToken);
+                    SessionCredentials.updateAccessToken(accessToken);
                     Unirest.post(urlExtend).asEmpty();
                 });
     }
@@ -536,6 +540,7 @@ public class PlatformToolsAsyncUnirest {
             scheduler.shutdown();
             sessionRefresher.cancel(true);
         }
+        SessionCredentials.clear();
         try {
             Unirest.shutDown();
         } catch (final Exception exception ) {
@@ -7,6 +7,13 @@ package com.avid.ctms.examples.tools.asyncunirest;
  * Project: CTMS
  */
 
+import com.avid.ctms.examples.tools.common.SessionCredentials;
+import com.avid.ctms.examples.tools.common.SessionCredentialsInterceptor;
+import com.avid.ctms.examples.tools.common.transport.Correlation;
+import com.avid.ctms.examples.tools.common.transport.EndpointMetrics;
+import com.avid.ctms.examples.tools.common.transport.RequestTrackingInterceptor;
+import com.avid.ctms.examples.tools.common.transport.Transports;
+
 import kong.unirest.*;
 import kong.unirest.apache.ApacheAsyncClient;
 import kong.unirest.json.*;
@@ -69,15 +76,16 @@ public class PlatformToolsReactiveUnirest {
         final Config requestConfig
                 = new Config()
                 .cookieSpec(CookieSpecs.STANDARD)
+                .interceptor(RequestTrackingInterceptor.INSTANCE)
+                .interceptor(SessionCredentialsInterceptor.INSTANCE)
+                .instrumentWith(EndpointMetrics.SHARED)
                 .proxy((null != proxyHost) ? new kong.unirest.Proxy(proxyHost, Integer.parseInt(proxyPort)) : null);
 
         final CloseableHttpAsyncClient httpAsyncClient
-                = HttpAsyncClients
+                = Transports.build(HttpAsyncClients
                 .custom()
                 .disableCookieManagement()
-                .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
-                .setSSLContext(sslContext)
-                .build();
+                .setSSLStrategy(Transports.sslStrategy(sslContext, NoopHostnameVerifier.INSTANCE)));
         return ApacheAsyncClient.builder(httpAsyncClient).apply(requestConfig);
 
 //        return HttpAsyncClients.custom()
@@ -186,6 +194,27 @@ public class PlatformToolsReactiveUnirest {
         return identityProviderPromise;
     }
 
+    /**
+     * Promises OAuth2-identity-provider based authorization via an HTTP Basic Auth String, i.e. chains
+     * {@link #getAuthEndpoint(String)}, {@link #getIdentityProviders(HttpResponse)} and
+     * {@link #authorize(HttpResponse, String, String)}. All requests of the chain carry the same new correlation id.
+     *
+     * @param apiDomain address to get "auth"
+     * @param httpBasicAuthString HTTP Basic Auth String
+     * @return  promise, which promises authorization
+     */
+    public static CompletionStage<Object> login(String apiDomain, String httpBasicAuthString) {
+        final String correlationId = Correlation.newId();
+        final Correlation.Scope scope = Correlation.open(correlationId);
+        try {
+            return getAuthEndpoint(apiDomain)
+                    .thenCompose(Correlation.with(correlationId, PlatformToolsReactiveUnirest::getIdentityProviders))
+                    .thenCompose(Correlation.with(correlationId, it -> authorize(it, apiDomain, httpBasicAuthString)));
+        } finally {
+            scope.close();
+        }
+    }
+
     /**
      * Promises OAuth2-identity-provider based authorization via an HTTP Basic Auth String with the passed identity providers HAL resource.
      *
@@ -224,7 +253,7 @@ public class PlatformToolsReactiveUnirest {
                             if (HttpURLConnection.HTTP_OK == response.getStatus() || HttpURLConnection.HTTP_SEE_OTHER == response.getStatus()) {
                                 final String id_token = response.getBody().getObject().getString("id_token");
                                 final String accessTokenHeaderFieldValue = String.format("Bearer %s", id_token);
-                                Unirest.config().setDefaultHeader(HttpHeaders.AUTHORIZATION, accessTokenHeaderFieldValue);
+                                SessionCredentials.startSession(accessTokenHeaderFieldValue);
 
                                 scheduler = Executors.newScheduledThreadPool(1);
                                 final Runnable sessionRefresherCode = () -> {
@@ -455,6 +484,8 @@ public class PlatformToolsReactiveUnirest {
     public static CompletionStage<List<JSONObject>> pageThroughResultsAsync(String resultPageURL) {
         final CompletableFuture<List<JSONObject>> promise = new CompletableFuture<>();
         final List<JSONObject> pages = new ArrayList<>();
+        // The next pages are requested from the IO thread completing this request, so the correlation id is carried:
+        final String correlationId = Correlation.current();
 
         Unirest.get(resultPageURL)
                 .header( HttpHeaders.ACCEPT, "application/json")
@@ -471,11 +502,16 @@ public class PlatformToolsReactiveUnirest {
                                     final JSONObject links = response.getBody().getObject().getJSONObject("_links");
                                     final JSONObject nextPageLinkObject = links.optJSONObject("next");
                                     if (null != nextPageLinkObject) {
-                                        pageThroughResultsAsync(nextPageLinkObject.getString("href"))
-                                                .thenAccept(o -> {
-                                                    pages.addAll(o);
-                                                    promise.complete(pages);
-                                                });
+                                        final Correlation.Scope scope = Correlation.open(correlationId);
+                                        try {
+                                            pageThroughResultsAsync(nextPageLinkObject.getString("href"))
+                                                    .thenAccept(o -> {
+                                                        pages.addAll(o);
+                                                        promise.complete(pages);
+                                                    });
+                                        } finally {
+                                            scope.close();
+                                        }
                                     } else {
                                         promise.complete(pages);
                                     }
@@ -537,7 +573,7 @@ public class PlatformToolsReactiveUnirest {
                             .get("href")
                             .toString();
                     final String accessToken = currentTokenResult.getString("accessToken");
-                    Unirest.config().setDefaultHeader(HttpHeaders.COOKIE, "avidAccessToken="+accessToken);
+                    SessionCredentials.updateAccessToken(accessToken);
                     Unirest.post(urlExtend).asEmpty();
                 });
     }
@@ -548,6 +584,7 @@ public class PlatformToolsReactiveUnirest {
             scheduler.shutdown();
             sessionRefresher.cancel(true);
         }
+        SessionCredentials.clear();
         try {
             Unirest.shutDown();
         } catch (final Exception exception) {
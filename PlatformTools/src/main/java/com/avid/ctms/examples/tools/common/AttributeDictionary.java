@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A dictionary of attribute names shared by many items. Each distinct attribute name (compared case-insensitively) is
+ * stored once and represented by an int id, so that items only need to keep the ids of their attributes. Additionally,
+ * values of low cardinality, such as item types, can be interned.
+ * <p>
+ * The dictionary only grows, it is meant for the rather small set of attribute names of a platform.
+ */
+public final class AttributeDictionary {
+    /**
+     * The dictionary shared by all items, which have not been created with a dedicated dictionary.
+     */
+    public static final AttributeDictionary SHARED = new AttributeDictionary();
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> internedValues = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[0];
+
+    /**
+     * Retrieves the id of the passed attribute name, the name is added to the dictionary, if it is not yet known.
+     *
+     * @param name the attribute name
+     * @return the id of the attribute name
+     */
+    public int idOf(String name) {
+        final String key = name.toLowerCase(Locale.ROOT);
+        final Integer id = ids.get(key);
+        if (null != id) {
+            return id;
+        }
+        return add(key, name);
+    }
+
+    /**
+     * Retrieves the id of the passed attribute name without adding it to the dictionary.
+     *
+     * @param name the attribute name
+     * @return the id of the attribute name or -1, if the name is unknown
+     */
+    public int find(String name) {
+        final Integer id = ids.get(name.toLowerCase(Locale.ROOT));
+        return null != id ? id : -1;
+    }
+
+    /**
+     * Retrieves the attribute name of the passed id, as it was spelled when it was added first.
+     *
+     * @param id the id of the attribute name
+     * @return the attribute name
+     */
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Interns a value of low cardinality, such as an item type.
+     *
+     * @param value the value to intern
+     * @return the canonical instance of the value
+     */
+    public String intern(String value) {
+        if (null == value) {
+            return null;
+        }
+        final String interned = internedValues.putIfAbsent(value, value);
+        return null != interned ? interned : value;
+    }
+
+    private synchronized int add(String key, String name) {
+        final Integer id = ids.get(key);
+        if (null != id) {
+            return id;
+        }
+
+        final String[] newNames = Arrays.copyOf(names, names.length + 1);
+        newNames[names.length] = name;
+        names = newNames;
+        ids.put(key, names.length - 1);
+        return names.length - 1;
+    }
+}
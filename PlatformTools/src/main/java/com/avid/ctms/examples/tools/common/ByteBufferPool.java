@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of equally sized heap ByteBuffers, which are used to drain response streams. Buffers, which are
+ * released while the pool is full, are left to the garbage collector.
+ */
+public final class ByteBufferPool {
+    /**
+     * The pool shared by all readers in this process: up to 32 buffers of 64 KB.
+     */
+    public static final ByteBufferPool SHARED = new ByteBufferPool(64 * 1024, 32);
+
+    private final int bufferSize;
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    /**
+     * Creates a pool.
+     *
+     * @param bufferSize       the capacity of each buffer in bytes
+     * @param maxPooledBuffers the maximum count of buffers kept in the pool
+     */
+    public ByteBufferPool(int bufferSize, int maxPooledBuffers) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(maxPooledBuffers);
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Takes a cleared buffer from the pool or allocates a new one, if the pool is empty.
+     *
+     * @return a cleared buffer, to be passed to {@link #release(ByteBuffer)} after use
+     */
+    public ByteBuffer acquire() {
+        final ByteBuffer buffer = buffers.poll();
+        return null != buffer ? buffer : ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used after it has been released.
+     *
+     * @param buffer the buffer to return
+     */
+    public void release(ByteBuffer buffer) {
+        if (bufferSize == buffer.capacity()) {
+            buffer.clear();
+            buffers.offer(buffer);
+        }
+    }
+}
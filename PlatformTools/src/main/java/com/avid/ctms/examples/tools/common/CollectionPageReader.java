@@ -0,0 +1,543 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import kong.unirest.RawResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reads folder items and pages of folder items with a streaming parser. The items found in
+ * "_embedded.loc:collection._embedded.loc:item" (item resources) or "_embedded.loc:item" (collection pages) are passed
+ * to a consumer as soon as they have been scanned, no intermediate JSON tree or String of the page is created.
+ *
+ * @param <T> type of the created items, e.g. {@link ItemInfo}
+ */
+public class CollectionPageReader<T> {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final ItemFactory<T> itemFactory;
+    private final boolean withAttributes;
+
+    /**
+     * The fields of a single item as scanned from the page. Instances are reused for each item of a page.
+     */
+    public static class ItemFields {
+        private final byte[] source;
+        private final int sourceOffset;
+        private int commonStart = -1;
+        private int commonEnd = -1;
+        private int attributesStart = -1;
+        private int attributesEnd = -1;
+        private String id;
+        private String type;
+        private String name;
+        private String href;
+        private boolean hasChildren;
+        private final List<String> attributeNames = new ArrayList<>();
+        private final List<String> attributeValues = new ArrayList<>();
+
+        private ItemFields(byte[] source, int sourceOffset) {
+            this.source = source;
+            this.sourceOffset = sourceOffset;
+        }
+
+        private void clear() {
+            commonStart = -1;
+            commonEnd = -1;
+            attributesStart = -1;
+            attributesEnd = -1;
+            id = null;
+            type = null;
+            name = null;
+            href = null;
+            hasChildren = false;
+            attributeNames.clear();
+            attributeValues.clear();
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHref() {
+            return href;
+        }
+
+        public boolean hasChildren() {
+            return hasChildren;
+        }
+
+        /**
+         * Retrieves the names of the common attributes and custom attributes in document order. Only filled, if the
+         * reader was created with attributes.
+         *
+         * @return the names of the attributes
+         */
+        public List<String> getAttributeNames() {
+            return attributeNames;
+        }
+
+        /**
+         * Retrieves the values of the common attributes and custom attributes in the order of
+         * {@link #getAttributeNames()}.
+         *
+         * @return the values of the attributes
+         */
+        public List<String> getAttributeValues() {
+            return attributeValues;
+        }
+
+        /**
+         * Retrieves the array the page has been read from.
+         *
+         * @return the array the page has been read from or null, if the page has been read from a stream
+         */
+        public byte[] getSource() {
+            return source;
+        }
+
+        /**
+         * Retrieves the start of the "common" object of the item in {@link #getSource()}.
+         *
+         * @return the start of the "common" object or -1, if the item has no "common" object or has been read from a
+         * stream
+         */
+        public int getCommonStart() {
+            return commonStart;
+        }
+
+        public int getCommonEnd() {
+            return commonEnd;
+        }
+
+        /**
+         * Retrieves the start of the "attributes" array of the item in {@link #getSource()}. Only available, if the
+         * reader was created without attributes.
+         *
+         * @return the start of the "attributes" array or -1, if the item has no "attributes" array, has been read from a
+         * stream or the attributes have been read
+         */
+        public int getAttributesStart() {
+            return attributesStart;
+        }
+
+        public int getAttributesEnd() {
+            return attributesEnd;
+        }
+    }
+
+    /**
+     * Creates an item from the scanned fields.
+     *
+     * @param <T> type of the created items
+     */
+    @FunctionalInterface
+    public interface ItemFactory<T> {
+        T create(ItemFields fields, int depth) throws IOException;
+    }
+
+    /**
+     * The result of reading a page: the item, which has been read (if the page is an item resource), and the link to the
+     * next page.
+     *
+     * @param <T> type of the created items
+     */
+    public static class Page<T> {
+        private T self;
+        private String next;
+        private int itemCount;
+
+        /**
+         * Retrieves the item represented by the page.
+         *
+         * @return the item represented by the page or null, if the page is a collection page
+         */
+        public T getSelf() {
+            return self;
+        }
+
+        /**
+         * Retrieves the href of the next page.
+         *
+         * @return the href of the next page or null, if this is the last page
+         */
+        public String getNext() {
+            return next;
+        }
+
+        public int getItemCount() {
+            return itemCount;
+        }
+    }
+
+    /**
+     * Creates a reader, which creates {@link ItemInfo}s.
+     *
+     * @param withAttributes whether the common and custom attributes of the items should be kept
+     * @return a reader, which creates ItemInfos
+     */
+    public static CollectionPageReader<ItemInfo> ofItemInfos(boolean withAttributes) {
+        return new CollectionPageReader<>(
+                (fields, depth) -> new ItemInfo(
+                        fields.getName()
+                        , fields.getType()
+                        , depth
+                        , new URL(fields.getHref())
+                        , fields.hasChildren()
+                        , fields.getId()
+                        , fields.getAttributeNames()
+                        , fields.getAttributeValues())
+                , withAttributes);
+    }
+
+    /**
+     * Creates a reader.
+     *
+     * @param itemFactory    creates the items from the scanned fields
+     * @param withAttributes whether the common and custom attributes of the items should be scanned, if false, only the
+     *                       name, type, id, href and the presence of children are scanned
+     */
+    public CollectionPageReader(ItemFactory<T> itemFactory, boolean withAttributes) {
+        this.itemFactory = itemFactory;
+        this.withAttributes = withAttributes;
+    }
+
+    /**
+     * Creates a body handler to be passed to Unirest's asObject(). The body of a response with a status other than 200
+     * is not read and results in a null body.
+     *
+     * @param depth the depth of the item resource, embedded items get depth + 1
+     * @param items receives the embedded items
+     * @return a body handler reading the page
+     */
+    public Function<RawResponse, Page<T>> bodyHandler(int depth, Consumer<? super T> items) {
+        return rawResponse -> {
+            if (HttpURLConnection.HTTP_OK != rawResponse.getStatus()) {
+                return null;
+            }
+            try (final InputStream content = rawResponse.getContent()) {
+                return read(content, depth, items);
+            } catch (final IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        };
+    }
+
+    /**
+     * Creates a body handler to be passed to Unirest's asObject(), which drains the whole body into a
+     * {@link ContentBuffer} before scanning it. Items can refer to slices of the buffer's array, see
+     * {@link ItemFields#getSource()}. The body of a response with a status other than 200 is not read and results in a
+     * null body.
+     *
+     * @param depth the depth of the item resource, embedded items get depth + 1
+     * @param items receives the embedded items
+     * @return a body handler reading the page
+     */
+    public Function<RawResponse, Page<T>> bufferedBodyHandler(int depth, Consumer<? super T> items) {
+        return rawResponse -> {
+            if (HttpURLConnection.HTTP_OK != rawResponse.getStatus()) {
+                return null;
+            }
+            try (final InputStream content = rawResponse.getContent()) {
+                // not reused: the items created from the page may refer to its array
+                final ContentBuffer page = new ContentBuffer().readFrom(content);
+                return read(page.array(), 0, page.length(), depth, items);
+            } catch (final IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        };
+    }
+
+    /**
+     * Reads an item resource or a collection page.
+     *
+     * @param content the content of the page
+     * @param depth   the depth of the item resource, embedded items get depth + 1
+     * @param items   receives the embedded items
+     * @return the item resource (if present) and the link to the next page
+     */
+    public Page<T> read(InputStream content, int depth, Consumer<? super T> items) throws IOException {
+        try (final JsonParser parser = jsonFactory.createParser(content)) {
+            return read(parser, new ItemFields(null, 0), depth, items);
+        }
+    }
+
+    /**
+     * Reads an item resource or a collection page.
+     *
+     * @param content the content of the page
+     * @param offset  the offset of the page in content
+     * @param length  the length of the page
+     * @param depth   the depth of the item resource, embedded items get depth + 1
+     * @param items   receives the embedded items
+     * @return the item resource (if present) and the link to the next page
+     */
+    public Page<T> read(byte[] content, int offset, int length, int depth, Consumer<? super T> items) throws IOException {
+        try (final JsonParser parser = jsonFactory.createParser(content, offset, length)) {
+            return read(parser, new ItemFields(content, offset), depth, items);
+        }
+    }
+
+    private Page<T> read(JsonParser parser, ItemFields fields, int depth, Consumer<? super T> items) throws IOException {
+        final Page<T> page = new Page<>();
+        if (JsonToken.START_OBJECT != parser.nextToken()) {
+            return page;
+        }
+
+        final boolean isItem = readResource(parser, fields, page, depth, items);
+        if (isItem) {
+            page.self = itemFactory.create(fields, depth);
+        }
+        return page;
+    }
+
+    /**
+     * Reads the object the parser is positioned at. Items found in "_embedded" are passed to items, the link "next" is
+     * put into the page.
+     *
+     * @return true, if the object describes an item, i.e. it has a "base" property
+     */
+    private boolean readResource(JsonParser parser, ItemFields fields, Page<T> page, int depth, Consumer<? super T> items) throws IOException {
+        boolean isItem = false;
+        while (JsonToken.FIELD_NAME == parser.nextToken()) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+                case "base":
+                    isItem = true;
+                    readBase(parser, fields);
+                    break;
+                case "common":
+                    readCommon(parser, fields);
+                    break;
+                case "attributes":
+                    readAttributes(parser, fields);
+                    break;
+                case "_links":
+                    readLinks(parser, fields, page);
+                    break;
+                case "_embedded":
+                    readEmbedded(parser, fields, page, depth, items);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return isItem;
+    }
+
+    private void readEmbedded(JsonParser parser, ItemFields parentFields, Page<T> page, int depth, Consumer<? super T> items) throws IOException {
+        if (JsonToken.START_OBJECT != parser.currentToken()) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (JsonToken.FIELD_NAME == parser.nextToken()) {
+            final String fieldName = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if ("loc:collection".equals(fieldName) && JsonToken.START_OBJECT == value) {
+                readResource(parser, new ItemFields(parentFields.source, parentFields.sourceOffset), page, depth, items);
+            } else if ("loc:item".equals(fieldName)) {
+                final ItemFields fields = new ItemFields(parentFields.source, parentFields.sourceOffset);
+                if (JsonToken.START_ARRAY == value) {
+                    while (JsonToken.START_OBJECT == parser.nextToken()) {
+                        readItem(parser, fields, depth + 1, items);
+                        ++page.itemCount;
+                    }
+                } else if (JsonToken.START_OBJECT == value) {
+                    readItem(parser, fields, depth + 1, items);
+                    ++page.itemCount;
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readItem(JsonParser parser, ItemFields fields, int depth, Consumer<? super T> items) throws IOException {
+        fields.clear();
+        while (JsonToken.FIELD_NAME == parser.nextToken()) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+                case "base":
+                    readBase(parser, fields);
+                    break;
+                case "common":
+                    readCommon(parser, fields);
+                    break;
+                case "attributes":
+                    readAttributes(parser, fields);
+                    break;
+                case "_links":
+                    readLinks(parser, fields, null);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        items.accept(itemFactory.create(fields, depth));
+    }
+
+    private static void readBase(JsonParser parser, ItemFields fields) throws IOException {
+        if (JsonToken.START_OBJECT != parser.currentToken()) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (JsonToken.FIELD_NAME == parser.nextToken()) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ("id".equals(fieldName)) {
+                fields.id = parser.getValueAsString();
+            } else if ("type".equals(fieldName)) {
+                fields.type = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readCommon(JsonParser parser, ItemFields fields) throws IOException {
+        if (JsonToken.START_OBJECT != parser.currentToken()) {
+            parser.skipChildren();
+            return;
+        }
+
+        if (null != fields.source) {
+            fields.commonStart = fields.sourceOffset + (int) parser.getTokenLocation().getByteOffset();
+        }
+
+        while (JsonToken.FIELD_NAME == parser.nextToken()) {
+            final String fieldName = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if (value.isScalarValue()) {
+                final String text = parser.getValueAsString();
+                if ("name".equals(fieldName)) {
+                    fields.name = text;
+                }
+                if (withAttributes) {
+                    fields.attributeNames.add(fieldName);
+                    fields.attributeValues.add(text);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (null != fields.source) {
+            fields.commonEnd = fields.sourceOffset + (int) parser.getCurrentLocation().getByteOffset();
+        }
+    }
+
+    private void readAttributes(JsonParser parser, ItemFields fields) throws IOException {
+        if (!withAttributes || JsonToken.START_ARRAY != parser.currentToken()) {
+            if (null != fields.source && JsonToken.START_ARRAY == parser.currentToken()) {
+                fields.attributesStart = fields.sourceOffset + (int) parser.getTokenLocation().getByteOffset();
+                parser.skipChildren();
+                fields.attributesEnd = fields.sourceOffset + (int) parser.getCurrentLocation().getByteOffset();
+            } else {
+                parser.skipChildren();
+            }
+            return;
+        }
+
+        while (JsonToken.START_OBJECT == parser.nextToken()) {
+            String name = null;
+            String value = null;
+            while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                final String fieldName = parser.getCurrentName();
+                final JsonToken token = parser.nextToken();
+                if ("name".equals(fieldName) && token.isScalarValue()) {
+                    name = parser.getValueAsString();
+                } else if ("value".equals(fieldName) && token.isScalarValue()) {
+                    value = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (null != name) {
+                fields.attributeNames.add(name);
+                fields.attributeValues.add(value);
+            }
+        }
+    }
+
+    private static void readLinks(JsonParser parser, ItemFields fields, Page<?> page) throws IOException {
+        if (JsonToken.START_OBJECT != parser.currentToken()) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (JsonToken.FIELD_NAME == parser.nextToken()) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+                case "self":
+                    fields.href = readHref(parser);
+                    break;
+                case "next":
+                    final String next = readHref(parser);
+                    if (null != page) {
+                        page.next = next;
+                    }
+                    break;
+                case "loc:collection":
+                    fields.hasChildren = JsonToken.VALUE_NULL != parser.currentToken();
+                    parser.skipChildren();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Reads the href of a link object or of the first link object of an array of link objects.
+     */
+    private static String readHref(JsonParser parser) throws IOException {
+        String href = null;
+        if (JsonToken.START_ARRAY == parser.currentToken()) {
+            while (JsonToken.END_ARRAY != parser.nextToken()) {
+                final String elementHref = readHref(parser);
+                if (null == href) {
+                    href = elementHref;
+                }
+            }
+        } else if (JsonToken.START_OBJECT == parser.currentToken()) {
+            while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if ("href".equals(fieldName)) {
+                    href = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else {
+            parser.skipChildren();
+        }
+        return href;
+    }
+}
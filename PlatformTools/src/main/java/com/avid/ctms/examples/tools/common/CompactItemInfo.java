@@ -0,0 +1,161 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Represents a folder item with a small memory footprint, meant for crawls, which keep a lot of items.
+ * <p>
+ * Other than {@link ItemInfo}, the attribute names are kept in a shared {@link AttributeDictionary}, the item only keeps
+ * the ids of its attributes and the values in two flat arrays sorted by id. The item type is interned and the href is
+ * kept as String, which is only parsed into a URL on request. Equality is based on the href String, so no host name
+ * resolution is done as with URL.equals()/hashCode().
+ */
+public final class CompactItemInfo {
+    private static final int[] NO_KEYS = new int[0];
+    private static final String[] NO_VALUES = new String[0];
+
+    private final AttributeDictionary dictionary;
+    private final int[] keyIds;
+    private final String[] values;
+
+    public final String name;
+    public final String type;
+    public final int depth;
+    public final String href;
+    public final boolean hasChildren;
+    public final String id;
+
+    public CompactItemInfo(String name, String type, int depth, String href, boolean hasChildren) {
+        this(AttributeDictionary.SHARED, name, type, depth, href, hasChildren, null, NO_KEYS, NO_VALUES);
+    }
+
+    private CompactItemInfo(AttributeDictionary dictionary, String name, String type, int depth, String href, boolean hasChildren, String id, int[] keyIds, String[] values) {
+        this.dictionary = dictionary;
+        this.name = name;
+        this.type = dictionary.intern(type);
+        this.depth = depth;
+        this.href = href;
+        this.hasChildren = hasChildren;
+        this.id = id;
+        this.keyIds = keyIds;
+        this.values = values;
+    }
+
+    /**
+     * Creates an item with the passed attributes. If an attribute name occurs multiple times (compared
+     * case-insensitively), the last value wins.
+     *
+     * @param dictionary      the dictionary to keep the attribute names in
+     * @param attributeNames  the names of the common and custom attributes
+     * @param attributeValues the values of the attributes in the order of attributeNames
+     * @return the new item
+     */
+    public static CompactItemInfo of(AttributeDictionary dictionary, String name, String type, int depth, String href, boolean hasChildren, String id, List<String> attributeNames, List<String> attributeValues) {
+        if (attributeNames.isEmpty()) {
+            return new CompactItemInfo(dictionary, name, type, depth, href, hasChildren, id, NO_KEYS, NO_VALUES);
+        }
+
+        final int[] keyIds = new int[attributeNames.size()];
+        final String[] values = new String[attributeNames.size()];
+        int size = 0;
+        for (int i = 0; i < attributeNames.size(); ++i) {
+            final int keyId = dictionary.idOf(attributeNames.get(i));
+            final int index = Arrays.binarySearch(keyIds, 0, size, keyId);
+            if (0 <= index) {
+                values[index] = attributeValues.get(i);
+            } else {
+                final int insertionPoint = -index - 1;
+                System.arraycopy(keyIds, insertionPoint, keyIds, insertionPoint + 1, size - insertionPoint);
+                System.arraycopy(values, insertionPoint, values, insertionPoint + 1, size - insertionPoint);
+                keyIds[insertionPoint] = keyId;
+                values[insertionPoint] = attributeValues.get(i);
+                ++size;
+            }
+        }
+
+        return size == keyIds.length
+                ? new CompactItemInfo(dictionary, name, type, depth, href, hasChildren, id, keyIds, values)
+                : new CompactItemInfo(dictionary, name, type, depth, href, hasChildren, id, Arrays.copyOf(keyIds, size), Arrays.copyOf(values, size));
+    }
+
+    /**
+     * Creates a reader, which creates CompactItemInfos with attribute names kept in the shared dictionary.
+     *
+     * @param withAttributes whether the common and custom attributes of the items should be kept
+     * @return a reader, which creates CompactItemInfos
+     */
+    public static CollectionPageReader<CompactItemInfo> reader(boolean withAttributes) {
+        return new CollectionPageReader<>(
+                (fields, depth) -> of(
+                        AttributeDictionary.SHARED
+                        , fields.getName()
+                        , fields.getType()
+                        , depth
+                        , fields.getHref()
+                        , fields.hasChildren()
+                        , fields.getId()
+                        , fields.getAttributeNames()
+                        , fields.getAttributeValues())
+                , withAttributes);
+    }
+
+    /**
+     * Retrieves the value of the passed attribute, the name is compared case-insensitively.
+     *
+     * @param attributeName the name of the attribute
+     * @return the value of the attribute or {@link ItemInfo#UNKNOWN_ATTRIBUTE}, if the item has no such attribute
+     */
+    public String getAttribute(String attributeName) {
+        final int keyId = dictionary.find(attributeName);
+        if (0 > keyId) {
+            return ItemInfo.UNKNOWN_ATTRIBUTE;
+        }
+        final int index = Arrays.binarySearch(keyIds, keyId);
+        return 0 <= index ? values[index] : ItemInfo.UNKNOWN_ATTRIBUTE;
+    }
+
+    /**
+     * Parses the href of this item.
+     *
+     * @return the href as URL
+     */
+    public URL toURL() throws MalformedURLException {
+        return new URL(href);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CompactItemInfo)) {
+            return false;
+        }
+        return Objects.equals(href, ((CompactItemInfo) other).href);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(href);
+    }
+
+    @Override
+    public String toString() {
+        final char[] spacer = new char[depth];
+        Arrays.fill(spacer, '\t');
+        return String.format(
+                "%s%sdepth: %d %s"
+                , new String(spacer)
+                , hasChildren ? "- (collection) " : ""
+                , depth
+                , name);
+    }
+}
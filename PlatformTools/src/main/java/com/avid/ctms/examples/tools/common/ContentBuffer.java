@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer, which receives the raw bytes of a response body. The stream is drained through buffers of
+ * the {@link ByteBufferPool}, the bytes are neither split into lines nor decoded to chars. JSON parsers can be created
+ * directly on {@link #array()} with {@link #length()}, e.g. {@code jsonFactory.createParser(buffer.array(), 0,
+ * buffer.length())}.
+ * <p>
+ * A ContentBuffer can be reused for many responses with {@link #clear()}, so that its array only grows to the size of
+ * the largest response. ContentBuffers are not thread safe.
+ */
+public final class ContentBuffer {
+    private static final int DEFAULT_CAPACITY = 8 * 1024;
+
+    private byte[] bytes;
+    private int length;
+
+    public ContentBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a buffer.
+     *
+     * @param initialCapacity the initial capacity, e.g. the content length of the response, if known
+     */
+    public ContentBuffer(int initialCapacity) {
+        bytes = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    /**
+     * Retrieves the backing array. Only the first {@link #length()} bytes are valid. The array is replaced when the
+     * buffer grows, so it must be retrieved again after each read.
+     *
+     * @return the backing array
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Discards the content, the capacity is kept.
+     */
+    public void clear() {
+        length = 0;
+    }
+
+    /**
+     * Drains the passed stream and appends its bytes to this buffer. The stream is not closed.
+     *
+     * @param content the stream to drain
+     * @return this buffer
+     * @throws IOException if reading the stream failed
+     */
+    public ContentBuffer readFrom(InputStream content) throws IOException {
+        return readFrom(Channels.newChannel(content));
+    }
+
+    /**
+     * Drains the passed channel and appends its bytes to this buffer. The channel is not closed.
+     *
+     * @param content the channel to drain
+     * @return this buffer
+     * @throws IOException if reading the channel failed
+     */
+    public ContentBuffer readFrom(ReadableByteChannel content) throws IOException {
+        final ByteBuffer chunk = ByteBufferPool.SHARED.acquire();
+        try {
+            while (-1 != content.read(chunk)) {
+                if (!chunk.hasRemaining()) {
+                    append(chunk);
+                }
+            }
+            append(chunk);
+        } finally {
+            ByteBufferPool.SHARED.release(chunk);
+        }
+        return this;
+    }
+
+    private void append(ByteBuffer chunk) {
+        chunk.flip();
+        final int count = chunk.remaining();
+        ensureCapacity(length + count);
+        chunk.get(bytes, length, count);
+        length += count;
+        chunk.clear();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (bytes.length < capacity) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length << 1));
+        }
+    }
+
+    public String toString(Charset charset) {
+        return new String(bytes, 0, length, charset);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * Creates a stream over the content, the bytes are not copied.
+     *
+     * @return a stream over the content
+     */
+    public InputStream asInputStream() {
+        return new ByteArrayInputStream(bytes, 0, length);
+    }
+
+    /**
+     * Appends the passed stream to the passed file without buffering it in memory. The bytes are transferred by the
+     * FileChannel, so that no byte arrays are allocated by the caller. The stream is not closed.
+     *
+     * @param content the stream to archive
+     * @param file    the file to append the stream to
+     * @return the count of transferred bytes
+     * @throws IOException if reading the stream or writing the file failed
+     */
+    public static long transferTo(InputStream content, FileChannel file) throws IOException {
+        final ReadableByteChannel source = Channels.newChannel(content);
+        final long start = file.position();
+        long position = start;
+        long transferred;
+        while (0 < (transferred = file.transferFrom(source, position, ByteBufferPool.SHARED.bufferSize()))) {
+            position += transferred;
+        }
+        file.position(position);
+        return position - start;
+    }
+}
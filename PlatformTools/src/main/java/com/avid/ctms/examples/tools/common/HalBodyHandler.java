@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import kong.unirest.RawResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Function;
+
+/**
+ * Response body handlers, which bind HAL resources directly from the response stream into data classes, such as
+ * {@link com.avid.ctms.examples.tools.common.data.Links}. Other than reading the body as JsonNode or String and
+ * re-parsing it with an ObjectMapper, no intermediate tree or String is created.
+ * <p>
+ * Usage: {@code Unirest.get(url).asObject(HalBodyHandler.of(Links.class)).getBody()}
+ */
+public final class HalBodyHandler {
+    private static final ObjectMapper objectMapper
+            = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private HalBodyHandler() {
+    }
+
+    /**
+     * Creates a body handler, which binds the response body to the passed type.
+     *
+     * @param type the type to bind the response body to
+     * @param <T>  the type to bind the response body to
+     * @return a body handler to be passed to asObject()/asObjectAsync(), the resulting body is null, if the response
+     * has no content
+     */
+    public static <T> Function<RawResponse, T> of(Class<T> type) {
+        final ObjectReader reader = objectMapper.readerFor(type);
+        return rawResponse -> {
+            try (final InputStream content = rawResponse.getContent()) {
+                return read(reader, content);
+            } catch (final IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        };
+    }
+
+    /**
+     * Binds the passed stream to the type of the passed reader.
+     *
+     * @param reader  the reader to bind the content with
+     * @param content the JSON content
+     * @param <T>     the type to bind the content to
+     * @return the bound content or null, if the stream is empty
+     */
+    static <T> T read(ObjectReader reader, InputStream content) throws IOException {
+        if (null == content) {
+            return null;
+        }
+        try (final JsonParser parser = objectMapper.getFactory().createParser(content)) {
+            if (null == parser.nextToken()) {
+                return null;
+            }
+            return reader.readValue(parser);
+        }
+    }
+}
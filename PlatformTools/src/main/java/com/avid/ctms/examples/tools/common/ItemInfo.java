@@ -38,6 +38,21 @@ public class ItemInfo {
 
     }
 
+    /**
+     * Creates an item with the passed attributes, as scanned by the {@link CollectionPageReader}.
+     *
+     * @param attributeNames  the names of the common and custom attributes
+     * @param attributeValues the values of the attributes in the order of attributeNames
+     */
+    public ItemInfo(String name, String type, int depth, URL href, boolean hasChildren, String id, List<String> attributeNames, List<String> attributeValues) {
+        this(name, type, depth, href, hasChildren);
+        this.id = id;
+
+        for (int i = 0; i < attributeNames.size(); ++i) {
+            attributes.put(attributeNames.get(i), attributeValues.get(i));
+        }
+    }
+
     public ItemInfo(JSONObject item, int depth) throws MalformedURLException {
         this(item.getJSONObject("common").optString("name")
             , item.getJSONObject("base").getString("type")
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Represents a folder item, whose attributes are decoded lazily. The item refers to the slices of the raw page, which
+ * contain its "common" object and its "attributes" array. An attribute is only decoded from these slices, when
+ * {@link #getAttribute(String)} is called for it the first time.
+ * <p>
+ * Mind, that the raw page is kept in memory as long as one of its items is referenced. Lazy items suit crawls, which
+ * either need no attributes at all or only a few attributes of a few items. Lazy items can only be created from pages,
+ * which have been read from an array, e.g. with {@link CollectionPageReader#bufferedBodyHandler}.
+ */
+public final class LazyItemInfo {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final byte[] page;
+    private final int commonStart;
+    private final int commonEnd;
+    private final int attributesStart;
+    private final int attributesEnd;
+    private Map<String, String> decodedAttributes;
+
+    public final String name;
+    public final String type;
+    public final int depth;
+    public final String href;
+    public final boolean hasChildren;
+    public final String id;
+
+    private LazyItemInfo(CollectionPageReader.ItemFields fields, int depth) {
+        this.name = fields.getName();
+        this.type = AttributeDictionary.SHARED.intern(fields.getType());
+        this.depth = depth;
+        this.href = fields.getHref();
+        this.hasChildren = fields.hasChildren();
+        this.id = fields.getId();
+        this.page = fields.getSource();
+        this.commonStart = fields.getCommonStart();
+        this.commonEnd = fields.getCommonEnd();
+        this.attributesStart = fields.getAttributesStart();
+        this.attributesEnd = fields.getAttributesEnd();
+    }
+
+    /**
+     * Creates a reader, which creates LazyItemInfos. Pages must be read from arrays.
+     *
+     * @return a reader, which creates LazyItemInfos
+     */
+    public static CollectionPageReader<LazyItemInfo> reader() {
+        return new CollectionPageReader<>(LazyItemInfo::new, false);
+    }
+
+    /**
+     * Retrieves the value of the passed attribute, the name is compared case-insensitively. The attribute is decoded from
+     * the raw page on the first call for this attribute.
+     *
+     * @param attributeName the name of the attribute
+     * @return the value of the attribute or {@link ItemInfo#UNKNOWN_ATTRIBUTE}, if the item has no such attribute
+     */
+    public synchronized String getAttribute(String attributeName) {
+        if (null == decodedAttributes) {
+            decodedAttributes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        } else {
+            final String decoded = decodedAttributes.get(attributeName);
+            if (null != decoded) {
+                return decoded;
+            }
+        }
+
+        final String value = decode(attributeName);
+        decodedAttributes.put(attributeName, value);
+        return value;
+    }
+
+    /**
+     * Scans the "common" object and the "attributes" array for the passed attribute. As with {@link ItemInfo}, custom
+     * attributes win over common attributes of the same name.
+     */
+    private String decode(String attributeName) {
+        if (null == page) {
+            return ItemInfo.UNKNOWN_ATTRIBUTE;
+        }
+
+        try {
+            String value = ItemInfo.UNKNOWN_ATTRIBUTE;
+            if (0 <= commonStart) {
+                try (final JsonParser parser = jsonFactory.createParser(page, commonStart, commonEnd - commonStart)) {
+                    parser.nextToken();
+                    while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                        final boolean matches = attributeName.equalsIgnoreCase(parser.getCurrentName());
+                        final JsonToken token = parser.nextToken();
+                        if (matches && token.isScalarValue()) {
+                            value = parser.getValueAsString();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+            }
+
+            if (0 <= attributesStart) {
+                try (final JsonParser parser = jsonFactory.createParser(page, attributesStart, attributesEnd - attributesStart)) {
+                    parser.nextToken();
+                    while (JsonToken.START_OBJECT == parser.nextToken()) {
+                        boolean matches = false;
+                        String attributeValue = null;
+                        while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                            final String fieldName = parser.getCurrentName();
+                            final JsonToken token = parser.nextToken();
+                            if ("name".equals(fieldName) && token.isScalarValue()) {
+                                matches = attributeName.equalsIgnoreCase(parser.getValueAsString());
+                            } else if ("value".equals(fieldName) && token.isScalarValue()) {
+                                attributeValue = parser.getValueAsString();
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                        if (matches) {
+                            value = attributeValue;
+                        }
+                    }
+                }
+            }
+            return value;
+        } catch (final IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final char[] spacer = new char[depth];
+        Arrays.fill(spacer, '\t');
+        return String.format(
+                "%s%sdepth: %d %s"
+                , new String(spacer)
+                , hasChildren ? "- (collection) " : ""
+                , depth
+                , name);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common;
+
+import com.avid.ctms.examples.tools.common.data.Links;
+import kong.unirest.HttpResponse;
+import kong.unirest.Unirest;
+import kong.unirest.json.JSONObject;
+
+import java.net.HttpURLConnection;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Performs the startup sequence of the examples (authorization, CTMS Registry lookup and retrieval of the locations
+ * resources and their root items) as dependency graph with a {@link StartupOrchestrator}:
+ * <pre>
+ *     unirest -> auth -> identity-providers -> login -+-> serviceroots -> lookup(i) -+-> locations(i)
+ *                                                     +-> default locations(i) ------+
+ * </pre>
+ * with the steps marked (i) for each target.
+ * The "lookup" steps resolve the URL of a locations resource from the "serviceroots" resource, the "locations" steps get
+ * the locations resource to resolve the URL of its root item. Authorization is a strict sequence, but after the login:
+ * <ul>
+ *     <li>The "default locations" steps speculatively get the locations resources at their default URLs, while the
+ *     CTMS Registry is queried. If the registry resolves a locations resource to its default URL, which is the usual
+ *     case, the "locations" step takes the speculative result and sends no request. Otherwise, the speculative request
+ *     was in vain and the "locations" step gets the resolved URL.</li>
+ *     <li>The lookups and the retrieval of the locations resources for different services/realms overlap.</li>
+ * </ul>
+ */
+public class PlatformStartup {
+    private static final Logger LOG = Logger.getLogger(PlatformStartup.class.getName());
+
+    /**
+     * Describes a locations resource to look up during startup.
+     */
+    public static class Target {
+        public final String serviceType;
+        public final String serviceVersion;
+        public final String realm;
+
+        public Target(String serviceType, String serviceVersion, String realm) {
+            this.serviceType = serviceType;
+            this.serviceVersion = serviceVersion;
+            this.realm = realm;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s;version=%s;realm=%s", serviceType, serviceVersion, realm);
+        }
+    }
+
+    /**
+     * The results of the startup sequence.
+     */
+    public static class Result {
+        private final AuthorizationResponse authorizationResponse;
+        private final Map<Target, String> rootItemURLs;
+        private final StartupOrchestrator.Report report;
+
+        private Result(AuthorizationResponse authorizationResponse, Map<Target, String> rootItemURLs, StartupOrchestrator.Report report) {
+            this.authorizationResponse = authorizationResponse;
+            this.rootItemURLs = rootItemURLs;
+            this.report = report;
+        }
+
+        public AuthorizationResponse getAuthorizationResponse() {
+            return authorizationResponse;
+        }
+
+        public boolean isAuthorized() {
+            return PlatformStartup.isAuthorized(authorizationResponse);
+        }
+
+        /**
+         * Retrieves the URL of the root item of the locations resource of the passed target.
+         *
+         * @param target the target as passed to {@link #start(String, String, String, List)}
+         * @return the URL of the root item or an empty Optional, if the locations resource could not be retrieved
+         */
+        public Optional<String> getRootItemURL(Target target) {
+            return Optional.ofNullable(rootItemURLs.get(target));
+        }
+
+        public StartupOrchestrator.Report getReport() {
+            return report;
+        }
+    }
+
+    private PlatformStartup() {
+    }
+
+    /**
+     * Performs authorization, the CTMS Registry lookup and the retrieval of the root items of the locations resources of
+     * the passed targets with maximum overlap.
+     *
+     * @param apiDomain              address to get "auth"
+     * @param httpBasicAuthString    HTTP basic Auth String
+     * @param registryServiceVersion version of the CTMS Registry to query
+     * @param targets                the locations resources to look up
+     * @return the results of the startup sequence
+     */
+    public static Result start(String apiDomain, String httpBasicAuthString, String registryServiceVersion, List<Target> targets) throws Exception {
+        final StartupOrchestrator orchestrator = new StartupOrchestrator();
+
+        final StartupOrchestrator.Step<Object> unirest
+                = orchestrator.step("unirest", () -> {
+                    PlatformTools.initializeUnirest();
+                    return null;
+                });
+        final StartupOrchestrator.Step<Links> auth
+                = orchestrator.step("auth", () -> PlatformTools.getAuthEndpoint(apiDomain), unirest);
+        final StartupOrchestrator.Step<String> identityProviders
+                = orchestrator.step("identity-providers", () -> PlatformTools.getIdentityProvider(auth.get()), auth);
+        final StartupOrchestrator.Step<AuthorizationResponse> login
+                = orchestrator.step("login", () -> PlatformTools.login(apiDomain, identityProviders.get(), httpBasicAuthString), identityProviders);
+        final StartupOrchestrator.Step<Optional<JSONObject>> serviceRoots
+                = orchestrator.step("serviceroots", () -> isAuthorized(login.get())
+                        ? PlatformTools.getServiceRoots(apiDomain, registryServiceVersion)
+                        : Optional.empty()
+                , login);
+
+        final Map<Target, StartupOrchestrator.Step<String>> rootItems = new LinkedHashMap<>();
+        for (final Target target : targets) {
+            final String defaultLocationsURL = defaultLocationsUriTemplate(apiDomain, target);
+            final StartupOrchestrator.Step<String> defaultRootItem
+                    = orchestrator.step("default locations " + target, () -> isAuthorized(login.get())
+                            ? tryGetRootItemURL(defaultLocationsURL)
+                            : null
+                    , login);
+            final StartupOrchestrator.Step<String> lookup
+                    = orchestrator.step("lookup " + target, () -> isAuthorized(login.get())
+                            ? findLocations(apiDomain, target, serviceRoots.get())
+                            : null
+                    , serviceRoots);
+            rootItems.put(target, orchestrator.step("locations " + target, () -> {
+                        final String urlLocations = lookup.get();
+                        if (null == urlLocations) {
+                            return null;
+                        }
+                        return urlLocations.equals(defaultLocationsURL) && null != defaultRootItem.get()
+                                ? defaultRootItem.get()
+                                : getRootItemURL(urlLocations);
+                    }
+                    , lookup, defaultRootItem));
+        }
+
+        final StartupOrchestrator.Report report = orchestrator.run();
+        LOG.log(Level.INFO, "startup:\n{0}", report);
+
+        final Map<Target, String> rootItemURLs = new HashMap<>();
+        rootItems.forEach((target, step) -> {
+            if (null != step.get()) {
+                rootItemURLs.put(target, step.get());
+            }
+        });
+        return new Result(login.get(), rootItemURLs, report);
+    }
+
+    private static boolean isAuthorized(AuthorizationResponse authorizationResponse) {
+        return authorizationResponse.getLoginResponse().map(HttpResponse::isSuccess).orElse(false);
+    }
+
+    private static String defaultLocationsUriTemplate(String apiDomain, Target target) {
+        return String.format("https://%s/apis/%s;version=%s;realm=%s/locations", apiDomain, target.serviceType, target.serviceVersion, target.realm);
+    }
+
+    private static String findLocations(String apiDomain, Target target, Optional<JSONObject> serviceRoots) {
+        final String defaultLocationsUriTemplate = defaultLocationsUriTemplate(apiDomain, target);
+        if (!serviceRoots.isPresent()) {
+            LOG.log(Level.INFO, "CTMS Registry not reachable (request failed), defaulting to the specified URI template");
+            return defaultLocationsUriTemplate;
+        }
+
+        final List<String> locationsUriTemplates
+                = PlatformTools.findInServiceRoots(serviceRoots.get(), Collections.singletonList(target.serviceType), "loc:locations", defaultLocationsUriTemplate);
+        return locationsUriTemplates.stream().filter(it -> it.contains(target.realm)).findFirst().orElse(defaultLocationsUriTemplate);
+    }
+
+    private static String getRootItemURL(String urlLocations) {
+        final HttpResponse<String> response = Unirest.get(urlLocations).asString();
+        if (HttpURLConnection.HTTP_OK == response.getStatus()) {
+            return new JSONObject(response.getBody()).getJSONObject("_links").getJSONObject("loc:root-item").getString("href");
+        }
+        LOG.log(Level.INFO, "Resource <{0}> not found. - {1}", new Object[] {urlLocations, response.getStatusText()});
+        return null;
+    }
+
+    /**
+     * Like {@link #getRootItemURL(String)}, but a failure only results in null, because the speculative request must not
+     * fail the startup.
+     */
+    private static String tryGetRootItemURL(String urlLocations) {
+        try {
+            return getRootItemURL(urlLocations);
+        } catch (final Exception exception) {
+            LOG.log(Level.FINE, "Getting <{0}> failed: {1}", new Object[] {urlLocations, exception});
+            return null;
+        }
+    }
+}
@@ -2,7 +2,14 @@ package com.avid.ctms.examples.tools.common;
 
 import com.avid.ctms.examples.tools.common.data.LinkProperty;
 import com.avid.ctms.examples.tools.common.data.Links;
+import com.avid.ctms.examples.tools.common.data.token.CurrentToken;
 import com.avid.ctms.examples.tools.common.data.token.Token;
+import com.avid.ctms.examples.tools.common.jfr.LoginEvent;
+import com.avid.ctms.examples.tools.common.jfr.RegistryLookupEvent;
+import com.avid.ctms.examples.tools.common.jfr.TokenRefreshEvent;
+import com.avid.ctms.examples.tools.common.transport.EndpointMetrics;
+import com.avid.ctms.examples.tools.common.transport.RequestTrackingInterceptor;
+import com.avid.ctms.examples.tools.common.transport.Transports;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import kong.unirest.*;
 import kong.unirest.apache.ApacheAsyncClient;
@@ -22,11 +29,10 @@ import org.apache.http.impl.nio.client.HttpAsyncClients;
 
 import javax.net.ssl.SSLContext;
 import javax.ws.rs.core.HttpHeaders;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
@@ -40,6 +46,8 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Copyright 2016-2021 by Avid Technology, Inc.
@@ -59,6 +67,9 @@ public class PlatformTools {
     private static ScheduledExecutorService scheduler;
     private static ScheduledFuture<?> sessionRefresher;
 
+    private static final int MAX_REUSABLE_CONTENT_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<ContentBuffer> reusableContentBuffer = ThreadLocal.withInitial(ContentBuffer::new);
+
     /**
      * Retrieves the default connection timeout in ms.
      *
@@ -96,7 +107,7 @@ public class PlatformTools {
         return login(apiDomain, httpBasicAuthString);
     }
 
-    private static void initializeUnirest() throws KeyStoreException, NoSuchAlgorithmException, KeyManagementException {
+    static void initializeUnirest() throws KeyStoreException, NoSuchAlgorithmException, KeyManagementException {
         final TrustStrategy trustEveryone = TrustAllStrategy.INSTANCE;
         final SSLContext sslContext
                 = org.apache.http.ssl.SSLContexts
@@ -119,43 +130,54 @@ public class PlatformTools {
         final Config requestConfig
                 = new Config()
                 .cookieSpec(CookieSpecs.STANDARD)
+                .interceptor(RequestTrackingInterceptor.INSTANCE)
+                .interceptor(SessionCredentialsInterceptor.INSTANCE)
+                .instrumentWith(EndpointMetrics.SHARED)
                 .proxy((null != proxyHost) ? new kong.unirest.Proxy(proxyHost, Integer.parseInt(proxyPort)) : null);
 
         final CloseableHttpAsyncClient httpAsyncClient
-                = HttpAsyncClients
+                = Transports.build(HttpAsyncClients
                 .custom()
                 .disableCookieManagement()
-                .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
-                .setSSLContext(sslContext)
-                .build();
+                .setSSLStrategy(Transports.sslStrategy(sslContext, NoopHostnameVerifier.INSTANCE)));
         Unirest.config().asyncClient(ApacheAsyncClient.builder(httpAsyncClient).apply(requestConfig));
 
         final CloseableHttpClient httpClient
-                = HttpClients
+                = Transports.build(HttpClients
                 .custom()
                 .disableCookieManagement()
                 .disableRedirectHandling()
-                .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
-                .setSSLContext(sslContext)
-                .build();
+                .setSSLSocketFactory(Transports.sslSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE)));
         Unirest.config().httpClient(ApacheClient.builder(httpClient).apply(requestConfig));
     }
 
-    private static String getIdentityProvider(String authEndpoint) throws Exception {
-        final HttpResponse<JsonNode> jsonNodeHttpResponse
-                = Unirest
-                .get(String.format("https://%s/auth", authEndpoint))
-                .asJson();
-        final JsonNode body = jsonNodeHttpResponse.getBody();
-        final String identityProviderHref = objectMapper.readValue(body.toString(), Links.class).getLinks().getIdentityProviders().get(0).getHref();
+    /**
+     * Retrieves the HAL resource representing the authorization endpoint. This request needs no authorization.
+     *
+     * @param apiDomain address to get "auth"
+     * @return the authorization endpoint HAL resource
+     */
+    static Links getAuthEndpoint(String apiDomain) throws Exception {
+        return Unirest
+                .get(String.format("https://%s/auth", apiDomain))
+                .asObject(HalBodyHandler.of(Links.class))
+                .getBody();
+    }
+
+    /**
+     * Retrieves the URL of the ropc-default identity provider referenced by the passed authorization endpoint.
+     *
+     * @param authEndpoint the authorization endpoint HAL resource
+     * @return the URL of the ropc-default identity provider
+     */
+    static String getIdentityProvider(Links authEndpoint) throws Exception {
+        final String identityProviderHref = authEndpoint.getLinks().getIdentityProviders().get(0).getHref();
 
-        final String identityProviders
+        final Links links
                 = Unirest
                 .get(identityProviderHref)
-                .asJson()
-                .getBody()
-                .toString();
-        final Links links = objectMapper.readValue(identityProviders, Links.class);
+                .asObject(HalBodyHandler.of(Links.class))
+                .getBody();
 
         final Optional<String> ropcDefaultIdentityProviderURL
                 = links.getEmbedded().getProviders()
@@ -175,31 +197,53 @@ public class PlatformTools {
     }
 
     private static AuthorizationResponse login(String apiDomain, String httpBasicAuthString) throws Exception {
+        return login(apiDomain, getIdentityProvider(getAuthEndpoint(apiDomain)), httpBasicAuthString);
+    }
+
+    /**
+     * Performs the login against the passed identity provider and starts the session refresher on success.
+     *
+     * @param apiDomain             address to get "auth"
+     * @param urlAuthorization      URL of the identity provider to login against
+     * @param httpBasicAuthString   HTTP basic Auth String
+     * @return the response of the login request
+     */
+    static AuthorizationResponse login(String apiDomain, String urlAuthorization, String httpBasicAuthString) throws Exception {
         Unirest.config().clearDefaultHeaders();
         Unirest.config().setDefaultHeader( HttpHeaders.ACCEPT, "application/json");
+        SessionCredentials.clear();
 
-        final String loginContent = "grant_type=client_credentials&scope=openid";
-        final String urlAuthorization = getIdentityProvider(apiDomain);
-        final String authorizationDefaultToken = String.format("Basic %s", httpBasicAuthString);
-        final HttpResponse<JsonNode> loginResponse
-                = Unirest
-                .post(urlAuthorization)
-                .header(HttpHeaders.CONTENT_TYPE, "application/x-www-form-urlencoded")
-                .header(HttpHeaders.AUTHORIZATION, authorizationDefaultToken)
-                .body(loginContent)
-                .asJson();
-
-        final int loginStatusCode = loginResponse.getStatus();
-        if (HttpURLConnection.HTTP_OK == loginStatusCode || HttpURLConnection.HTTP_SEE_OTHER == loginStatusCode) {
-            final Token token = objectMapper.readValue(loginResponse.getBody().toString(), Token.class);
-            final String idToken = token.isOpenIdConnectEnabled() ? token.getIdToken() : token.getAccessToken();
-            final String accessTokenHeaderFieldValue = String.format("Bearer %s", idToken);
-
-            Unirest.config().setDefaultHeader(HttpHeaders.AUTHORIZATION, accessTokenHeaderFieldValue);
-            initializeSessionRefresher(apiDomain);
-            return new AuthorizationResponse(accessTokenHeaderFieldValue, loginResponse);
+        final LoginEvent event = new LoginEvent();
+        event.begin();
+        event.apiDomain = apiDomain;
+        event.identityProvider = urlAuthorization;
+        try {
+            final String loginContent = "grant_type=client_credentials&scope=openid";
+            final String authorizationDefaultToken = String.format("Basic %s", httpBasicAuthString);
+            final HttpResponse<JsonNode> loginResponse
+                    = Unirest
+                    .post(urlAuthorization)
+                    .header(HttpHeaders.CONTENT_TYPE, "application/x-www-form-urlencoded")
+                    .header(HttpHeaders.AUTHORIZATION, authorizationDefaultToken)
+                    .body(loginContent)
+                    .asJson();
+
+            final int loginStatusCode = loginResponse.getStatus();
+            event.status = loginStatusCode;
+            if (HttpURLConnection.HTTP_OK == loginStatusCode || HttpURLConnection.HTTP_SEE_OTHER == loginStatusCode) {
+                final Token token = objectMapper.readValue(loginResponse.getBody().toString(), Token.class);
+                final String idToken = token.isOpenIdConnectEnabled() ? token.getIdToken() : token.getAccessToken();
+                final String accessTokenHeaderFieldValue = String.format("Bearer %s", idToken);
+
+                SessionCredentials.startSession(accessTokenHeaderFieldValue);
+                initializeSessionRefresher(apiDomain);
+                event.success = true;
+                return new AuthorizationResponse(accessTokenHeaderFieldValue, loginResponse);
+            }
+            return new AuthorizationResponse(null, loginResponse);
+        } finally {
+            event.commit();
         }
-        return new AuthorizationResponse(null, loginResponse);
     }
 
     private static void initializeSessionRefresher(String apiDomain) {
@@ -221,27 +265,32 @@ public class PlatformTools {
      * @param apiDomain address against to which we want to send a keep alive signal
      */
     private static void sessionKeepAlive(String apiDomain) throws IOException {
-        final HttpResponse<JsonNode> jsonNodeHttpResponse
-                = Unirest
-                .get(String.format("https://%s/auth/", apiDomain))
-                .asJson();
-        final Links links = objectMapper.readValue(jsonNodeHttpResponse.getBody().toString(), Links.class);
+        final TokenRefreshEvent event = new TokenRefreshEvent();
+        event.begin();
+        event.apiDomain = apiDomain;
+        final String urlCurrentToken;
+        try {
+            final Links links
+                    = Unirest
+                    .get(String.format("https://%s/auth/", apiDomain))
+                    .asObject(HalBodyHandler.of(Links.class))
+                    .getBody();
+            urlCurrentToken = links.getLinks().getToken().get(0).getHref();
+        } catch (final RuntimeException exception) {
+            event.commit();
+            throw exception;
+        }
 
-        final String urlCurrentToken = links.getLinks().getToken().get(0).getHref();
         Unirest.get(urlCurrentToken)
-                .asStringAsync()
+                .asObjectAsync(HalBodyHandler.of(CurrentToken.class))
                 .thenAccept(it -> {
-                    final JSONObject currentTokenResult = new JSONObject(it.getBody());
-                    final String urlExtend = currentTokenResult
-                            .getJSONObject("_links")
-                            .getJSONArray("auth-token:extend")
-                            .getJSONObject(0)
-                            .get("href")
-                            .toString();
-                    final String accessToken = currentTokenResult.getString("accessToken");
-                    Unirest.config().setDefaultHeader("Cookie", "avidAccessToken="+accessToken);
-                    Unirest.post(urlExtend).asEmpty();
-                });
+                    final CurrentToken currentTokenResult = it.getBody();
+                    final String urlExtend = currentTokenResult.getLinks().getExtend().get(0).getHref();
+                    SessionCredentials.updateAccessToken(currentTokenResult.getAccessToken());
+                    event.success = Unirest.post(urlExtend).asEmpty().isSuccess();
+                })
+                // the token is extended on an IO reactor thread, so the event is committed there:
+                .whenComplete((ignored, failure) -> event.commit());
     }
 
     /**
@@ -253,13 +302,16 @@ public class PlatformTools {
     public static void logout(String apiDomain) throws IOException {
         callRemoveTokenRequest(apiDomain);
         removeSessionKeepAlive();
+        SessionCredentials.clear();
         Unirest.shutDown();
     }
 
     private static void callRemoveTokenRequest(String apiDomain) throws IOException {
-        final HttpResponse<JsonNode> jsonNodeHttpResponse = Unirest.get(String.format("https://%s/auth/", apiDomain))
-                .asJson();
-        final Links links = objectMapper.readValue(jsonNodeHttpResponse.getBody().toString(), Links.class);
+        final Links links
+                = Unirest
+                .get(String.format("https://%s/auth/", apiDomain))
+                .asObject(HalBodyHandler.of(Links.class))
+                .getBody();
         final String currentTokenRemovalUrl = links.getLinks().getToken().get(0).getHref();
         Unirest.delete(currentTokenRemovalUrl)
                 .header( HttpHeaders.ACCEPT, "application/json")
@@ -288,8 +340,43 @@ public class PlatformTools {
      * orDefaultUriTemplate as single entry.
      */
     public static List<String> findInRegistry(String apiDomain, List<String> serviceTypes, String registryServiceVersion, String resourceName, String orDefaultUriTemplate) {
+        final RegistryLookupEvent event = new RegistryLookupEvent();
+        event.begin();
+        event.apiDomain = apiDomain;
+        event.resourceName = resourceName;
+        event.defaulted = true;
         try {
             /// Check, whether the service registry is available:
+            final Optional<JSONObject> serviceRootsResult = getServiceRoots(apiDomain, registryServiceVersion);
+            if (serviceRootsResult.isPresent()) {
+                final List<String> uriTemplates = findInServiceRoots(serviceRootsResult.get(), serviceTypes, resourceName, orDefaultUriTemplate);
+                event.reachable = true;
+                event.defaulted = Collections.singletonList(orDefaultUriTemplate).equals(uriTemplates);
+                event.results = event.defaulted ? 0 : uriTemplates.size();
+                return uriTemplates;
+            } else {
+                LOG.log(Level.INFO, "CTMS Registry not reachable (request failed), defaulting to the specified URI template");
+                return Collections.singletonList(orDefaultUriTemplate);
+            }
+        } catch (final Throwable throwable) {
+            LOG.log(Level.SEVERE, "failure", throwable);
+        } finally {
+            event.commit();
+        }
+
+        LOG.log(Level.INFO, "unknown error requesting the CTMS Registry, defaulting to the specified URI template");
+        return Collections.singletonList(orDefaultUriTemplate);
+    }
+
+    /**
+     * Retrieves the "serviceroots" resource of the CTMS Registry.
+     *
+     * @param apiDomain              address to get the "serviceroots" resource
+     * @param registryServiceVersion version of the CTMS Registry to query
+     * @return the "serviceroots" resource or an empty Optional, if the CTMS Registry is unreachable or the request failed
+     */
+    static Optional<JSONObject> getServiceRoots(String apiDomain, String registryServiceVersion) {
+        try {
             final HttpResponse<String> response
                     = Unirest
                     .get(String.format("https://%s/apis/avid.ctms.registry;version=%s/serviceroots", apiDomain, registryServiceVersion))
@@ -297,58 +384,63 @@ public class PlatformTools {
 
             final int serviceRootsStatus = response.getStatus();
             if (HttpURLConnection.HTTP_OK == serviceRootsStatus) {
-                /// Doing the registry lookup and write the results to stdout:
-                final String rawServiceRootsResult = response.getBody();
-                final JSONObject serviceRootsResult = new JSONObject(rawServiceRootsResult);
-
-                final JSONObject resources = serviceRootsResult.optJSONObject("resources");
-                if (null != resources) {
-                    if (resources.has(resourceName)) {
-                        final Object resourcesObject = resources.get(resourceName);
-                        if (resourcesObject instanceof JSONArray) {
-                            final JSONArray asArray = (JSONArray) resourcesObject;
-                            final List<String> foundUriTemplates = new ArrayList<>(asArray.length());
-                            for (final Object singleLinkObject : asArray) {
-                                final String href = ((JSONObject) singleLinkObject).getString("href");
-                                if (serviceTypes.stream().anyMatch(href::contains)) {
-                                    foundUriTemplates.add(href);
-                                }
-                            }
-
-                            if (foundUriTemplates.isEmpty()) {
-                                LOG.log(Level.INFO, "{0} not registered, defaulting to the specified URI template", resourceName);
-                                return Collections.singletonList(orDefaultUriTemplate);
-                            }
-
-                            return foundUriTemplates;
-                        } else {
-                            final String href = ((JSONObject) resourcesObject).getString("href");
-
-                            if (serviceTypes.stream().anyMatch(href::contains)) {
-                                return Collections.singletonList(href);
-                            } else {
-                                LOG.log(Level.INFO, "{0} not registered, defaulting to the specified URI template", resourceName);
-                                return Collections.singletonList(orDefaultUriTemplate);
-                            }
+                return Optional.of(new JSONObject(response.getBody()));
+            }
+        } catch (final Exception exception) {
+            LOG.log(Level.SEVERE, "failure", exception);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Looks up the resource in question in an already retrieved "serviceroots" resource or defaults to the specified
+     * URI.
+     *
+     * @param serviceRootsResult   the "serviceroots" resource of the CTMS Registry
+     * @param serviceTypes         list of service types, of which the resource in question should be looked up
+     * @param resourceName         resource to look up, such as "search:simple-search"
+     * @param orDefaultUriTemplate URI template which will be returned, if the resource in question cannot be found
+     * @return a List&lt;String> under which the queried resource can be found
+     */
+    static List<String> findInServiceRoots(JSONObject serviceRootsResult, List<String> serviceTypes, String resourceName, String orDefaultUriTemplate) {
+        final JSONObject resources = serviceRootsResult.optJSONObject("resources");
+        if (null != resources) {
+            if (resources.has(resourceName)) {
+                final Object resourcesObject = resources.get(resourceName);
+                if (resourcesObject instanceof JSONArray) {
+                    final JSONArray asArray = (JSONArray) resourcesObject;
+                    final List<String> foundUriTemplates = new ArrayList<>(asArray.length());
+                    for (final Object singleLinkObject : asArray) {
+                        final String href = ((JSONObject) singleLinkObject).getString("href");
+                        if (serviceTypes.stream().anyMatch(href::contains)) {
+                            foundUriTemplates.add(href);
                         }
-                    } else {
+                    }
+
+                    if (foundUriTemplates.isEmpty()) {
                         LOG.log(Level.INFO, "{0} not registered, defaulting to the specified URI template", resourceName);
                         return Collections.singletonList(orDefaultUriTemplate);
                     }
+
+                    return foundUriTemplates;
                 } else {
-                    LOG.log(Level.INFO, "no registered resources found, defaulting to the specified default URI template");
-                    return Collections.singletonList(orDefaultUriTemplate);
+                    final String href = ((JSONObject) resourcesObject).getString("href");
+
+                    if (serviceTypes.stream().anyMatch(href::contains)) {
+                        return Collections.singletonList(href);
+                    } else {
+                        LOG.log(Level.INFO, "{0} not registered, defaulting to the specified URI template", resourceName);
+                        return Collections.singletonList(orDefaultUriTemplate);
+                    }
                 }
             } else {
-                LOG.log(Level.INFO, "CTMS Registry not reachable (request failed), defaulting to the specified URI template");
+                LOG.log(Level.INFO, "{0} not registered, defaulting to the specified URI template", resourceName);
                 return Collections.singletonList(orDefaultUriTemplate);
             }
-        } catch (final Throwable throwable) {
-            LOG.log(Level.SEVERE, "failure", throwable);
+        } else {
+            LOG.log(Level.INFO, "no registered resources found, defaulting to the specified default URI template");
+            return Collections.singletonList(orDefaultUriTemplate);
         }
-
-        LOG.log(Level.INFO, "unknown error requesting the CTMS Registry, defaulting to the specified URI template");
-        return Collections.singletonList(orDefaultUriTemplate);
     }
 
     public static String URLencode(String in) {
@@ -368,32 +460,79 @@ public class PlatformTools {
     }
 
     /**
-     * Reads the content of the buffer of the input stream or error stream read from the passed HttpURLConnection, puts
-     * it into a String and returns that String.
+     * Reads the content of the input stream or error stream read from the passed HttpURLConnection, decodes it as UTF-8
+     * and returns it as String. The content is drained into a per-thread {@link ContentBuffer}, which is reused for
+     * subsequent calls.
      *
      * @param urlConnection the HttpURLConnection to retrieve the content from.
-     * @return the content of the buffer of the InputStream read from the passed URLConnection
+     * @return the content of the InputStream read from the passed URLConnection
      * @throws IOException
      */
     public static String getContent(HttpURLConnection urlConnection) throws IOException {
+        final ContentBuffer buffer = reusableContentBuffer.get();
+        try {
+            return getContent(urlConnection, buffer).toString(StandardCharsets.UTF_8);
+        } finally {
+            buffer.clear();
+            if (MAX_REUSABLE_CONTENT_BUFFER_SIZE < buffer.array().length) {
+                reusableContentBuffer.remove();
+            }
+        }
+    }
+
+    /**
+     * Reads the raw bytes of the input stream or error stream read from the passed HttpURLConnection into the passed
+     * buffer. JSON parsers can be created directly on the bytes of the buffer.
+     *
+     * @param urlConnection the HttpURLConnection to retrieve the content from.
+     * @param buffer        receives the content, the content is appended
+     * @return the passed buffer
+     * @throws IOException
+     */
+    public static ContentBuffer getContent(HttpURLConnection urlConnection, ContentBuffer buffer) throws IOException {
+        try (final InputStream contentStream = getContentStream(urlConnection)) {
+            return null != contentStream
+                    ? buffer.readFrom(contentStream)
+                    : buffer;
+        }
+    }
+
+    /**
+     * Appends the raw bytes of the input stream or error stream read from the passed HttpURLConnection to the passed
+     * file, e.g. to archive responses. The content is not buffered in memory.
+     *
+     * @param urlConnection the HttpURLConnection to retrieve the content from.
+     * @param file          the file to append the content to
+     * @return the count of bytes written to the file
+     * @throws IOException
+     */
+    public static long getContent(HttpURLConnection urlConnection, FileChannel file) throws IOException {
+        try (final InputStream contentStream = getContentStream(urlConnection)) {
+            return null != contentStream
+                    ? ContentBuffer.transferTo(contentStream, file)
+                    : 0;
+        }
+    }
+
+    private static InputStream getContentStream(HttpURLConnection urlConnection) throws IOException {
         final InputStream contentStream =
                 5 != urlConnection.getResponseCode() / 100 && 4 != urlConnection.getResponseCode() / 100
                         ? urlConnection.getInputStream()
                         : urlConnection.getErrorStream();
 
-        return getContent(contentStream, urlConnection.getContentLength());
-    }
-
-    private static String getContent(InputStream contentStream, int length) throws IOException {
-        final StringBuilder content = new StringBuilder(length);
-
-        try (final BufferedReader in = new BufferedReader(new InputStreamReader(contentStream, StandardCharsets.UTF_8))) {
-            String line;
-            while (null != (line = in.readLine())) {
-                content.append(line);
+        // HttpURLConnection does not decode compressed content, if the caller sent Accept-Encoding:
+        if (null != contentStream && null != urlConnection.getContentEncoding()) {
+            switch (urlConnection.getContentEncoding().trim().toLowerCase(Locale.ROOT)) {
+                case "gzip":
+                case "x-gzip":
+                    return new GZIPInputStream(contentStream);
+                case "deflate":
+                    return new InflaterInputStream(contentStream);
+                default:
+                    break;
             }
         }
-        return content.toString();
+        return contentStream;
     }
 
 
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Immutable snapshot of the credentials of the current session, i.e. the value of the Authorization header and the
+ * avidAccessToken cookie. The current snapshot is swapped atomically, so that concurrent requests always see a
+ * consistent pair of Authorization header and cookie and reading the snapshot never blocks.
+ */
+public final class SessionCredentials {
+    private static final SessionCredentials NONE = new SessionCredentials(null, null);
+    private static final AtomicReference<SessionCredentials> current = new AtomicReference<>(NONE);
+
+    private final String authorization;
+    private final String cookie;
+
+    private SessionCredentials(String authorization, String cookie) {
+        this.authorization = authorization;
+        this.cookie = cookie;
+    }
+
+    /**
+     * Retrieves the value of the Authorization header.
+     *
+     * @return the value of the Authorization header or null, if no session has been established
+     */
+    public String getAuthorization() {
+        return authorization;
+    }
+
+    /**
+     * Retrieves the value of the Cookie header.
+     *
+     * @return the value of the Cookie header or null, if no access token has been retrieved yet
+     */
+    public String getCookie() {
+        return cookie;
+    }
+
+    /**
+     * Retrieves the current snapshot.
+     *
+     * @return the current snapshot, never null
+     */
+    public static SessionCredentials current() {
+        return current.get();
+    }
+
+    /**
+     * Starts a new session with the passed value of the Authorization header, the avidAccessToken cookie is dropped.
+     *
+     * @param accessTokenHeaderFieldValue the value of the Authorization header, such as "Bearer ..."
+     */
+    public static void startSession(String accessTokenHeaderFieldValue) {
+        current.set(new SessionCredentials(accessTokenHeaderFieldValue, null));
+    }
+
+    /**
+     * Replaces the avidAccessToken cookie of the current session.
+     *
+     * @param accessToken the access token as retrieved from the current token resource
+     */
+    public static void updateAccessToken(String accessToken) {
+        final String cookie = "avidAccessToken=" + accessToken;
+        current.updateAndGet(it -> new SessionCredentials(it.authorization, cookie));
+    }
+
+    /**
+     * Drops the credentials of the current session.
+     */
+    public static void clear() {
+        current.set(NONE);
+    }
+}
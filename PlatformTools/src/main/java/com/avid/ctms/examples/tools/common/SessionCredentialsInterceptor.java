@@ -0,0 +1,36 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common;
+
+import kong.unirest.Config;
+import kong.unirest.HttpRequest;
+import kong.unirest.Interceptor;
+
+import javax.ws.rs.core.HttpHeaders;
+
+/**
+ * Adds the {@link SessionCredentials} of the current session to each request. Headers, which have been set explicitly
+ * on a request, such as the Authorization header of the login request, are left untouched.
+ * <p>
+ * The interceptor replaces mutating Unirest's default headers from the session refresher, which would race with
+ * requests sent concurrently from other threads.
+ */
+public class SessionCredentialsInterceptor implements Interceptor {
+    public static final SessionCredentialsInterceptor INSTANCE = new SessionCredentialsInterceptor();
+
+    private SessionCredentialsInterceptor() {
+    }
+
+    @Override
+    public void onRequest(HttpRequest<?> request, Config config) {
+        final SessionCredentials credentials = SessionCredentials.current();
+        if (null != credentials.getAuthorization() && !request.getHeaders().containsKey(HttpHeaders.AUTHORIZATION)) {
+            request.header(HttpHeaders.AUTHORIZATION, credentials.getAuthorization());
+        }
+        if (null != credentials.getCookie() && !request.getHeaders().containsKey(HttpHeaders.COOKIE)) {
+            request.header(HttpHeaders.COOKIE, credentials.getCookie());
+        }
+    }
+}
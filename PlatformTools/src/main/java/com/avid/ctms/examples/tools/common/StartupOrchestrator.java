@@ -0,0 +1,201 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a set of startup steps, which depend on each other, with maximum overlap. Each step starts as soon as all of its
+ * dependencies have completed. After all steps have completed, the timings of the steps and the critical path through
+ * the dependency graph can be retrieved as {@link Report}.
+ */
+public class StartupOrchestrator {
+    private final List<Step<?>> steps = new ArrayList<>();
+    private final ExecutorService executor;
+    private final CompletableFuture<Void> started = new CompletableFuture<>();
+    private long startNanos;
+
+    /**
+     * A single step of the dependency graph.
+     *
+     * @param <T> type of the result of the step
+     */
+    public static class Step<T> {
+        private final String name;
+        private final List<Step<?>> dependencies;
+        private final CompletableFuture<T> result;
+        private volatile long startNanos;
+        private volatile long endNanos;
+
+        private Step(String name, List<Step<?>> dependencies, CompletableFuture<T> result) {
+            this.name = name;
+            this.dependencies = dependencies;
+            this.result = result;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Retrieves the result of this step. Only to be called from steps, which depend on this step, or after the
+         * orchestrator has run.
+         *
+         * @return the result of this step
+         */
+        public T get() {
+            return result.join();
+        }
+    }
+
+    /**
+     * The timings of all steps and the critical path through the dependency graph.
+     */
+    public static class Report {
+        private final List<Step<?>> steps;
+        private final List<Step<?>> criticalPath;
+        private final long startNanos;
+
+        private Report(List<Step<?>> steps, List<Step<?>> criticalPath, long startNanos) {
+            this.steps = steps;
+            this.criticalPath = criticalPath;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Retrieves the time from the start of the orchestrator until the last step of the critical path has completed.
+         *
+         * @return the critical path time in ms
+         */
+        public long getCriticalPathMillis() {
+            return criticalPath.isEmpty()
+                    ? 0
+                    : TimeUnit.NANOSECONDS.toMillis(criticalPath.get(criticalPath.size() - 1).endNanos - startNanos);
+        }
+
+        /**
+         * Retrieves the sum of the durations of all steps, i.e. the time a strictly sequential startup would take.
+         *
+         * @return the sum of the durations of all steps in ms
+         */
+        public long getSequentialMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(steps.stream().mapToLong(it -> it.endNanos - it.startNanos).sum());
+        }
+
+        public List<String> getCriticalPath() {
+            final List<String> names = new ArrayList<>(criticalPath.size());
+            for (final Step<?> step : criticalPath) {
+                names.add(step.name);
+            }
+            return names;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            try (final Formatter formatter = new Formatter(sb)) {
+                for (final Step<?> step : steps) {
+                    formatter.format("%s%-40s start: +%5d ms, took: %5d ms%n"
+                            , criticalPath.contains(step) ? "* " : "  "
+                            , step.name
+                            , TimeUnit.NANOSECONDS.toMillis(step.startNanos - startNanos)
+                            , TimeUnit.NANOSECONDS.toMillis(step.endNanos - step.startNanos));
+                }
+                formatter.format("critical path: %s%ncritical path time: %d ms, sequential time: %d ms"
+                        , String.join(" -> ", getCriticalPath())
+                        , getCriticalPathMillis()
+                        , getSequentialMillis());
+            }
+            return sb.toString();
+        }
+    }
+
+    public StartupOrchestrator() {
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "startup-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Adds a step to the dependency graph. The step will be executed after all of the passed dependencies have
+     * completed successfully. If one of the dependencies failed, the step fails as well without being executed.
+     *
+     * @param name         name of the step, used for reporting
+     * @param action       the code to execute, results of dependencies can be retrieved with {@link Step#get()}
+     * @param dependencies steps, which need to be completed before this step can be executed
+     * @param <T>          type of the result of the step
+     * @return the added step
+     */
+    public <T> Step<T> step(String name, Callable<T> action, Step<?>... dependencies) {
+        final List<Step<?>> dependencyList = Arrays.asList(dependencies);
+        final CompletableFuture<?>[] dependencyResults = new CompletableFuture<?>[dependencies.length + 1];
+        dependencyResults[0] = started;
+        for (int i = 0; i < dependencies.length; ++i) {
+            dependencyResults[i + 1] = dependencies[i].result;
+        }
+
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final Step<T> step = new Step<>(name, dependencyList, result);
+        CompletableFuture
+                .allOf(dependencyResults)
+                .whenCompleteAsync((ignored, dependencyFailure) -> {
+                    step.startNanos = System.nanoTime();
+                    try {
+                        if (null != dependencyFailure) {
+                            result.completeExceptionally(dependencyFailure);
+                        } else {
+                            result.complete(action.call());
+                        }
+                    } catch (final Exception exception) {
+                        result.completeExceptionally(exception);
+                    } finally {
+                        step.endNanos = System.nanoTime();
+                    }
+                }, executor);
+        steps.add(step);
+        return step;
+    }
+
+    /**
+     * Runs all steps added so far and waits for their completion.
+     *
+     * @return the timings of all steps and the critical path
+     * @throws Exception the failure of the first failed step
+     */
+    public Report run() throws Exception {
+        startNanos = System.nanoTime();
+        started.complete(null);
+        try {
+            CompletableFuture.allOf(steps.stream().map(it -> it.result).toArray(CompletableFuture[]::new)).join();
+        } catch (final CompletionException exception) {
+            final Throwable cause = null != exception.getCause() ? exception.getCause() : exception;
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw exception;
+        } finally {
+            executor.shutdown();
+        }
+        return new Report(Collections.unmodifiableList(steps), findCriticalPath(), startNanos);
+    }
+
+    /**
+     * Walks back from the step, which completed last, always following the dependency, which completed last.
+     */
+    private List<Step<?>> findCriticalPath() {
+        final LinkedList<Step<?>> path = new LinkedList<>();
+        Step<?> current = steps.stream().max(Comparator.comparingLong(it -> it.endNanos)).orElse(null);
+        while (null != current) {
+            path.addFirst(current);
+            current = current.dependencies.stream().max(Comparator.comparingLong(it -> it.endNanos)).orElse(null);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common;
+
+import com.damnhandy.uri.template.UriTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Expands URI templates, e.g. of HATEOAS templated links or of resources found in the CTMS Registry, without parsing
+ * them again for each expansion.
+ * <p>
+ * Parsed templates are cached by their template string. A parsed {@link UriTemplate} keeps the values of its last
+ * expansion, so expansions of the same template are serialized. Expanding is cheap compared to parsing, so this hardly
+ * matters. A service exposes a rather small set of templates, if the cache grows beyond MAX_CACHED_TEMPLATES anyway,
+ * it is cleared.
+ */
+public final class UriTemplates {
+    private static final int MAX_CACHED_TEMPLATES = 256;
+
+    private static final ConcurrentMap<String, UriTemplate> compiledTemplates = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Set<String>> variables = new ConcurrentHashMap<>();
+
+    private UriTemplates() {
+    }
+
+    /**
+     * Expands the passed template.
+     *
+     * @param template the URI template, e.g. "https://host/apis/avid.pam;version=0;realm=BEEF/locations/items/{id}"
+     * @param values   the values of the variables, variables without value are omitted
+     * @return the expanded URI
+     */
+    public static String expand(String template, Map<String, Object> values) {
+        final UriTemplate compiledTemplate = compile(template);
+        synchronized (compiledTemplate) {
+            return compiledTemplate.expand(values);
+        }
+    }
+
+    /**
+     * Expands the passed template with a single variable.
+     *
+     * @param template the URI template
+     * @param name     the name of the variable
+     * @param value    the value of the variable
+     * @return the expanded URI
+     */
+    public static String expand(String template, String name, Object value) {
+        return expand(template, Collections.singletonMap(name, value));
+    }
+
+    /**
+     * Checks, whether the passed template has the passed variable.
+     *
+     * @param template the URI template
+     * @param name     the name of the variable
+     * @return true, if the template has the variable
+     */
+    public static boolean hasVariable(String template, String name) {
+        return variables
+                .computeIfAbsent(template, it -> Collections.unmodifiableSet(new HashSet<>(Arrays.asList(compile(it).getVariables()))))
+                .contains(name);
+    }
+
+    private static UriTemplate compile(String template) {
+        final UriTemplate compiledTemplate = compiledTemplates.get(template);
+        if (null != compiledTemplate) {
+            return compiledTemplate;
+        }
+        if (MAX_CACHED_TEMPLATES <= compiledTemplates.size()) {
+            compiledTemplates.clear();
+            variables.clear();
+        }
+        return compiledTemplates.computeIfAbsent(template, UriTemplate::fromTemplate);
+    }
+}
@@ -15,12 +15,18 @@ public class LinksData {
 
     private List<LinkProperty> identityProviders;
     private List<LinkProperty> token;
+    private List<LinkProperty> extend;
+    private List<LinkProperty> removal;
 
     @JsonCreator
     public LinksData(@JsonProperty("auth:identity-providers") List<LinkProperty> identityProviders,
-                     @JsonProperty("auth:token") List<LinkProperty> token) {
+                     @JsonProperty("auth:token") List<LinkProperty> token,
+                     @JsonProperty("auth-token:extend") List<LinkProperty> extend,
+                     @JsonProperty("auth-token:removal") List<LinkProperty> removal) {
         this.identityProviders = identityProviders;
         this.token = token;
+        this.extend = extend;
+        this.removal = removal;
     }
 
     public List<LinkProperty> getIdentityProviders() {
@@ -30,4 +36,12 @@ public class LinksData {
     public List<LinkProperty> getToken() {
         return token;
     }
+
+    public List<LinkProperty> getExtend() {
+        return extend;
+    }
+
+    public List<LinkProperty> getRemoval() {
+        return removal;
+    }
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.data.token;
+
+import com.avid.ctms.examples.tools.common.data.LinksData;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class CurrentToken {
+    private final LinksData links;
+    private final String accessToken;
+
+    @JsonCreator
+    public CurrentToken(@JsonProperty("_links") LinksData links,
+                        @JsonProperty("accessToken") String accessToken) {
+        this.links = links;
+        this.accessToken = accessToken;
+    }
+
+    public LinksData getLinks() {
+        return links;
+    }
+
+    public String getAccessToken() {
+        return accessToken;
+    }
+}
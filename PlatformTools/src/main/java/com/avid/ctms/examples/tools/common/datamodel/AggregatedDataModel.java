@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.datamodel;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * The aggregated data model of a platform in a single language, as delivered by the "datamodel:aggregated-model"
+ * resource. The custom and common attributes are indexed by name (compared case-insensitively), so that attribute
+ * definitions can be looked up without scanning the document.
+ */
+public final class AggregatedDataModel {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String lang;
+    private final String eTag;
+    private final byte[] content;
+    private final List<JsonNode> customAttributes;
+    private final List<JsonNode> commonAttributes;
+    private final Map<String, JsonNode> attributesByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    private AggregatedDataModel(String lang, String eTag, byte[] content, List<JsonNode> customAttributes, List<JsonNode> commonAttributes) {
+        this.lang = lang;
+        this.eTag = eTag;
+        this.content = content;
+        this.customAttributes = Collections.unmodifiableList(customAttributes);
+        this.commonAttributes = Collections.unmodifiableList(commonAttributes);
+        // Common attributes win over custom attributes of the same name:
+        index(customAttributes);
+        index(commonAttributes);
+    }
+
+    /**
+     * Parses an aggregated data model document.
+     *
+     * @param lang    the IETF BCP 47 language tag the document was requested for, "" for the default language
+     * @param eTag    the entity tag of the document, may be null
+     * @param content the document
+     * @return the data model
+     * @throws IOException if the document is no JSON object
+     */
+    public static AggregatedDataModel parse(String lang, String eTag, byte[] content) throws IOException {
+        final JsonNode document = objectMapper.readTree(content);
+        if (null == document || !document.isObject()) {
+            throw new IOException("malformed aggregated data model");
+        }
+        final JsonNode attributes = document.path("attributes");
+        return new AggregatedDataModel(lang, eTag, content, flatten(attributes.get("custom")), flatten(attributes.get("common")));
+    }
+
+    private static List<JsonNode> flatten(JsonNode attributes) {
+        if (null == attributes || attributes.isNull()) {
+            return Collections.emptyList();
+        }
+        final List<JsonNode> attributeList = new ArrayList<>(attributes.isArray() ? attributes.size() : 1);
+        if (attributes.isArray()) {
+            attributes.forEach(attributeList::add);
+        } else {
+            attributeList.add(attributes);
+        }
+        return attributeList;
+    }
+
+    private void index(List<JsonNode> attributes) {
+        for (final JsonNode attribute : attributes) {
+            final String name = attribute.path("name").asText(null);
+            if (null != name) {
+                attributesByName.put(name, attribute);
+            }
+        }
+    }
+
+    public String getLang() {
+        return lang;
+    }
+
+    /**
+     * Retrieves the entity tag of the document, which is used to revalidate cached copies.
+     *
+     * @return the entity tag or null, if the service did not deliver one
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Retrieves the raw document.
+     *
+     * @return the document, must not be modified
+     */
+    byte[] getContent() {
+        return content;
+    }
+
+    public List<JsonNode> getCustomAttributes() {
+        return customAttributes;
+    }
+
+    public List<JsonNode> getCommonAttributes() {
+        return commonAttributes;
+    }
+
+    /**
+     * Looks up the definition of an attribute.
+     *
+     * @param name the name of the attribute, compared case-insensitively
+     * @return the definition of the attribute or empty, if the data model has no attribute of that name
+     */
+    public Optional<JsonNode> findAttribute(String name) {
+        return Optional.ofNullable(attributesByName.get(name));
+    }
+
+    /**
+     * Retrieves the names of all attributes of the data model.
+     *
+     * @return the attribute names, sorted case-insensitively
+     */
+    public Set<String> getAttributeNames() {
+        return Collections.unmodifiableSet(attributesByName.keySet());
+    }
+}
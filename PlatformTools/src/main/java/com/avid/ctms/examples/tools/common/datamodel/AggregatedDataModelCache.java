@@ -0,0 +1,249 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.datamodel;
+
+import com.avid.ctms.examples.tools.common.PlatformTools;
+import com.avid.ctms.examples.tools.common.UriTemplates;
+import kong.unirest.HttpResponse;
+import kong.unirest.Unirest;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caches the aggregated data models of a platform per language, in memory and on local disk.
+ * <p>
+ * A cached data model is used without asking the service, until revalidateAfter has passed since it was last
+ * validated. Then it is revalidated with a conditional request (If-None-Match), so that the document is only
+ * downloaded again, if it has changed. Data models cached on disk survive the process, so that the next run of a tool
+ * only needs a conditional request. If the service cannot be reached, a cached data model is used as is.
+ */
+public class AggregatedDataModelCache {
+    private static final Logger LOG = Logger.getLogger(AggregatedDataModelCache.class.getName());
+
+    /**
+     * The name of the resource in the CTMS Registry.
+     */
+    public static final String RESOURCE_NAME = "datamodel:aggregated-model";
+    /**
+     * The service type of the data model aggregator.
+     */
+    public static final String SERVICE_TYPE = "avid.ctms.datamodel.aggregator";
+
+    private static final int MAX_PARALLEL_REQUESTS = 8;
+
+    private final String uriTemplate;
+    private final Path directory;
+    private final long revalidateAfterNanos;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static class Entry {
+        AggregatedDataModel model;
+        long validatedAtNanos;
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param apiDomain       the platform, data models of different platforms are kept apart on disk
+     * @param uriTemplate     the URI template of the aggregated data model resource, variables: lang
+     * @param directory       the directory to cache data models in, null to only cache in memory
+     * @param revalidateAfter the time after which a cached data model is revalidated
+     */
+    public AggregatedDataModelCache(String apiDomain, String uriTemplate, Path directory, Duration revalidateAfter) {
+        this.uriTemplate = uriTemplate;
+        this.directory = null != directory
+                ? directory.resolve(fileName(apiDomain))
+                : null;
+        this.revalidateAfterNanos = revalidateAfter.toNanos();
+    }
+
+    /**
+     * Looks up the URI template of the aggregated data model resource in the CTMS Registry.
+     *
+     * @param apiDomain              address to get "auth"
+     * @param serviceVersion         the version of the data model aggregator
+     * @param registryServiceVersion version of the CTMS Registry to query
+     * @return the URI template, or a default URI template, if the CTMS Registry is unreachable or the resource could not
+     * be found
+     */
+    public static String findUriTemplate(String apiDomain, String serviceVersion, String registryServiceVersion) {
+        final String defaultAggregatedDataModelUriTemplate = String.format("https://%s/apis/%s;version=%s/aggregateddatamodel{?lang}", apiDomain, SERVICE_TYPE, serviceVersion);
+        return PlatformTools.findInRegistry(apiDomain, Collections.singletonList(SERVICE_TYPE), registryServiceVersion, RESOURCE_NAME, defaultAggregatedDataModelUriTemplate).get(0);
+    }
+
+    /**
+     * Retrieves the default directory to cache data models in.
+     *
+     * @return a directory below the temp directory
+     */
+    public static Path defaultDirectory() {
+        return Paths.get(System.getProperty("java.io.tmpdir"), "ctms-datamodel-cache");
+    }
+
+    /**
+     * Retrieves the aggregated data model in the passed language, either from the cache or from the service.
+     *
+     * @param lang an IETF BCP 47 language tag, such as "en-US", "" for the default language
+     * @return the data model
+     * @throws IOException if the data model is neither cached nor can be retrieved from the service
+     */
+    public AggregatedDataModel get(String lang) throws IOException {
+        final Entry entry = entries.computeIfAbsent(lang, it -> new Entry());
+        synchronized (entry) {
+            if (null == entry.model) {
+                entry.model = readFromDisk(lang);
+            } else if (System.nanoTime() - entry.validatedAtNanos < revalidateAfterNanos) {
+                return entry.model;
+            }
+
+            final String url = UriTemplates.expand(uriTemplate, "lang", lang);
+            try {
+                entry.model = request(url, lang, entry.model);
+                entry.validatedAtNanos = System.nanoTime();
+            } catch (final IOException | RuntimeException exception) {
+                if (null == entry.model) {
+                    throw exception;
+                }
+                LOG.log(Level.WARNING, "Revalidating <{0}> failed, using cached data model: {1}", new Object[] {url, exception.toString()});
+            }
+            return entry.model;
+        }
+    }
+
+    /**
+     * Retrieves the aggregated data models in the passed languages. The data models, which need to be requested or
+     * revalidated, are requested concurrently.
+     *
+     * @param langs IETF BCP 47 language tags, such as "en-US", "" for the default language
+     * @return the data models mapped by language tag, in the order of the passed language tags
+     * @throws IOException if one of the data models is neither cached nor can be retrieved from the service
+     */
+    public Map<String, AggregatedDataModel> getAll(Collection<String> langs) throws IOException {
+        final Set<String> distinctLangs = new LinkedHashSet<>(langs);
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(distinctLangs.size(), MAX_PARALLEL_REQUESTS)), runnable -> {
+            final Thread thread = new Thread(runnable, "datamodel-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final Map<String, Future<AggregatedDataModel>> pending = new LinkedHashMap<>();
+            for (final String lang : distinctLangs) {
+                pending.put(lang, executor.submit(() -> get(lang)));
+            }
+
+            final Map<String, AggregatedDataModel> models = new LinkedHashMap<>();
+            for (final Map.Entry<String, Future<AggregatedDataModel>> model : pending.entrySet()) {
+                try {
+                    models.put(model.getKey(), model.getValue().get());
+                } catch (final ExecutionException exception) {
+                    if (exception.getCause() instanceof IOException) {
+                        throw (IOException) exception.getCause();
+                    }
+                    throw new IOException(String.format("Retrieving data model for lang \"%s\" failed", model.getKey()), exception.getCause());
+                }
+            }
+            return models;
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while retrieving data models");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Requests the data model, conditionally if a cached copy exists.
+     *
+     * @return the cached copy, if it is still valid, otherwise the downloaded data model
+     */
+    private AggregatedDataModel request(String url, String lang, AggregatedDataModel cached) throws IOException {
+        final HttpResponse<byte[]> response
+                = null != cached && null != cached.getETag()
+                ? Unirest.get(url).header(HttpHeaders.IF_NONE_MATCH, cached.getETag()).asBytes()
+                : Unirest.get(url).asBytes();
+
+        if (HttpURLConnection.HTTP_NOT_MODIFIED == response.getStatus() && null != cached) {
+            LOG.log(Level.FINE, "Data model <{0}> not modified", url);
+            return cached;
+        }
+        if (HttpURLConnection.HTTP_OK != response.getStatus()) {
+            throw new IOException(String.format("Problem accessing <%s> - %d %s", url, response.getStatus(), response.getStatusText()));
+        }
+
+        final AggregatedDataModel model = AggregatedDataModel.parse(lang, response.getHeaders().getFirst(HttpHeaders.ETAG), response.getBody());
+        writeToDisk(model);
+        return model;
+    }
+
+    private AggregatedDataModel readFromDisk(String lang) {
+        if (null == directory) {
+            return null;
+        }
+        final Path contentFile = directory.resolve(fileName(lang) + ".json");
+        final Path eTagFile = directory.resolve(fileName(lang) + ".etag");
+        if (!Files.isRegularFile(contentFile)) {
+            return null;
+        }
+        try {
+            final String eTag = Files.isRegularFile(eTagFile)
+                    ? new String(Files.readAllBytes(eTagFile), StandardCharsets.UTF_8)
+                    : null;
+            return AggregatedDataModel.parse(lang, eTag, Files.readAllBytes(contentFile));
+        } catch (final IOException exception) {
+            LOG.log(Level.WARNING, "Ignoring unreadable cached data model <{0}>: {1}", new Object[] {contentFile, exception.toString()});
+            return null;
+        }
+    }
+
+    private void writeToDisk(AggregatedDataModel model) {
+        if (null == directory) {
+            return;
+        }
+        final String baseName = fileName(model.getLang());
+        try {
+            Files.createDirectories(directory);
+            // The content is written before the ETag, so that an interrupted write leaves at most a stale ETag, which
+            // only causes a full download:
+            Files.deleteIfExists(directory.resolve(baseName + ".etag"));
+            write(directory.resolve(baseName + ".json"), model.getContent());
+            if (null != model.getETag()) {
+                write(directory.resolve(baseName + ".etag"), model.getETag().getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (final IOException exception) {
+            LOG.log(Level.WARNING, "Caching data model in <{0}> failed: {1}", new Object[] {directory, exception.toString()});
+        }
+    }
+
+    /**
+     * Replaces the passed file atomically, so that readers never see a partially written file.
+     */
+    private static void write(Path file, byte[] content) throws IOException {
+        final Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tempFile, content);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static String fileName(String name) {
+        return name.isEmpty()
+                ? "default"
+                : name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.datamodel;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.*;
+
+/**
+ * Merges the aggregated data models of several languages into one table of attributes, keyed by attribute id, with
+ * the labels of each attribute per language. Attributes without an "id" are keyed by their name.
+ */
+public final class LocalizedAttributeTable {
+    private final List<String> langs;
+    private final Map<String, LocalizedAttribute> attributes;
+
+    /**
+     * An attribute with its labels per language.
+     */
+    public static final class LocalizedAttribute {
+        public final String id;
+        public final String name;
+        private final Map<String, String> labels = new LinkedHashMap<>();
+
+        private LocalizedAttribute(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        /**
+         * Retrieves the labels of the attribute.
+         *
+         * @return the labels mapped by language tag, languages without a label are missing
+         */
+        public Map<String, String> getLabels() {
+            return Collections.unmodifiableMap(labels);
+        }
+
+        /**
+         * Retrieves the label of the attribute in the passed language.
+         *
+         * @param lang the language tag
+         * @return the label or null, if the data model of that language has no label for the attribute
+         */
+        public String getLabel(String lang) {
+            return labels.get(lang);
+        }
+    }
+
+    private LocalizedAttributeTable(List<String> langs, Map<String, LocalizedAttribute> attributes) {
+        this.langs = Collections.unmodifiableList(langs);
+        this.attributes = Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * Merges the passed data models.
+     *
+     * @param models the data models mapped by language tag, e.g. as returned by
+     *               {@link AggregatedDataModelCache#getAll(Collection)}
+     * @return the merged table, the attributes are sorted by id
+     */
+    public static LocalizedAttributeTable merge(Map<String, AggregatedDataModel> models) {
+        final Map<String, LocalizedAttribute> attributes = new TreeMap<>();
+        for (final Map.Entry<String, AggregatedDataModel> model : models.entrySet()) {
+            merge(attributes, model.getKey(), model.getValue().getCustomAttributes());
+            merge(attributes, model.getKey(), model.getValue().getCommonAttributes());
+        }
+        return new LocalizedAttributeTable(new ArrayList<>(models.keySet()), attributes);
+    }
+
+    private static void merge(Map<String, LocalizedAttribute> attributes, String lang, List<JsonNode> definitions) {
+        for (final JsonNode definition : definitions) {
+            final String name = definition.path("name").asText(null);
+            final String id = definition.path("id").asText(name);
+            if (null == id) {
+                continue;
+            }
+
+            final LocalizedAttribute attribute = attributes.computeIfAbsent(id, it -> new LocalizedAttribute(id, name));
+            final String label = definition.path("label").asText(null);
+            if (null != label) {
+                attribute.labels.put(lang, label);
+            }
+        }
+    }
+
+    public List<String> getLangs() {
+        return langs;
+    }
+
+    /**
+     * Retrieves the attributes.
+     *
+     * @return the attributes mapped by id
+     */
+    public Map<String, LocalizedAttribute> getAttributes() {
+        return attributes;
+    }
+}
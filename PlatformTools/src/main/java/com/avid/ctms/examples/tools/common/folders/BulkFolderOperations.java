@@ -0,0 +1,414 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.folders;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import kong.unirest.HttpResponse;
+import kong.unirest.JsonNode;
+import kong.unirest.Unirest;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Executes batches of folder operations (create, rename, delete) with bounded concurrency and a rate limit per service.
+ * <p>
+ * Commands are executed as soon as the folders they depend on are available, not necessarily in the order of the
+ * batch:
+ * <ul>
+ *     <li>A folder is created after its parent has been created, if the parent is created in the same batch.</li>
+ *     <li>A folder is renamed or deleted after all earlier commands of the batch, which operate on the folder, create
+ *     folders in it or operate on its child folders created in the batch, have completed.</li>
+ *     <li>Commands depending on a folder, which could not be created, are skipped and reported as failed.</li>
+ * </ul>
+ * The batch is read lazily, so that huge batches can be streamed without being held in memory.
+ */
+public class BulkFolderOperations {
+    /**
+     * The count of commands per worker, which may be waiting for execution, before reading the batch is paused.
+     */
+    private static final int QUEUED_COMMANDS_PER_WORKER = 16;
+
+    private final int maxConcurrency;
+    private final double requestsPerSecond;
+    private final ConcurrentMap<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * The result of a single command.
+     */
+    public static final class Outcome {
+        public final FolderCommand command;
+        /**
+         * The URL of the created, renamed or deleted folder, null if the folder could not be resolved.
+         */
+        public final String url;
+        /**
+         * The HTTP status of the request, -1 if no response has been received.
+         */
+        public final int status;
+        /**
+         * The latency of the request in nanoseconds, 0 if no request has been issued.
+         */
+        public final long latencyNanos;
+        /**
+         * The reason of the failure, null if the command succeeded.
+         */
+        public final String failure;
+
+        private Outcome(FolderCommand command, String url, int status, long latencyNanos, String failure) {
+            this.command = command;
+            this.url = url;
+            this.status = status;
+            this.latencyNanos = latencyNanos;
+            this.failure = failure;
+        }
+
+        public boolean isSuccess() {
+            return null == failure;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %s (%d, %d ms)", command, isSuccess() ? "ok" : failure, status, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        }
+    }
+
+    /**
+     * Summarizes the outcomes of a batch.
+     */
+    public static final class Report {
+        private final Map<FolderCommand.Kind, LongAdder> succeeded = new EnumMap<>(FolderCommand.Kind.class);
+        private final Map<FolderCommand.Kind, LongAdder> failed = new EnumMap<>(FolderCommand.Kind.class);
+        private final Map<FolderCommand.Kind, LongAdder> latencyNanos = new EnumMap<>(FolderCommand.Kind.class);
+        private final Map<FolderCommand.Kind, LongAdder> requests = new EnumMap<>(FolderCommand.Kind.class);
+        private final Map<FolderCommand.Kind, Long> maxLatencyNanos = new EnumMap<>(FolderCommand.Kind.class);
+        private final List<Outcome> failures = new ArrayList<>();
+
+        private Report() {
+            for (final FolderCommand.Kind kind : FolderCommand.Kind.values()) {
+                succeeded.put(kind, new LongAdder());
+                failed.put(kind, new LongAdder());
+                latencyNanos.put(kind, new LongAdder());
+                requests.put(kind, new LongAdder());
+                maxLatencyNanos.put(kind, 0L);
+            }
+        }
+
+        private void add(Outcome outcome) {
+            final FolderCommand.Kind kind = outcome.command.kind;
+            (outcome.isSuccess() ? succeeded : failed).get(kind).increment();
+            if (0 < outcome.latencyNanos) {
+                requests.get(kind).increment();
+                latencyNanos.get(kind).add(outcome.latencyNanos);
+            }
+            synchronized (this) {
+                maxLatencyNanos.merge(kind, outcome.latencyNanos, Math::max);
+                if (!outcome.isSuccess()) {
+                    failures.add(outcome);
+                }
+            }
+        }
+
+        public long getSucceeded(FolderCommand.Kind kind) {
+            return succeeded.get(kind).sum();
+        }
+
+        public long getFailed(FolderCommand.Kind kind) {
+            return failed.get(kind).sum();
+        }
+
+        /**
+         * Retrieves the mean latency of the requests of the passed kind.
+         *
+         * @param kind the kind of command
+         * @return the mean latency in milliseconds, 0 if no request has been issued
+         */
+        public double getMeanLatencyMillis(FolderCommand.Kind kind) {
+            final long requestCount = requests.get(kind).sum();
+            return 0 < requestCount
+                    ? latencyNanos.get(kind).sum() / 1e6 / requestCount
+                    : 0;
+        }
+
+        public synchronized long getMaxLatencyMillis(FolderCommand.Kind kind) {
+            return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get(kind));
+        }
+
+        /**
+         * @return the outcomes of the failed and skipped commands
+         */
+        public synchronized List<Outcome> getFailures() {
+            return new ArrayList<>(failures);
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            for (final FolderCommand.Kind kind : FolderCommand.Kind.values()) {
+                if (0 < sb.length()) {
+                    sb.append("; ");
+                }
+                sb.append(String.format(
+                        "%s: %d ok, %d failed, latency mean %.1f ms, max %d ms"
+                        , kind.name().toLowerCase(Locale.ROOT)
+                        , getSucceeded(kind)
+                        , getFailed(kind)
+                        , getMeanLatencyMillis(kind)
+                        , getMaxLatencyMillis(kind)));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param maxConcurrency    the maximum count of requests in flight
+     * @param requestsPerSecond the maximum count of requests per second and service, 0 for no limit
+     */
+    public BulkFolderOperations(int maxConcurrency, double requestsPerSecond) {
+        if (0 >= maxConcurrency) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    /**
+     * Executes the passed batch and waits until all commands have completed.
+     *
+     * @param commands the batch
+     * @return the report of the batch
+     * @throws InterruptedException if interrupted while waiting, outstanding commands are abandoned
+     */
+    public Report execute(Stream<FolderCommand> commands) throws InterruptedException {
+        return execute(commands, outcome -> {});
+    }
+
+    /**
+     * Executes the passed batch and waits until all commands have completed.
+     *
+     * @param commands the batch
+     * @param listener is notified of the outcome of each command, when the command has completed
+     * @return the report of the batch
+     * @throws InterruptedException if interrupted while waiting, outstanding commands are abandoned
+     */
+    public Report execute(Stream<FolderCommand> commands, Consumer<Outcome> listener) throws InterruptedException {
+        final Batch batch = new Batch(listener);
+        try {
+            for (final FolderCommand command : (Iterable<FolderCommand>) commands::iterator) {
+                batch.submit(command);
+            }
+            batch.await();
+        } finally {
+            batch.executor.shutdownNow();
+        }
+        return batch.report;
+    }
+
+    /**
+     * The state of a single execution. Commands are submitted from a single thread, only the outcomes complete on the
+     * workers.
+     */
+    private class Batch {
+        private final Report report = new Report();
+        private final Consumer<Outcome> listener;
+        private final ExecutorService executor;
+        private final int maxQueuedCommands = maxConcurrency * QUEUED_COMMANDS_PER_WORKER;
+        private final Semaphore queuedCommands = new Semaphore(maxQueuedCommands);
+        private final Map<String, CompletableFuture<String>> createdFolders = new HashMap<>();
+        private final Map<String, FolderRef> parentsOfCreatedFolders = new HashMap<>();
+        private final Map<FolderRef, Lane> lanes = new HashMap<>();
+
+        Batch(Consumer<Outcome> listener) {
+            this.listener = listener;
+            final AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+                final Thread thread = new Thread(runnable, "folder-operations-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        void submit(FolderCommand command) throws InterruptedException {
+            queuedCommands.acquire();
+
+            final Lane lane = lanes.computeIfAbsent(command.folder, it -> new Lane());
+            final CompletableFuture<?> predecessors = FolderCommand.Kind.CREATE == command.kind
+                    ? lane.barrier
+                    : lane.all();
+            final CompletableFuture<String> folderUrl = resolve(command.folder);
+
+            final CompletableFuture<Outcome> outcome
+                    = CompletableFuture
+                    .allOf(predecessors, folderUrl)
+                    .handleAsync((ignored, failure) -> null != failure
+                            ? new Outcome(command, null, -1, 0, "skipped: " + rootCause(failure))
+                            : perform(command, folderUrl.join()), executor)
+                    .whenComplete((completed, failure) -> {
+                        try {
+                            if (null != completed) {
+                                report.add(completed);
+                                listener.accept(completed);
+                            }
+                        } finally {
+                            queuedCommands.release();
+                        }
+                    });
+
+            if (FolderCommand.Kind.CREATE == command.kind) {
+                lane.add(outcome);
+                parentsOfCreatedFolders.put(command.key, command.folder);
+                createdFolders.put(command.key, outcome.thenApply(created -> {
+                    if (!created.isSuccess()) {
+                        throw new IllegalStateException(String.format("creation of #%s failed", command.key));
+                    }
+                    return created.url;
+                }));
+            } else {
+                lane.barrier(outcome);
+                // The parent must not be renamed or deleted before this command has completed:
+                final FolderRef parent = null != command.folder.getKey()
+                        ? parentsOfCreatedFolders.get(command.folder.getKey())
+                        : null;
+                if (null != parent) {
+                    lanes.computeIfAbsent(parent, it -> new Lane()).add(outcome);
+                }
+            }
+        }
+
+        /**
+         * Waits until all submitted commands have completed.
+         */
+        void await() throws InterruptedException {
+            queuedCommands.acquire(maxQueuedCommands);
+            queuedCommands.release(maxQueuedCommands);
+        }
+
+        private CompletableFuture<String> resolve(FolderRef folder) {
+            if (null != folder.getUrl()) {
+                return CompletableFuture.completedFuture(folder.getUrl());
+            }
+            final CompletableFuture<String> createdFolder = createdFolders.get(folder.getKey());
+            if (null == createdFolder) {
+                final CompletableFuture<String> unknown = new CompletableFuture<>();
+                unknown.completeExceptionally(new IllegalArgumentException(String.format("#%s is not created by an earlier command", folder.getKey())));
+                return unknown;
+            }
+            return createdFolder;
+        }
+
+        private Outcome perform(FolderCommand command, String url) {
+            try {
+                rateLimiter(url).acquire();
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return new Outcome(command, url, -1, 0, "interrupted");
+            }
+
+            final long then = System.nanoTime();
+            try {
+                final HttpResponse<JsonNode> response;
+                switch (command.kind) {
+                    case CREATE:
+                        response = Unirest.post(url).header(HttpHeaders.CONTENT_TYPE, "application/json").body(nameDescription(command.name)).asJson();
+                        break;
+                    case RENAME:
+                        response = Unirest.patch(url).header(HttpHeaders.CONTENT_TYPE, "application/json").body(nameDescription(command.name)).asJson();
+                        break;
+                    default:
+                        response = Unirest.delete(url).asJson();
+                        break;
+                }
+                final long latencyNanos = Math.max(1, System.nanoTime() - then);
+
+                final int status = response.getStatus();
+                final boolean success
+                        = FolderCommand.Kind.DELETE == command.kind
+                        ? HttpURLConnection.HTTP_NO_CONTENT == status || HttpURLConnection.HTTP_OK == status
+                        : HttpURLConnection.HTTP_OK == status || HttpURLConnection.HTTP_CREATED == status;
+                if (!success) {
+                    return new Outcome(command, url, status, latencyNanos, String.format("%d %s", status, response.getStatusText()));
+                }
+                final String resultUrl
+                        = FolderCommand.Kind.CREATE == command.kind
+                        ? response.getBody().getObject().getJSONObject("_links").getJSONObject("self").getString("href")
+                        : url;
+                return new Outcome(command, resultUrl, status, latencyNanos, null);
+            } catch (final RuntimeException exception) {
+                return new Outcome(command, url, -1, Math.max(1, System.nanoTime() - then), exception.toString());
+            }
+        }
+    }
+
+    /**
+     * Tracks the commands operating on a single folder: the last rename/delete (the barrier) and the commands on child
+     * folders submitted since.
+     */
+    private static class Lane {
+        private static final int PRUNE_THRESHOLD = 64;
+
+        private CompletableFuture<?> barrier = CompletableFuture.completedFuture(null);
+        private final List<CompletableFuture<?>> sinceBarrier = new ArrayList<>();
+
+        void add(CompletableFuture<?> childCommand) {
+            if (PRUNE_THRESHOLD <= sinceBarrier.size()) {
+                sinceBarrier.removeIf(CompletableFuture::isDone);
+            }
+            sinceBarrier.add(childCommand);
+        }
+
+        void barrier(CompletableFuture<?> command) {
+            barrier = command;
+            sinceBarrier.clear();
+        }
+
+        CompletableFuture<?> all() {
+            if (sinceBarrier.isEmpty()) {
+                return barrier;
+            }
+            final List<CompletableFuture<?>> all = new ArrayList<>(sinceBarrier);
+            all.add(barrier);
+            return CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0]));
+        }
+    }
+
+    RateLimiter rateLimiter(String url) {
+        return rateLimiters.computeIfAbsent(serviceOf(url), it -> new RateLimiter(requestsPerSecond));
+    }
+
+    /**
+     * Determines the service of the passed URL, i.e. the authority and the "apis/{serviceType};version;realm" path
+     * segment, if present.
+     */
+    static String serviceOf(String url) {
+        final URI uri = URI.create(url);
+        final String path = Objects.toString(uri.getRawPath(), "");
+        final int apis = path.indexOf("/apis/");
+        final int end = 0 <= apis
+                ? path.indexOf('/', apis + "/apis/".length())
+                : -1;
+        return uri.getAuthority() + (0 <= end ? path.substring(0, end) : "");
+    }
+
+    private static String nameDescription(String name) {
+        return "{\"common\": {\"name\": \"" + new String(JsonStringEncoder.getInstance().quoteAsString(name)) + "\"}}";
+    }
+
+    private static String rootCause(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && null != cause.getCause()) {
+            cause = cause.getCause();
+        }
+        return Objects.toString(cause.getMessage(), cause.toString());
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.folders;
+
+import com.avid.ctms.examples.tools.common.CompactItemInfo;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Recreates the structure of a local directory tree as folders below a CTMS folder. Only directories are mirrored,
+ * files are ignored.
+ * <p>
+ * Mirroring is done in two phases:
+ * <ol>
+ *     <li>The folders, which already exist, are listed concurrently, one listing per existing parent folder. Existing
+ *     folders (same name) are skipped, so that a re-run only costs the listings.</li>
+ *     <li>The missing subtrees are created with {@link BulkFolderOperations}: the child folders of a folder are
+ *     created concurrently as soon as the folder exists.</li>
+ * </ol>
+ */
+public class DirectoryMirror {
+    private static final Logger LOG = Logger.getLogger(DirectoryMirror.class.getName());
+
+    private final int maxConcurrency;
+    private final BulkFolderOperations operations;
+
+    /**
+     * The result of mirroring a directory tree.
+     */
+    public static final class Result {
+        private final long existingFolders;
+        private final long listings;
+        private final List<String> listingFailures;
+        private final BulkFolderOperations.Report report;
+
+        private Result(long existingFolders, long listings, List<String> listingFailures, BulkFolderOperations.Report report) {
+            this.existingFolders = existingFolders;
+            this.listings = listings;
+            this.listingFailures = Collections.unmodifiableList(listingFailures);
+            this.report = report;
+        }
+
+        /**
+         * @return the count of directories, for which a folder already existed
+         */
+        public long getExistingFolders() {
+            return existingFolders;
+        }
+
+        public long getListings() {
+            return listings;
+        }
+
+        /**
+         * @return the folders, which could not be listed, their subtrees have not been mirrored
+         */
+        public List<String> getListingFailures() {
+            return listingFailures;
+        }
+
+        /**
+         * @return the report of creating the missing folders
+         */
+        public BulkFolderOperations.Report getReport() {
+            return report;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("existing: %d, listings: %d, listing failures: %d, %s", existingFolders, listings, listingFailures.size(), report);
+        }
+    }
+
+    /**
+     * A directory of the local tree.
+     */
+    private static class Node {
+        final String name;
+        final String key;
+        final List<Node> children = new ArrayList<>();
+
+        Node(String name, String key) {
+            this.name = name;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Creates a mirror.
+     *
+     * @param maxConcurrency    the maximum count of requests in flight
+     * @param requestsPerSecond the maximum count of requests per second and service, 0 for no limit
+     */
+    public DirectoryMirror(int maxConcurrency, double requestsPerSecond) {
+        this.maxConcurrency = maxConcurrency;
+        this.operations = new BulkFolderOperations(maxConcurrency, requestsPerSecond);
+    }
+
+    /**
+     * Mirrors the subdirectories of the passed directory below the passed folder.
+     *
+     * @param directory the root of the local tree, the directory itself is not mirrored, only its subdirectories
+     * @param folderUrl the URL of the folder to mirror the tree into
+     * @param listener  is notified of the outcome of each folder creation
+     * @return the result
+     * @throws IOException          if the local tree could not be read
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Result mirror(Path directory, String folderUrl, Consumer<BulkFolderOperations.Outcome> listener) throws IOException, InterruptedException {
+        final Node root = scan(directory);
+
+        final Reconciliation reconciliation = new Reconciliation();
+        try {
+            reconciliation.reconcile(root, folderUrl, 0);
+            reconciliation.done.get();
+        } catch (final ExecutionException exception) {
+            throw new IOException(exception.getCause());
+        } finally {
+            reconciliation.executor.shutdownNow();
+        }
+        LOG.log(Level.FINE, "{0} existing folders, {1} folders to create", new Object[] {reconciliation.existingFolders, reconciliation.commands.size()});
+
+        final BulkFolderOperations.Report report = operations.execute(reconciliation.commands.stream(), listener);
+        return new Result(reconciliation.existingFolders.sum(), reconciliation.listings.sum(), new ArrayList<>(reconciliation.listingFailures), report);
+    }
+
+    /**
+     * Reads the directory tree, the directories are keyed by their path relative to the root.
+     */
+    private static Node scan(Path directory) throws IOException {
+        final Deque<Node> path = new ArrayDeque<>();
+        final Node[] root = new Node[1];
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                final Node node = new Node(Objects.toString(dir.getFileName(), ""), directory.relativize(dir).toString());
+                if (path.isEmpty()) {
+                    root[0] = node;
+                } else {
+                    path.peek().children.add(node);
+                }
+                path.push(node);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exception) {
+                path.pop();
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exception) {
+                LOG.log(Level.WARNING, "Skipping <{0}>: {1}", new Object[] {file, exception.toString()});
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (null == root[0]) {
+            throw new NotDirectoryException(directory.toString());
+        }
+        return root[0];
+    }
+
+    /**
+     * Lists the existing folders concurrently and collects the commands to create the missing ones.
+     */
+    private class Reconciliation {
+        final ExecutorService executor;
+        final Queue<FolderCommand> commands = new ConcurrentLinkedQueue<>();
+        final Queue<String> listingFailures = new ConcurrentLinkedQueue<>();
+        final LongAdder existingFolders = new LongAdder();
+        final LongAdder listings = new LongAdder();
+        final AtomicInteger pending = new AtomicInteger();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Reconciliation() {
+            final AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+                final Thread thread = new Thread(runnable, "directory-mirror-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        /**
+         * Lists the passed existing folder and matches its items against the subdirectories of the passed node.
+         */
+        void reconcile(Node node, String folderUrl, int depth) {
+            if (node.children.isEmpty()) {
+                if (0 == depth) {
+                    done.complete(null);
+                }
+                return;
+            }
+
+            pending.incrementAndGet();
+            executor.execute(() -> {
+                try {
+                    operations.rateLimiter(folderUrl).acquire();
+                    final Map<String, String> existing = new HashMap<>();
+                    for (final CompactItemInfo item : FolderListing.children(folderUrl, depth)) {
+                        if (FolderListing.isFolder(item) && null != item.name) {
+                            existing.putIfAbsent(item.name, item.href);
+                        }
+                    }
+                    listings.increment();
+
+                    for (final Node child : node.children) {
+                        final String childUrl = existing.get(child.name);
+                        if (null != childUrl) {
+                            existingFolders.increment();
+                            reconcile(child, childUrl, depth + 1);
+                        } else {
+                            createSubtree(child, FolderRef.url(folderUrl));
+                        }
+                    }
+                } catch (final IOException | RuntimeException exception) {
+                    listingFailures.add(String.format("<%s>: %s", folderUrl, exception));
+                } catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    listingFailures.add(String.format("<%s>: interrupted", folderUrl));
+                } finally {
+                    if (0 == pending.decrementAndGet()) {
+                        done.complete(null);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Adds the commands to create the passed directory and its subdirectories, parents before children.
+         */
+        private void createSubtree(Node node, FolderRef parent) {
+            commands.add(FolderCommand.create(node.key, parent, node.name));
+            for (final Node child : node.children) {
+                createSubtree(child, FolderRef.created(node.key));
+            }
+        }
+    }
+}
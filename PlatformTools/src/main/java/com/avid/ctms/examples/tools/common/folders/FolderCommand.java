@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.folders;
+
+import java.util.Objects;
+
+/**
+ * A single folder operation of a batch executed by {@link BulkFolderOperations}: create, rename or delete a folder.
+ */
+public final class FolderCommand {
+    public enum Kind {
+        CREATE, RENAME, DELETE
+    }
+
+    public final Kind kind;
+    /**
+     * The folder to operate on: the parent folder for CREATE, the folder itself for RENAME and DELETE.
+     */
+    public final FolderRef folder;
+    /**
+     * The name of the new folder for CREATE, the new name for RENAME, null for DELETE.
+     */
+    public final String name;
+    /**
+     * The key, by which later commands of the batch can reference the folder created by a CREATE command, null for
+     * other commands.
+     */
+    public final String key;
+
+    private FolderCommand(Kind kind, FolderRef folder, String name, String key) {
+        this.kind = kind;
+        this.folder = Objects.requireNonNull(folder);
+        this.name = name;
+        this.key = key;
+    }
+
+    /**
+     * Creates a command to create a folder.
+     *
+     * @param key    the key, by which later commands can reference the new folder with {@link FolderRef#created(String)}
+     * @param parent the parent folder
+     * @param name   the name of the new folder
+     * @return the command
+     */
+    public static FolderCommand create(String key, FolderRef parent, String name) {
+        return new FolderCommand(Kind.CREATE, parent, Objects.requireNonNull(name), Objects.requireNonNull(key));
+    }
+
+    /**
+     * Creates a command to rename a folder.
+     *
+     * @param folder  the folder
+     * @param newName the new name of the folder
+     * @return the command
+     */
+    public static FolderCommand rename(FolderRef folder, String newName) {
+        return new FolderCommand(Kind.RENAME, folder, Objects.requireNonNull(newName), null);
+    }
+
+    /**
+     * Creates a command to delete a folder.
+     *
+     * @param folder the folder
+     * @return the command
+     */
+    public static FolderCommand delete(FolderRef folder) {
+        return new FolderCommand(Kind.DELETE, folder, null, null);
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case CREATE:
+                return String.format("create %s in %s as #%s", name, folder, key);
+            case RENAME:
+                return String.format("rename %s to %s", folder, name);
+            default:
+                return String.format("delete %s", folder);
+        }
+    }
+}
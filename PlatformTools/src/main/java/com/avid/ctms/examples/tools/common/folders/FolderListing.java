@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.folders;
+
+import com.avid.ctms.examples.tools.common.CollectionPageReader;
+import com.avid.ctms.examples.tools.common.CompactItemInfo;
+import com.avid.ctms.examples.tools.common.jfr.PageFetchEvent;
+import kong.unirest.HttpResponse;
+import kong.unirest.Unirest;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists the direct items of a folder, page by page.
+ */
+final class FolderListing {
+    private static final CollectionPageReader<CompactItemInfo> PAGE_READER = CompactItemInfo.reader(false);
+
+    private FolderListing() {
+    }
+
+    /**
+     * Retrieves the direct items of the passed folder.
+     *
+     * @param folderUrl the URL of the folder
+     * @param depth     the depth of the folder, the items get depth + 1
+     * @return the items of the folder
+     * @throws IOException if a page of the folder could not be retrieved
+     */
+    static List<CompactItemInfo> children(String folderUrl, int depth) throws IOException {
+        final List<CompactItemInfo> children = new ArrayList<>();
+        String pageUrl = folderUrl;
+        while (null != pageUrl) {
+            final PageFetchEvent event = new PageFetchEvent();
+            event.begin();
+            event.url = pageUrl;
+            final int itemsBefore = children.size();
+            final HttpResponse<CollectionPageReader.Page<CompactItemInfo>> response;
+            try {
+                response = Unirest.get(pageUrl.replace(" ", "%20")).asObject(PAGE_READER.bodyHandler(depth, children::add));
+                event.status = response.getStatus();
+            } finally {
+                event.items = children.size() - itemsBefore;
+                event.commit();
+            }
+            if (HttpURLConnection.HTTP_OK != response.getStatus() || null == response.getBody()) {
+                throw new HttpStatusException(pageUrl, response.getStatus(), response.getStatusText());
+            }
+            pageUrl = response.getBody().getNext();
+        }
+        return children;
+    }
+
+    /**
+     * Checks, whether the passed item is a folder.
+     */
+    static boolean isFolder(CompactItemInfo item) {
+        return item.hasChildren || "folder".equalsIgnoreCase(item.type);
+    }
+}
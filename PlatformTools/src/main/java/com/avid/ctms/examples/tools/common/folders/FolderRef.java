@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.folders;
+
+import java.util.Objects;
+
+/**
+ * References a folder in a batch of {@link FolderCommand}s: either an existing folder by its URL or a folder, which is
+ * created by an earlier command of the same batch, by the key of that command.
+ */
+public final class FolderRef {
+    private final String url;
+    private final String key;
+
+    private FolderRef(String url, String key) {
+        this.url = url;
+        this.key = key;
+    }
+
+    /**
+     * References an existing folder.
+     *
+     * @param url the URL of the folder
+     * @return the reference
+     */
+    public static FolderRef url(String url) {
+        return new FolderRef(Objects.requireNonNull(url), null);
+    }
+
+    /**
+     * References a folder created by an earlier command of the same batch.
+     *
+     * @param key the key of the create command
+     * @return the reference
+     */
+    public static FolderRef created(String key) {
+        return new FolderRef(null, Objects.requireNonNull(key));
+    }
+
+    /**
+     * @return the URL of the existing folder or null, if the folder is created in the same batch
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the key of the create command or null, if the folder already exists
+     */
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (null == o || getClass() != o.getClass()) {
+            return false;
+        }
+        final FolderRef other = (FolderRef) o;
+        return Objects.equals(url, other.url) && Objects.equals(key, other.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(url, key);
+    }
+
+    @Override
+    public String toString() {
+        return null != url
+                ? "<" + url + ">"
+                : "#" + key;
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.folders;
+
+import java.io.IOException;
+
+/**
+ * A request failed with an unexpected HTTP status.
+ */
+class HttpStatusException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    HttpStatusException(String url, int status, String statusText) {
+        super(String.format("<%s>: %d %s", url, status, statusText));
+        this.status = status;
+    }
+
+    int getStatus() {
+        return status;
+    }
+}
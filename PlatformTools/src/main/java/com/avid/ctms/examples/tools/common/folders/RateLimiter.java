@@ -0,0 +1,44 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.folders;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out requests evenly, so that not more than the configured count of requests per second is issued. Callers,
+ * which exceed the rate, are blocked until their slot has come.
+ */
+final class RateLimiter {
+    private final long intervalNanos;
+    private long nextFreeNanos = System.nanoTime();
+
+    /**
+     * @param requestsPerSecond the maximum rate, 0 or less for no limit
+     */
+    RateLimiter(double requestsPerSecond) {
+        this.intervalNanos = 0 < requestsPerSecond
+                ? (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond)
+                : 0;
+    }
+
+    void acquire() throws InterruptedException {
+        if (0 < intervalNanos) {
+            final long waitNanos = reserve();
+            if (0 < waitNanos) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+    }
+
+    private synchronized long reserve() {
+        final long now = System.nanoTime();
+        if (nextFreeNanos - now < 0) {
+            nextFreeNanos = now;
+        }
+        final long waitNanos = nextFreeNanos - now;
+        nextFreeNanos += intervalNanos;
+        return waitNanos;
+    }
+}
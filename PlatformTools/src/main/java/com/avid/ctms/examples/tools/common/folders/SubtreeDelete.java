@@ -0,0 +1,262 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.folders;
+
+import com.avid.ctms.examples.tools.common.CompactItemInfo;
+import kong.unirest.HttpResponse;
+import kong.unirest.Unirest;
+import kong.unirest.UnirestException;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Deletes a folder with all its subfolders.
+ * <p>
+ * First the folder tree is discovered, the folders of each level are listed concurrently. Then the folders are deleted
+ * in post-order: a folder is deleted as soon as all its subfolders have been deleted, so leaves and sibling folders are
+ * deleted concurrently. If a subfolder could not be deleted, its ancestors are skipped. Items other than folders are
+ * not deleted individually, they are removed with their folder.
+ * <p>
+ * Requests failing transiently (I/O errors, 429, 502, 503, 504) are retried with exponential backoff.
+ */
+public class SubtreeDelete {
+    private static final long INITIAL_BACKOFF_MS = 200;
+    private static final Set<Integer> TRANSIENT_STATUSES = new HashSet<>(Arrays.asList(429, 502, 503, 504));
+
+    private final int maxConcurrency;
+    private final int maxRetries;
+
+    /**
+     * The progress of a deletion.
+     */
+    public static final class Progress {
+        public final long discovered;
+        public final long deleted;
+        public final long failed;
+
+        private Progress(long discovered, long deleted, long failed) {
+            this.discovered = discovered;
+            this.deleted = deleted;
+            this.failed = failed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d deleted, %d failed", deleted, discovered, failed);
+        }
+    }
+
+    /**
+     * The result of a deletion.
+     */
+    public static final class Result {
+        private final Progress progress;
+        private final long retries;
+        private final List<String> failures;
+
+        private Result(Progress progress, long retries, List<String> failures) {
+            this.progress = progress;
+            this.retries = retries;
+            this.failures = Collections.unmodifiableList(failures);
+        }
+
+        public boolean isSuccess() {
+            return failures.isEmpty();
+        }
+
+        public Progress getProgress() {
+            return progress;
+        }
+
+        /**
+         * @return the count of requests, which have been retried
+         */
+        public long getRetries() {
+            return retries;
+        }
+
+        /**
+         * @return the folders, which could not be listed or deleted, skipped ancestors are not listed
+         */
+        public List<String> getFailures() {
+            return failures;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s, %d retries", progress, retries);
+        }
+    }
+
+    /**
+     * A folder of the discovered tree.
+     */
+    private static class Node {
+        final String url;
+        final List<Node> children = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean listed;
+
+        Node(String url) {
+            this.url = url;
+        }
+    }
+
+    /**
+     * Creates a deletion.
+     *
+     * @param maxConcurrency the maximum count of requests in flight
+     * @param maxRetries     the maximum count of retries of a transiently failing request
+     */
+    public SubtreeDelete(int maxConcurrency, int maxRetries) {
+        if (0 >= maxConcurrency) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Deletes the passed folder and all its subfolders.
+     *
+     * @param folderUrl the URL of the folder
+     * @param progress  is notified after each deleted or failed folder
+     * @return the result
+     * @throws InterruptedException if interrupted while waiting, outstanding requests are abandoned
+     */
+    public Result delete(String folderUrl, Consumer<Progress> progress) throws InterruptedException {
+        final Deletion deletion = new Deletion(progress);
+        try {
+            final Node root = new Node(folderUrl);
+            deletion.discovered.increment();
+            deletion.discover(root, 0).get();
+            deletion.deletePostOrder(root).get();
+        } catch (final ExecutionException exception) {
+            deletion.failures.add(String.format("<%s>: %s", folderUrl, exception.getCause()));
+        } finally {
+            deletion.executor.shutdownNow();
+        }
+        return new Result(deletion.progress(), deletion.retries.sum(), new ArrayList<>(deletion.failures));
+    }
+
+    /**
+     * The state of a single deletion.
+     */
+    private class Deletion {
+        final ExecutorService executor;
+        final Consumer<Progress> listener;
+        final LongAdder discovered = new LongAdder();
+        final LongAdder deleted = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+        Deletion(Consumer<Progress> listener) {
+            this.listener = listener;
+            final AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+                final Thread thread = new Thread(runnable, "subtree-delete-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        Progress progress() {
+            return new Progress(discovered.sum(), deleted.sum(), failed.sum());
+        }
+
+        /**
+         * Lists the passed folder and, concurrently, all its subfolders.
+         *
+         * @return completes, when the subtree has been discovered
+         */
+        CompletableFuture<Void> discover(Node node, int depth) {
+            return CompletableFuture
+                    .supplyAsync(() -> {
+                        try {
+                            final List<CompactItemInfo> items = withRetries(() -> FolderListing.children(node.url, depth));
+                            node.listed = true;
+                            return items;
+                        } catch (final Exception exception) {
+                            failures.add(exception.toString());
+                            return Collections.<CompactItemInfo>emptyList();
+                        }
+                    }, executor)
+                    .thenCompose(items -> {
+                        final List<CompletableFuture<Void>> subtrees = new ArrayList<>();
+                        for (final CompactItemInfo item : items) {
+                            if (FolderListing.isFolder(item) && null != item.href) {
+                                final Node child = new Node(item.href);
+                                node.children.add(child);
+                                discovered.increment();
+                                subtrees.add(discover(child, depth + 1));
+                            }
+                        }
+                        return CompletableFuture.allOf(subtrees.toArray(new CompletableFuture<?>[0]));
+                    });
+        }
+
+        /**
+         * Deletes the subfolders of the passed folder, then the folder itself.
+         *
+         * @return completes with true, if the folder has been deleted
+         */
+        CompletableFuture<Boolean> deletePostOrder(Node node) {
+            final List<CompletableFuture<Boolean>> subtrees = new ArrayList<>(node.children.size());
+            for (final Node child : node.children) {
+                subtrees.add(deletePostOrder(child));
+            }
+            return CompletableFuture
+                    .allOf(subtrees.toArray(new CompletableFuture<?>[0]))
+                    .thenApplyAsync(ignored -> {
+                        final boolean deletable = node.listed && subtrees.stream().allMatch(CompletableFuture::join);
+                        if (deletable) {
+                            try {
+                                withRetries(() -> {
+                                    final HttpResponse<?> response = Unirest.delete(node.url).asEmpty();
+                                    if (HttpURLConnection.HTTP_NO_CONTENT != response.getStatus()
+                                            && HttpURLConnection.HTTP_OK != response.getStatus()
+                                            && HttpURLConnection.HTTP_NOT_FOUND != response.getStatus()) {
+                                        throw new HttpStatusException(node.url, response.getStatus(), response.getStatusText());
+                                    }
+                                    return null;
+                                });
+                                deleted.increment();
+                                return true;
+                            } catch (final Exception exception) {
+                                failures.add(exception.toString());
+                            }
+                        }
+                        failed.increment();
+                        return false;
+                    }, executor)
+                    .whenComplete((ignored, failure) -> listener.accept(progress()));
+        }
+
+        private <T> T withRetries(Callable<T> request) throws Exception {
+            long backoffMs = INITIAL_BACKOFF_MS;
+            for (int attempt = 0; ; ++attempt) {
+                try {
+                    return request.call();
+                } catch (final IOException | UnirestException exception) {
+                    final boolean transientFailure
+                            = !(exception instanceof HttpStatusException)
+                            || TRANSIENT_STATUSES.contains(((HttpStatusException) exception).getStatus());
+                    if (!transientFailure || maxRetries <= attempt) {
+                        throw exception;
+                    }
+                }
+                retries.increment();
+                Thread.sleep(backoffMs + ThreadLocalRandom.current().nextLong(backoffMs / 2 + 1));
+                backoffMs *= 2;
+            }
+        }
+    }
+}
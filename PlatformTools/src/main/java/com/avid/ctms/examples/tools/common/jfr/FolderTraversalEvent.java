@@ -0,0 +1,32 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Reading all pages of a single folder during a traversal, traversing its subfolders is not included, so the events of
+ * a traversal do not nest.
+ */
+@Name("com.avid.ctms.FolderTraversal")
+@Label("CTMS Folder Traversal")
+@Category({"CTMS", "Paging"})
+public class FolderTraversalEvent extends Event {
+    @Label("URL")
+    public String url;
+
+    @Label("Depth")
+    public int depth;
+
+    @Label("Status")
+    @Description("The HTTP status of the first page, 0 if the request failed without response")
+    public int status;
+
+    @Label("Pages")
+    public int pages;
+
+    @Label("Items")
+    public int items;
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A login against an identity provider of the platform.
+ */
+@Name("com.avid.ctms.Login")
+@Label("CTMS Login")
+@Category({"CTMS", "Session"})
+public class LoginEvent extends Event {
+    @Label("API Domain")
+    public String apiDomain;
+
+    @Label("Identity Provider")
+    @Description("The URL of the identity provider")
+    public String identityProvider;
+
+    @Label("Status")
+    @Description("The HTTP status of the login request, 0 if the request failed without response")
+    public int status;
+
+    @Label("Success")
+    public boolean success;
+}
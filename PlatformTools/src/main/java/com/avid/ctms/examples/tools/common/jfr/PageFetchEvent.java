@@ -0,0 +1,26 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Fetching and parsing a single page of a paged collection, e.g. of a folder or a search result.
+ */
+@Name("com.avid.ctms.PageFetch")
+@Label("CTMS Page Fetch")
+@Category({"CTMS", "Paging"})
+public class PageFetchEvent extends Event {
+    @Label("URL")
+    public String url;
+
+    @Label("Status")
+    @Description("The HTTP status, 0 if the request failed without response")
+    public int status;
+
+    @Label("Items")
+    @Description("The count of items on the page")
+    public int items;
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A lookup of a resource in the CTMS Registry.
+ */
+@Name("com.avid.ctms.RegistryLookup")
+@Label("CTMS Registry Lookup")
+@Category({"CTMS", "Registry"})
+public class RegistryLookupEvent extends Event {
+    @Label("API Domain")
+    public String apiDomain;
+
+    @Label("Resource")
+    @Description("The name of the resource, e.g. \"loc:root-item\"")
+    public String resourceName;
+
+    @Label("Reachable")
+    @Description("Whether the serviceroots of the registry have been retrieved")
+    public boolean reachable;
+
+    @Label("Results")
+    @Description("The count of URI templates found")
+    public int results;
+
+    @Label("Defaulted")
+    @Description("Whether the default URI template has been used, because the resource has not been found")
+    public boolean defaulted;
+}
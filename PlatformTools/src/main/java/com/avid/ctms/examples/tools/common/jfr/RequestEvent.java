@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A single HTTP request sent to the platform through a client built with
+ * {@link com.avid.ctms.examples.tools.common.transport.Transports}. The event lasts from sending the request until
+ * Unirest has read the response body, it is committed on the thread, which has read the body: the caller of
+ * synchronous requests or an IO reactor thread. The phases of the request are described at
+ * {@link com.avid.ctms.examples.tools.common.transport.Transports}.
+ */
+@Name("com.avid.ctms.Request")
+@Label("CTMS Request")
+@Category({"CTMS", "HTTP"})
+@Description("A request sent to the platform, until the response body has been read")
+public class RequestEvent extends Event {
+    @Label("Method")
+    public String method;
+
+    @Label("URL")
+    public String url;
+
+    @Label("Correlation Id")
+    @Description("The correlation id sent with the request, groups the requests of a logical operation")
+    public String correlationId;
+
+    @Label("Endpoint")
+    @Description("The endpoint template with ids replaced by {id}, identifies the relation, which has been followed")
+    public String endpoint;
+
+    @Label("Status")
+    @Description("The HTTP status, 0 if the request failed without response")
+    public int status;
+
+    @Label("Bytes Out")
+    @Description("The length of the request body")
+    @DataAmount
+    public long bytesOut;
+
+    @Label("Bytes In")
+    @Description("The bytes of the response body as received, i.e. compressed")
+    @DataAmount
+    public long bytesIn;
+
+    @Label("Wait")
+    @Description("Waiting for a pooled connection")
+    @Timespan
+    public long waitTime;
+
+    @Label("Connect")
+    @Description("Establishing a new TCP connection")
+    @Timespan
+    public long connectTime;
+
+    @Label("TLS")
+    @Description("The TLS handshake of a new connection")
+    @Timespan
+    public long tlsTime;
+
+    @Label("Time to First Byte")
+    @Description("From sending the request until the response head has been received")
+    @Timespan
+    public long timeToFirstByte;
+
+    @Label("Body")
+    @Description("Receiving the response body")
+    @Timespan
+    public long bodyTime;
+
+    @Label("Parse")
+    @Description("Transforming the response body after it has been received")
+    @Timespan
+    public long parseTime;
+}
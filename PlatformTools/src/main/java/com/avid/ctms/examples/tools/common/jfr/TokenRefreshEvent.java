@@ -0,0 +1,21 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A refresh of the session by the session refresher: retrieving the current token and extending it.
+ */
+@Name("com.avid.ctms.TokenRefresh")
+@Label("CTMS Token Refresh")
+@Category({"CTMS", "Session"})
+public class TokenRefreshEvent extends Event {
+    @Label("API Domain")
+    public String apiDomain;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.locations;
+
+import com.avid.ctms.examples.tools.common.CollectionPageReader;
+import com.avid.ctms.examples.tools.common.CompactItemInfo;
+import com.avid.ctms.examples.tools.common.UriTemplates;
+import kong.unirest.HttpResponse;
+import kong.unirest.JsonNode;
+import kong.unirest.Unirest;
+import kong.unirest.json.JSONObject;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.net.HttpURLConnection;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resolves item ids to items through the "loc:item-by-id" link of the locations resource. Many ids can be resolved as a
+ * batch, the requests are issued concurrently, at most maxConcurrency at a time.
+ */
+public class ItemByIdResolver {
+    private static final Logger LOG = Logger.getLogger(ItemByIdResolver.class.getName());
+
+    /**
+     * The name of the templated link in the locations resource.
+     */
+    public static final String LINK_NAME = "loc:item-by-id";
+
+    private static final CollectionPageReader<CompactItemInfo> PAGE_READER = CompactItemInfo.reader(false);
+
+    private final String itemByIdUriTemplate;
+    private final int maxConcurrency;
+
+    /**
+     * Creates a resolver.
+     *
+     * @param itemByIdUriTemplate the templated href of the "loc:item-by-id" link, variables: id
+     * @param maxConcurrency      the maximum count of requests in flight during a batch
+     */
+    public ItemByIdResolver(String itemByIdUriTemplate, int maxConcurrency) {
+        if (0 >= maxConcurrency) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.itemByIdUriTemplate = itemByIdUriTemplate;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Looks up the templated href of the "loc:item-by-id" link in the passed locations resource.
+     *
+     * @param locationsUrl the URL of the locations resource
+     * @return the templated href or empty, if the locations resource or the link could not be found
+     */
+    public static Optional<String> findItemByIdUriTemplate(String locationsUrl) {
+        final HttpResponse<JsonNode> locationsResponse
+                = Unirest.get(locationsUrl)
+                .header(HttpHeaders.ACCEPT, "application/hal+json")
+                .asJson();
+        if (HttpURLConnection.HTTP_OK != locationsResponse.getStatus()) {
+            return Optional.empty();
+        }
+        final JSONObject links = locationsResponse.getBody().getObject().optJSONObject("_links");
+        final JSONObject itemByIdLink = null != links ? links.optJSONObject(LINK_NAME) : null;
+        return null != itemByIdLink
+                ? Optional.ofNullable(itemByIdLink.optString("href", null))
+                : Optional.empty();
+    }
+
+    public String getItemByIdUriTemplate() {
+        return itemByIdUriTemplate;
+    }
+
+    /**
+     * Expands the "loc:item-by-id" link for the passed id.
+     *
+     * @param id the item id, e.g. a path as used by PAM, it is percent-encoded by the expansion
+     * @return the href of the item
+     */
+    public String hrefOf(String id) {
+        return UriTemplates.expand(itemByIdUriTemplate, "id", id);
+    }
+
+    /**
+     * Resolves a single item id.
+     *
+     * @param id the item id
+     * @return the item or null, if there is no item with that id, completes exceptionally, if the request failed
+     */
+    public CompletableFuture<CompactItemInfo> resolve(String id) {
+        final String href = hrefOf(id);
+        return Unirest
+                .get(href)
+                .header(HttpHeaders.ACCEPT, "application/hal+json")
+                .asObjectAsync(PAGE_READER.bodyHandler(0, item -> {}))
+                .thenApply(response -> {
+                    if (HttpURLConnection.HTTP_NOT_FOUND == response.getStatus()) {
+                        return null;
+                    }
+                    if (null == response.getBody()) {
+                        throw new IllegalStateException(String.format("Item-by-id request <%s> failed: %d %s", href, response.getStatus(), response.getStatusText()));
+                    }
+                    return response.getBody().getSelf();
+                });
+    }
+
+    /**
+     * Resolves the passed item ids concurrently and waits until all have been resolved.
+     *
+     * @param ids the item ids
+     * @return the items mapped by id in the order of the passed ids, ids, which could not be resolved, are missing and
+     * logged
+     * @throws InterruptedException if interrupted while waiting, outstanding requests are abandoned
+     */
+    public Map<String, CompactItemInfo> resolveAll(Collection<String> ids) throws InterruptedException {
+        final Semaphore inFlight = new Semaphore(maxConcurrency);
+        final Map<String, CompletableFuture<CompactItemInfo>> pending = new LinkedHashMap<>();
+        for (final String id : ids) {
+            if (!pending.containsKey(id)) {
+                inFlight.acquire();
+                pending.put(id, resolve(id).whenComplete((item, failure) -> inFlight.release()));
+            }
+        }
+
+        final Map<String, CompactItemInfo> items = new LinkedHashMap<>();
+        for (final Map.Entry<String, CompletableFuture<CompactItemInfo>> item : pending.entrySet()) {
+            try {
+                final CompactItemInfo resolved = item.getValue().get();
+                if (null != resolved) {
+                    items.put(item.getKey(), resolved);
+                } else {
+                    LOG.log(Level.FINE, "No item with id {0}", item.getKey());
+                }
+            } catch (final ExecutionException exception) {
+                LOG.log(Level.WARNING, "Resolving item id {0} failed: {1}", new Object[] {item.getKey(), exception.getCause().toString()});
+            }
+        }
+        return items;
+    }
+}
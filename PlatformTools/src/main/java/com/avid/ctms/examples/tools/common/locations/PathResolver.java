@@ -0,0 +1,335 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.locations;
+
+import com.avid.ctms.examples.tools.common.CollectionPageReader;
+import com.avid.ctms.examples.tools.common.CompactItemInfo;
+import kong.unirest.Unirest;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves path-based item ids, e.g. "/Catalogs/OneArchive/Admin/Success/" as used by PAM, to items and caches the
+ * resolved paths and their prefixes.
+ * <ul>
+ *     <li>An uncached path is resolved with a single "loc:item-by-id" request, independent of its depth.</li>
+ *     <li>Paths, which do not exist, are cached as well (negative caching) for the negative TTL. Descendants of a path,
+ *     which is known not to exist, are answered without request.</li>
+ *     <li>When the children of a folder have been listed with {@link #children(String)}, the children are cached and,
+ *     for the negative TTL, any other child name of that folder is answered as missing without request.</li>
+ *     <li>The least recently used paths are evicted, when more than maxEntries paths are cached.</li>
+ *     <li>Concurrent requests for the same path share a single in-flight request. Failed requests are not cached.</li>
+ * </ul>
+ * So, looking up siblings or descendants of recently seen folders costs at most one request. Paths are compared
+ * case-sensitively, a trailing "/" is not significant.
+ */
+public class PathResolver {
+    private static final CollectionPageReader<CompactItemInfo> PAGE_READER = CompactItemInfo.reader(false);
+
+    private final ItemByIdResolver itemByIdResolver;
+    private final int maxEntries;
+    private final long negativeTtlNanos;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static class Entry {
+        final CompletableFuture<CompactItemInfo> item;
+        long expiresAtNanos = Long.MAX_VALUE;
+        /**
+         * The names of all children, if the children have been listed, otherwise null.
+         */
+        Set<String> childNames;
+        long childNamesExpiresAtNanos;
+
+        Entry(CompletableFuture<CompactItemInfo> item) {
+            this.item = item;
+        }
+
+        boolean isMissing() {
+            return item.isDone() && !item.isCompletedExceptionally() && null == item.join();
+        }
+    }
+
+    /**
+     * Creates a resolver.
+     *
+     * @param itemByIdResolver resolves uncached paths
+     * @param maxEntries       the maximum count of cached paths
+     * @param negativeTtl      the time after which a path, which did not exist, is requested again
+     */
+    public PathResolver(ItemByIdResolver itemByIdResolver, int maxEntries, Duration negativeTtl) {
+        if (0 >= maxEntries) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.itemByIdResolver = itemByIdResolver;
+        this.maxEntries = maxEntries;
+        this.negativeTtlNanos = negativeTtl.toNanos();
+    }
+
+    /**
+     * Normalizes the passed path: empty segments are removed, the result starts with "/" and has no trailing "/".
+     *
+     * @param path the path, e.g. "/Catalogs/OneArchive/Admin/Success/"
+     * @return the normalized path, e.g. "/Catalogs/OneArchive/Admin/Success", "/" for the root
+     */
+    public static String normalize(String path) {
+        final StringBuilder normalized = new StringBuilder(path.length() + 1);
+        for (final String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                normalized.append('/').append(segment);
+            }
+        }
+        return 0 < normalized.length()
+                ? normalized.toString()
+                : "/";
+    }
+
+    private static String parentOf(String normalizedPath) {
+        final int lastSlash = normalizedPath.lastIndexOf('/');
+        return 0 < lastSlash
+                ? normalizedPath.substring(0, lastSlash)
+                : "/";
+    }
+
+    private static String childOf(String normalizedPath, String name) {
+        return "/".equals(normalizedPath)
+                ? "/" + name
+                : normalizedPath + "/" + name;
+    }
+
+    /**
+     * Resolves the passed path.
+     *
+     * @param path the path-based item id
+     * @return the item or null, if there is no item with that path, completes exceptionally, if the request failed
+     */
+    public CompletableFuture<CompactItemInfo> resolve(String path) {
+        final String normalizedPath = normalize(path);
+        final Entry entry;
+        synchronized (this) {
+            final Entry cached = lookup(normalizedPath);
+            if (null != cached) {
+                return cached.item.copy();
+            }
+            entry = new Entry(new CompletableFuture<>());
+            entries.put(normalizedPath, entry);
+        }
+
+        requests.increment();
+        itemByIdResolver.resolve(path).whenComplete((item, failure) -> {
+            if (null != failure) {
+                synchronized (this) {
+                    entries.remove(normalizedPath, entry);
+                }
+                entry.item.completeExceptionally(failure);
+            } else {
+                admit(normalizedPath, entry, item);
+                entry.item.complete(item);
+            }
+        });
+        return entry.item.copy();
+    }
+
+    /**
+     * Looks up the passed path in the cache, also checking, whether the path is known to be missing because of its
+     * ancestors.
+     *
+     * @return the cached or in-flight entry, an entry completed with null, if the path is known to be missing, or null,
+     * if the path has to be requested
+     */
+    private Entry lookup(String normalizedPath) {
+        final long now = System.nanoTime();
+        final Entry cached = entries.get(normalizedPath);
+        if (null != cached) {
+            if (now - cached.expiresAtNanos < 0) {
+                if (cached.isMissing()) {
+                    negativeHits.increment();
+                } else {
+                    hits.increment();
+                }
+                return cached;
+            }
+            entries.remove(normalizedPath);
+        }
+
+        // Check the ancestors, from the parent upwards: a missing ancestor or a listed ancestor, which has no child on the
+        // way to the path, means the path is missing.
+        String ancestor = normalizedPath;
+        while (!"/".equals(ancestor)) {
+            final String child = ancestor;
+            ancestor = parentOf(ancestor);
+            final Entry ancestorEntry = entries.get(ancestor);
+            if (null != ancestorEntry && now - ancestorEntry.expiresAtNanos < 0) {
+                if (null != ancestorEntry.childNames && now - ancestorEntry.childNamesExpiresAtNanos >= 0) {
+                    // children may have been created since the listing
+                    ancestorEntry.childNames = null;
+                }
+                final boolean missing
+                        = ancestorEntry.isMissing()
+                        || (null != ancestorEntry.childNames
+                        && !ancestorEntry.childNames.contains(child.substring(child.lastIndexOf('/') + 1)));
+                if (missing) {
+                    negativeHits.increment();
+                    return new Entry(CompletableFuture.completedFuture(null));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lists the children of the passed folder and caches them under the folder's path and their names. Afterwards,
+     * children of that folder are resolved without request, as long as they are cached, other child names are answered
+     * as missing for the negative TTL.
+     *
+     * @param folderPath the path-based item id of the folder
+     * @return the children or null, if there is no folder with that path, completes exceptionally, if a request failed
+     */
+    public CompletableFuture<List<CompactItemInfo>> children(String folderPath) {
+        final String normalizedPath = normalize(folderPath);
+        return resolve(folderPath)
+                .thenCompose(folder -> {
+                    if (null == folder || null == folder.href) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return listPages(folder.href, folder.depth, new ArrayList<>())
+                            .thenApply(children -> {
+                                admitChildren(normalizedPath, children);
+                                return children;
+                            });
+                });
+    }
+
+    private CompletableFuture<List<CompactItemInfo>> listPages(String pageUrl, int depth, List<CompactItemInfo> children) {
+        requests.increment();
+        return Unirest
+                .get(pageUrl)
+                .header(HttpHeaders.ACCEPT, "application/hal+json")
+                .asObjectAsync(PAGE_READER.bodyHandler(depth, children::add))
+                .thenCompose(response -> {
+                    if (HttpURLConnection.HTTP_OK != response.getStatus() || null == response.getBody()) {
+                        throw new IllegalStateException(String.format("Listing <%s> failed: %d %s", pageUrl, response.getStatus(), response.getStatusText()));
+                    }
+                    final String next = response.getBody().getNext();
+                    return null != next
+                            ? listPages(next, depth, children)
+                            : CompletableFuture.completedFuture(children);
+                });
+    }
+
+    private synchronized void admit(String normalizedPath, Entry entry, CompactItemInfo item) {
+        if (entries.get(normalizedPath) != entry) {
+            // invalidated while in flight
+            return;
+        }
+        if (null == item) {
+            entry.expiresAtNanos = System.nanoTime() + negativeTtlNanos;
+        }
+        evict();
+    }
+
+    private synchronized void admitChildren(String normalizedPath, List<CompactItemInfo> children) {
+        final Entry folderEntry = entries.get(normalizedPath);
+        if (null == folderEntry) {
+            // evicted or invalidated meanwhile
+            return;
+        }
+        final Set<String> childNames = new HashSet<>();
+        for (final CompactItemInfo child : children) {
+            if (null != child.name && !child.name.isEmpty() && -1 == child.name.indexOf('/')) {
+                childNames.add(child.name);
+                final String childPath = childOf(normalizedPath, child.name);
+                final Entry childEntry = entries.get(childPath);
+                if (null == childEntry || childEntry.item.isDone()) {
+                    entries.put(childPath, new Entry(CompletableFuture.completedFuture(child)));
+                }
+            }
+        }
+        folderEntry.childNames = childNames;
+        folderEntry.childNamesExpiresAtNanos = System.nanoTime() + negativeTtlNanos;
+        // Access the folder again, so that it is not evicted before its children.
+        entries.get(normalizedPath);
+        evict();
+    }
+
+    private void evict() {
+        final Iterator<Entry> eldest = entries.values().iterator();
+        while (maxEntries < entries.size() && eldest.hasNext()) {
+            if (eldest.next().item.isDone()) {
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes the passed path and all its descendants from the cache, e.g. after the folder has been deleted, renamed or
+     * moved. The listed children of the parent are forgotten as well.
+     *
+     * @param path the path-based item id
+     */
+    public synchronized void invalidate(String path) {
+        final String normalizedPath = normalize(path);
+        final String descendantPrefix = childOf(normalizedPath, "");
+        entries.keySet().removeIf(it -> it.equals(normalizedPath) || it.startsWith(descendantPrefix));
+        final Entry parentEntry = entries.get(parentOf(normalizedPath));
+        if (null != parentEntry) {
+            parentEntry.childNames = null;
+        }
+    }
+
+    /**
+     * Removes all paths from the cache. In-flight requests complete, but their items are not cached.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the count of lookups answered as missing from the cache
+     */
+    public long getNegativeHitCount() {
+        return negativeHits.sum();
+    }
+
+    /**
+     * @return the count of item-by-id and listing requests sent
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "hits: %d, negative hits: %d, requests: %d, evictions: %d, cached paths: %d"
+                , getHitCount()
+                , getNegativeHitCount()
+                , getRequestCount()
+                , getEvictionCount()
+                , size());
+    }
+}
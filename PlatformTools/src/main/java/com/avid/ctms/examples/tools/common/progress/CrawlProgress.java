@@ -0,0 +1,136 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.progress;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the progress of a folder traversal: items and pages read, folders queued, in flight and done, and the pending
+ * folders (queued or in flight) per depth. All counters are {@link LongAdder}s, so updating them from many threads of
+ * a parallel crawl does not contend. The counters are read with {@link #snapshot()}, e.g. by a {@link ProgressReporter},
+ * each counter is read once, but not all of them at the same instant.
+ * <p>
+ * The life cycle of a folder is {@link #folderQueued(int)}, {@link #folderStarted(int)}, {@link #folderDone(int)}.
+ */
+public final class CrawlProgress {
+    /**
+     * Folders deeper than this are counted at this depth.
+     */
+    public static final int MAX_TRACKED_DEPTH = 63;
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder items = new LongAdder();
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder foldersQueued = new LongAdder();
+    private final LongAdder foldersInFlight = new LongAdder();
+    private final LongAdder foldersDone = new LongAdder();
+    private final LongAdder[] pendingByDepth = new LongAdder[MAX_TRACKED_DEPTH + 1];
+
+    /**
+     * An immutable view of the counters at a point in time.
+     */
+    public static final class Snapshot {
+        public final long elapsedNanos;
+        public final long items;
+        public final long pages;
+        public final long foldersQueued;
+        public final long foldersInFlight;
+        public final long foldersDone;
+        private final long[] pendingByDepth;
+
+        private Snapshot(long elapsedNanos, long items, long pages, long foldersQueued, long foldersInFlight, long foldersDone, long[] pendingByDepth) {
+            this.elapsedNanos = elapsedNanos;
+            this.items = items;
+            this.pages = pages;
+            this.foldersQueued = foldersQueued;
+            this.foldersInFlight = foldersInFlight;
+            this.foldersDone = foldersDone;
+            this.pendingByDepth = pendingByDepth;
+        }
+
+        /**
+         * @return the count of pending (queued or in flight) folders per depth, up to the deepest pending folder
+         */
+        public long[] getPendingByDepth() {
+            return pendingByDepth.clone();
+        }
+
+        /**
+         * Estimates the count of items, which are still to be read, from the pending folders and the mean count of
+         * items per folder so far. Folders, which have not been discovered yet, are not included, so this is a lower
+         * bound for deep trees.
+         *
+         * @return the estimated count of remaining items
+         */
+        public long getEstimatedRemainingItems() {
+            return 0 < foldersDone
+                    ? Math.round((double) items / foldersDone * (foldersQueued + foldersInFlight))
+                    : 0;
+        }
+    }
+
+    public CrawlProgress() {
+        for (int i = 0; i < pendingByDepth.length; ++i) {
+            pendingByDepth[i] = new LongAdder();
+        }
+    }
+
+    private LongAdder pending(int depth) {
+        return pendingByDepth[Math.max(0, Math.min(MAX_TRACKED_DEPTH, depth))];
+    }
+
+    /**
+     * Counts a folder, which has been discovered and is going to be traversed.
+     */
+    public void folderQueued(int depth) {
+        foldersQueued.increment();
+        pending(depth).increment();
+    }
+
+    /**
+     * Counts a queued folder, whose traversal has started.
+     */
+    public void folderStarted(int depth) {
+        foldersQueued.decrement();
+        foldersInFlight.increment();
+    }
+
+    /**
+     * Counts a started folder, whose pages have all been read.
+     */
+    public void folderDone(int depth) {
+        foldersInFlight.decrement();
+        foldersDone.increment();
+        pending(depth).decrement();
+    }
+
+    /**
+     * Counts a page and the items read from it.
+     */
+    public void pageRead(int itemCount) {
+        pages.increment();
+        items.add(itemCount);
+    }
+
+    public Snapshot snapshot() {
+        final long[] pending = new long[pendingByDepth.length];
+        int deepest = -1;
+        for (int i = 0; i < pending.length; ++i) {
+            pending[i] = pendingByDepth[i].sum();
+            if (0 < pending[i]) {
+                deepest = i;
+            }
+        }
+        return new Snapshot(
+                System.nanoTime() - startNanos
+                , items.sum()
+                , pages.sum()
+                , foldersQueued.sum()
+                , foldersInFlight.sum()
+                , foldersDone.sum()
+                , Arrays.copyOf(pending, deepest + 1));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.progress;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically reports the {@link CrawlProgress} of a traversal:
+ * <ul>
+ *     <li>as a compact line to a stream, e.g. stderr, so that the output of the traversal to stdout is not mixed up,</li>
+ *     <li>optionally as a row of a CSV time series file, which can be graphed afterwards.</li>
+ * </ul>
+ * Rates are calculated over the last interval. The estimated time to completion is based on the pending folders and
+ * the rate of completed folders over the last interval. A final report is written, when the reporter is closed.
+ */
+public class ProgressReporter implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(ProgressReporter.class.getName());
+
+    private static final String CSV_HEADER
+            = "elapsed_s,items,pages,items_per_s,pages_per_s,folders_done,folders_queued,folders_in_flight,estimated_remaining_items,eta_s,pending_by_depth";
+
+    private final CrawlProgress progress;
+    private final PrintStream lines;
+    private final BufferedWriter timeSeries;
+    private final ScheduledExecutorService scheduler;
+    private CrawlProgress.Snapshot last;
+
+    /**
+     * Creates a reporter and starts reporting.
+     *
+     * @param progress       the progress to report
+     * @param interval       the interval between two reports
+     * @param lines          the stream to write the compact lines to, e.g. System.err
+     * @param timeSeriesFile the CSV file to write the time series to or null, an existing file is overwritten
+     * @throws IOException if the time series file could not be created
+     */
+    public ProgressReporter(CrawlProgress progress, Duration interval, PrintStream lines, Path timeSeriesFile) throws IOException {
+        this.progress = progress;
+        this.lines = lines;
+        this.last = progress.snapshot();
+        if (null != timeSeriesFile) {
+            timeSeries = Files.newBufferedWriter(timeSeriesFile, StandardCharsets.UTF_8);
+            timeSeries.write(CSV_HEADER);
+            timeSeries.newLine();
+        } else {
+            timeSeries = null;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "crawl-progress-1");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::report, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void report() {
+        final CrawlProgress.Snapshot current = progress.snapshot();
+        final double seconds = Math.max(1e-9, (current.elapsedNanos - last.elapsedNanos) / 1e9);
+        final double itemsPerSecond = (current.items - last.items) / seconds;
+        final double pagesPerSecond = (current.pages - last.pages) / seconds;
+        final double foldersPerSecond = (current.foldersDone - last.foldersDone) / seconds;
+        final long pendingFolders = current.foldersQueued + current.foldersInFlight;
+        final long etaSeconds
+                = 0 < foldersPerSecond
+                ? Math.round(pendingFolders / foldersPerSecond)
+                : -1;
+
+        final StringJoiner depths = new StringJoiner(" ");
+        final long[] pendingByDepth = current.getPendingByDepth();
+        for (int depth = 0; depth < pendingByDepth.length; ++depth) {
+            if (0 < pendingByDepth[depth]) {
+                depths.add(depth + ":" + pendingByDepth[depth]);
+            }
+        }
+
+        lines.printf(Locale.ROOT
+                , "[%s] items %d (%.0f/s), pages %d (%.1f/s), folders done %d, queued %d, in flight %d, pending by depth {%s}, remaining ~%d items, eta %s%n"
+                , format(current.elapsedNanos / 1_000_000_000)
+                , current.items
+                , itemsPerSecond
+                , current.pages
+                , pagesPerSecond
+                , current.foldersDone
+                , current.foldersQueued
+                , current.foldersInFlight
+                , depths
+                , current.getEstimatedRemainingItems()
+                , 0 <= etaSeconds ? format(etaSeconds) : "?");
+
+        if (null != timeSeries) {
+            try {
+                timeSeries.write(String.format(Locale.ROOT
+                        , "%.3f,%d,%d,%.1f,%.2f,%d,%d,%d,%d,%d,%s"
+                        , current.elapsedNanos / 1e9
+                        , current.items
+                        , current.pages
+                        , itemsPerSecond
+                        , pagesPerSecond
+                        , current.foldersDone
+                        , current.foldersQueued
+                        , current.foldersInFlight
+                        , current.getEstimatedRemainingItems()
+                        , etaSeconds
+                        , depths.toString().replace(' ', '|')));
+                timeSeries.newLine();
+                timeSeries.flush();
+            } catch (final IOException exception) {
+                LOG.log(Level.WARNING, "Writing the progress time series failed: {0}", exception.toString());
+            }
+        }
+        last = current;
+    }
+
+    private static String format(long seconds) {
+        return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    /**
+     * Stops reporting, writes a final report and closes the time series file.
+     */
+    @Override
+    public void close() throws IOException {
+        // no interrupt: it would close the channel of the time series file, if a running report is writing to it
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        report();
+        if (null != timeSeries) {
+            timeSeries.close();
+        }
+    }
+}
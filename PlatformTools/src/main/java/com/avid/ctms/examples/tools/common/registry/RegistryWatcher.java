@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.registry;
+
+import kong.unirest.GetRequest;
+import kong.unirest.HttpResponse;
+import kong.unirest.Unirest;
+import kong.unirest.json.JSONObject;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Optional;
+
+/**
+ * Polls the "serviceroots" resource of the CTMS Registry and reports the differences to the previous poll.
+ * <p>
+ * Polls are conditional requests: the ETag and Last-Modified header of the last response are sent as If-None-Match and
+ * If-Modified-Since, so an unchanged registry is answered with 304 and no body. If the registry does not support
+ * conditional requests, an unchanged body is detected by comparing it with the last body, before it is parsed.
+ * <p>
+ * The watcher does not log in, it relies on the session of the caller.
+ */
+public class RegistryWatcher {
+    private final String urlServiceRootsResource;
+
+    private ServiceRoots current = ServiceRoots.EMPTY;
+    private String eTag;
+    private String lastModified;
+    private String lastBody;
+    private long polls;
+    private long notModified;
+
+    /**
+     * Creates a watcher.
+     *
+     * @param urlServiceRootsResource the URL of the "serviceroots" resource
+     */
+    public RegistryWatcher(String urlServiceRootsResource) {
+        this.urlServiceRootsResource = urlServiceRootsResource;
+    }
+
+    /**
+     * Creates a watcher for the CTMS Registry of the passed platform.
+     *
+     * @param apiDomain              the API domain of the platform
+     * @param registryServiceVersion the version of the CTMS Registry
+     * @return the watcher
+     */
+    public static RegistryWatcher of(String apiDomain, String registryServiceVersion) {
+        return new RegistryWatcher(String.format("https://%s/apis/avid.ctms.registry;version=%s/serviceroots", apiDomain, registryServiceVersion));
+    }
+
+    /**
+     * Retrieves the registry and compares it with the result of the previous poll. The first poll is compared with
+     * {@link ServiceRoots#EMPTY}, so all registered services and resources are reported as added.
+     *
+     * @return the differences or empty, if the registry has not changed
+     * @throws IOException if the registry could not be retrieved
+     */
+    public synchronized Optional<ServiceRootsDiff> poll() throws IOException {
+        ++polls;
+        final GetRequest request = Unirest.get(urlServiceRootsResource).header(HttpHeaders.ACCEPT, "application/hal+json");
+        if (null != eTag) {
+            request.header(HttpHeaders.IF_NONE_MATCH, eTag);
+        }
+        if (null != lastModified) {
+            request.header(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+        final HttpResponse<String> response = request.asString();
+        if (HttpURLConnection.HTTP_NOT_MODIFIED == response.getStatus()) {
+            ++notModified;
+            return Optional.empty();
+        }
+        if (HttpURLConnection.HTTP_OK != response.getStatus()) {
+            throw new IOException(String.format("Problem accessing <%s> - %d %s", urlServiceRootsResource, response.getStatus(), response.getStatusText()));
+        }
+
+        eTag = header(response, HttpHeaders.ETAG);
+        lastModified = header(response, HttpHeaders.LAST_MODIFIED);
+        if (response.getBody().equals(lastBody)) {
+            return Optional.empty();
+        }
+        lastBody = response.getBody();
+
+        final ServiceRoots next = ServiceRoots.parse(new JSONObject(lastBody));
+        final ServiceRootsDiff diff = ServiceRootsDiff.between(current, next);
+        current = next;
+        return diff.isEmpty()
+                ? Optional.empty()
+                : Optional.of(diff);
+    }
+
+    private static String header(HttpResponse<?> response, String name) {
+        final String value = response.getHeaders().getFirst(name);
+        return null != value && !value.isEmpty()
+                ? value
+                : null;
+    }
+
+    /**
+     * @return the snapshot retrieved by the last successful poll
+     */
+    public synchronized ServiceRoots getCurrent() {
+        return current;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d polls, %d not modified, %s", polls, notModified, current);
+    }
+}
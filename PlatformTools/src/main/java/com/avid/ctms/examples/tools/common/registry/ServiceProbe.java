@@ -0,0 +1,192 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.registry;
+
+import com.avid.ctms.examples.tools.common.UriTemplates;
+import kong.unirest.Unirest;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Checks, whether services respond, and measures their latency: the service roots are requested concurrently, at most
+ * maxConcurrency at a time, in several rounds. Each request has a timeout, a request, which times out, counts as
+ * failed with the timeout as latency.
+ */
+public class ServiceProbe {
+    /**
+     * The pseudo status of requests, which timed out.
+     */
+    public static final int TIMEOUT = -1;
+    /**
+     * The pseudo status of requests, which failed without response, e.g. because the host could not be resolved.
+     */
+    public static final int NO_RESPONSE = 0;
+
+    private final int maxConcurrency;
+    private final Duration timeout;
+
+    /**
+     * The statistics of a single service over all rounds.
+     */
+    public static final class Stats {
+        private final String serviceRoot;
+        private final SortedMap<Integer, Integer> statusCounts = new TreeMap<>();
+        private long[] latenciesNanos = new long[8];
+        private int count;
+
+        private Stats(String serviceRoot) {
+            this.serviceRoot = serviceRoot;
+        }
+
+        private synchronized void add(int status, long latencyNanos) {
+            statusCounts.merge(status, 1, Integer::sum);
+            if (latenciesNanos.length == count) {
+                latenciesNanos = Arrays.copyOf(latenciesNanos, 2 * count);
+            }
+            latenciesNanos[count++] = latencyNanos;
+        }
+
+        public String getServiceRoot() {
+            return serviceRoot;
+        }
+
+        /**
+         * @return the count of responses by status, including the pseudo statuses {@link #TIMEOUT} and
+         * {@link #NO_RESPONSE}
+         */
+        public synchronized SortedMap<Integer, Integer> getStatusCounts() {
+            return Collections.unmodifiableSortedMap(new TreeMap<>(statusCounts));
+        }
+
+        public synchronized int getCount() {
+            return count;
+        }
+
+        /**
+         * @return the count of responses with a status below 400
+         */
+        public synchronized int getSuccessCount() {
+            return statusCounts.entrySet().stream().filter(it -> 0 < it.getKey() && 400 > it.getKey()).mapToInt(Map.Entry::getValue).sum();
+        }
+
+        /**
+         * Calculates a latency percentile with the nearest-rank method.
+         *
+         * @param percentile the percentile between 0 and 100
+         * @return the latency, zero if nothing has been measured
+         */
+        public synchronized Duration getLatency(double percentile) {
+            if (0 == count) {
+                return Duration.ZERO;
+            }
+            final long[] sorted = Arrays.copyOf(latenciesNanos, count);
+            Arrays.sort(sorted);
+            final int rank = (int) Math.ceil(percentile / 100 * count);
+            return Duration.ofNanos(sorted[Math.max(0, Math.min(count, rank) - 1)]);
+        }
+
+        @Override
+        public synchronized String toString() {
+            final StringJoiner statuses = new StringJoiner(", ", "[", "]");
+            statusCounts.forEach((status, statusCount) -> statuses.add(
+                    (TIMEOUT == status ? "timeout" : NO_RESPONSE == status ? "no response" : status.toString()) + ": " + statusCount));
+            return String.format("%d/%d ok %s, p50: %.1fms, p90: %.1fms, p99: %.1fms, max: %.1fms"
+                    , getSuccessCount()
+                    , count
+                    , statuses
+                    , getLatency(50).toNanos() / 1e6
+                    , getLatency(90).toNanos() / 1e6
+                    , getLatency(99).toNanos() / 1e6
+                    , getLatency(100).toNanos() / 1e6);
+        }
+    }
+
+    /**
+     * Creates a probe.
+     *
+     * @param maxConcurrency the maximum count of requests in flight
+     * @param timeout        the timeout of a single request
+     */
+    public ServiceProbe(int maxConcurrency, Duration timeout) {
+        if (0 >= maxConcurrency) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Probes the passed service roots. The rounds are run one after another, within a round all services are requested
+     * concurrently.
+     *
+     * @param serviceRoots the service roots, e.g. as returned by {@link ServiceRoots#getServices()}, templated service
+     *                     roots are expanded without values
+     * @param rounds       the count of requests per service
+     * @return the statistics by service root, in the order of the passed service roots
+     * @throws InterruptedException if interrupted while waiting, outstanding requests are abandoned
+     */
+    public Map<String, Stats> probe(Collection<String> serviceRoots, int rounds) throws InterruptedException {
+        final Map<String, Stats> stats = new LinkedHashMap<>();
+        for (final String serviceRoot : serviceRoots) {
+            stats.putIfAbsent(serviceRoot, new Stats(serviceRoot));
+        }
+
+        final Semaphore inFlight = new Semaphore(maxConcurrency);
+        for (int round = 0; round < rounds; ++round) {
+            final List<CompletableFuture<Void>> requests = new ArrayList<>(stats.size());
+            for (final Stats serviceStats : stats.values()) {
+                inFlight.acquire();
+                requests.add(request(serviceStats).whenComplete((ignored, failure) -> inFlight.release()));
+            }
+            try {
+                CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).get();
+            } catch (final ExecutionException exception) {
+                throw new IllegalStateException(exception.getCause());
+            }
+        }
+        return stats;
+    }
+
+    private CompletableFuture<Void> request(Stats serviceStats) {
+        final String url = serviceStats.serviceRoot.contains("{")
+                ? UriTemplates.expand(serviceStats.serviceRoot, Collections.emptyMap())
+                : serviceStats.serviceRoot;
+        final int timeoutMs = (int) timeout.toMillis();
+        final long start = System.nanoTime();
+        return Unirest
+                .get(url)
+                .header(HttpHeaders.ACCEPT, "application/hal+json")
+                .connectTimeout(timeoutMs)
+                .socketTimeout(timeoutMs)
+                .asEmptyAsync()
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((response, failure) -> {
+                    final long latencyNanos = System.nanoTime() - start;
+                    if (null == failure) {
+                        serviceStats.add(response.getStatus(), latencyNanos);
+                    } else {
+                        serviceStats.add(isTimeout(failure) ? TIMEOUT : NO_RESPONSE, latencyNanos);
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Checks, whether the passed failure or one of its causes is a timeout: the overall timeout of the request or a
+     * connect or socket timeout.
+     */
+    private static boolean isTimeout(Throwable failure) {
+        for (Throwable cause = failure; null != cause; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.registry;
+
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * An immutable snapshot of the "serviceroots" resource of the CTMS Registry: the registered resources, each with the
+ * hrefs of the services providing it. Resources and hrefs are sorted, so that two snapshots can be compared with a
+ * single merge pass, see {@link ServiceRootsDiff}.
+ */
+public final class ServiceRoots {
+    /**
+     * A snapshot without any resources, e.g. as predecessor of the first retrieved snapshot.
+     */
+    public static final ServiceRoots EMPTY = new ServiceRoots(new TreeMap<>());
+
+    private final SortedMap<String, SortedSet<String>> resources;
+
+    private ServiceRoots(SortedMap<String, SortedSet<String>> resources) {
+        this.resources = Collections.unmodifiableSortedMap(resources);
+    }
+
+    /**
+     * Reads the passed "serviceroots" resource.
+     *
+     * @param serviceRootsResult the "serviceroots" resource of the CTMS Registry
+     * @return the snapshot
+     */
+    public static ServiceRoots parse(JSONObject serviceRootsResult) {
+        final SortedMap<String, SortedSet<String>> resources = new TreeMap<>();
+        final JSONObject resourcesObject = serviceRootsResult.optJSONObject("resources");
+        if (null != resourcesObject) {
+            for (final String name : resourcesObject.keySet()) {
+                final SortedSet<String> hrefs = new TreeSet<>();
+                final Object links = resourcesObject.get(name);
+                if (links instanceof JSONArray) {
+                    for (final Object singleLinkObject : (JSONArray) links) {
+                        addHref(hrefs, singleLinkObject);
+                    }
+                } else {
+                    addHref(hrefs, links);
+                }
+                resources.put(name, Collections.unmodifiableSortedSet(hrefs));
+            }
+        }
+        return new ServiceRoots(resources);
+    }
+
+    private static void addHref(Set<String> hrefs, Object linkObject) {
+        if (linkObject instanceof JSONObject) {
+            final String href = ((JSONObject) linkObject).optString("href", null);
+            if (null != href) {
+                hrefs.add(href);
+            }
+        }
+    }
+
+    /**
+     * Extracts the service root from the passed href, e.g. "https://host/apis/avid.pam;version=0;realm=BEEF" from
+     * "https://host/apis/avid.pam;version=0;realm=BEEF/locations/items/{id}".
+     *
+     * @param href the href of a registered resource
+     * @return the service root or the href itself, if it has no "/apis/" segment
+     */
+    public static String serviceOf(String href) {
+        final int apis = href.indexOf("/apis/");
+        if (-1 == apis) {
+            return href;
+        }
+        final int end = href.indexOf('/', apis + "/apis/".length());
+        return -1 != end
+                ? href.substring(0, end)
+                : href;
+    }
+
+    /**
+     * @return the hrefs of the registered resources by resource name, both sorted
+     */
+    public SortedMap<String, SortedSet<String>> getResources() {
+        return resources;
+    }
+
+    /**
+     * @return the resource names of the registered services by service root, both sorted
+     */
+    public SortedMap<String, SortedSet<String>> getServices() {
+        final SortedMap<String, SortedSet<String>> services = new TreeMap<>();
+        for (final Map.Entry<String, SortedSet<String>> resource : resources.entrySet()) {
+            for (final String href : resource.getValue()) {
+                services.computeIfAbsent(serviceOf(href), it -> new TreeSet<>()).add(resource.getKey());
+            }
+        }
+        return services;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o
+                || o instanceof ServiceRoots && resources.equals(((ServiceRoots) o).resources);
+    }
+
+    @Override
+    public int hashCode() {
+        return resources.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d resources", resources.size());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.registry;
+
+import java.util.*;
+
+/**
+ * The differences between two snapshots of the CTMS Registry: added and removed services, added and removed resources
+ * and resources, which are provided by other services than before.
+ */
+public final class ServiceRootsDiff {
+    private final SortedSet<String> addedServices;
+    private final SortedSet<String> removedServices;
+    private final SortedMap<String, SortedSet<String>> addedResources = new TreeMap<>();
+    private final SortedMap<String, SortedSet<String>> removedResources = new TreeMap<>();
+    private final SortedMap<String, Change> changedResources = new TreeMap<>();
+
+    /**
+     * The hrefs, which have been added to or removed from a resource.
+     */
+    public static final class Change {
+        public final SortedSet<String> addedHrefs;
+        public final SortedSet<String> removedHrefs;
+
+        private Change(SortedSet<String> addedHrefs, SortedSet<String> removedHrefs) {
+            this.addedHrefs = Collections.unmodifiableSortedSet(addedHrefs);
+            this.removedHrefs = Collections.unmodifiableSortedSet(removedHrefs);
+        }
+    }
+
+    private ServiceRootsDiff(SortedSet<String> addedServices, SortedSet<String> removedServices) {
+        this.addedServices = Collections.unmodifiableSortedSet(addedServices);
+        this.removedServices = Collections.unmodifiableSortedSet(removedServices);
+    }
+
+    /**
+     * Compares two snapshots. As resources and hrefs are sorted, both are compared in a single merge pass, hrefs are
+     * only compared individually for resources, whose sets of hrefs differ.
+     *
+     * @param before the older snapshot
+     * @param after  the newer snapshot
+     * @return the differences
+     */
+    public static ServiceRootsDiff between(ServiceRoots before, ServiceRoots after) {
+        final SortedMap<String, SortedSet<String>> servicesBefore = before.getServices();
+        final SortedMap<String, SortedSet<String>> servicesAfter = after.getServices();
+        final SortedSet<String> addedServices = new TreeSet<>(servicesAfter.keySet());
+        addedServices.removeAll(servicesBefore.keySet());
+        final SortedSet<String> removedServices = new TreeSet<>(servicesBefore.keySet());
+        removedServices.removeAll(servicesAfter.keySet());
+        final ServiceRootsDiff diff = new ServiceRootsDiff(addedServices, removedServices);
+
+        final Iterator<Map.Entry<String, SortedSet<String>>> older = before.getResources().entrySet().iterator();
+        final Iterator<Map.Entry<String, SortedSet<String>>> newer = after.getResources().entrySet().iterator();
+        Map.Entry<String, SortedSet<String>> olderResource = older.hasNext() ? older.next() : null;
+        Map.Entry<String, SortedSet<String>> newerResource = newer.hasNext() ? newer.next() : null;
+        while (null != olderResource || null != newerResource) {
+            final int order
+                    = null == olderResource ? 1
+                    : null == newerResource ? -1
+                    : olderResource.getKey().compareTo(newerResource.getKey());
+            if (0 > order) {
+                diff.removedResources.put(olderResource.getKey(), olderResource.getValue());
+                olderResource = older.hasNext() ? older.next() : null;
+            } else if (0 < order) {
+                diff.addedResources.put(newerResource.getKey(), newerResource.getValue());
+                newerResource = newer.hasNext() ? newer.next() : null;
+            } else {
+                if (!olderResource.getValue().equals(newerResource.getValue())) {
+                    final SortedSet<String> addedHrefs = new TreeSet<>(newerResource.getValue());
+                    addedHrefs.removeAll(olderResource.getValue());
+                    final SortedSet<String> removedHrefs = new TreeSet<>(olderResource.getValue());
+                    removedHrefs.removeAll(newerResource.getValue());
+                    diff.changedResources.put(newerResource.getKey(), new Change(addedHrefs, removedHrefs));
+                }
+                olderResource = older.hasNext() ? older.next() : null;
+                newerResource = newer.hasNext() ? newer.next() : null;
+            }
+        }
+        return diff;
+    }
+
+    public boolean isEmpty() {
+        return addedServices.isEmpty()
+                && removedServices.isEmpty()
+                && addedResources.isEmpty()
+                && removedResources.isEmpty()
+                && changedResources.isEmpty();
+    }
+
+    public SortedSet<String> getAddedServices() {
+        return addedServices;
+    }
+
+    public SortedSet<String> getRemovedServices() {
+        return removedServices;
+    }
+
+    /**
+     * @return the added resources with their hrefs
+     */
+    public SortedMap<String, SortedSet<String>> getAddedResources() {
+        return Collections.unmodifiableSortedMap(addedResources);
+    }
+
+    /**
+     * @return the removed resources with their former hrefs
+     */
+    public SortedMap<String, SortedSet<String>> getRemovedResources() {
+        return Collections.unmodifiableSortedMap(removedResources);
+    }
+
+    /**
+     * @return the resources, which are still registered, but with other hrefs
+     */
+    public SortedMap<String, Change> getChangedResources() {
+        return Collections.unmodifiableSortedMap(changedResources);
+    }
+
+    /**
+     * Writes the differences line by line, "+" marks added, "-" removed and "~" changed entries.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        try (final Formatter formatter = new Formatter(sb)) {
+            for (final String service : addedServices) {
+                formatter.format("+ Service <%s>%n", service);
+            }
+            for (final String service : removedServices) {
+                formatter.format("- Service <%s>%n", service);
+            }
+            for (final Map.Entry<String, SortedSet<String>> resource : addedResources.entrySet()) {
+                formatter.format("+ Resource: \"%s\"%n", resource.getKey());
+                for (final String href : resource.getValue()) {
+                    formatter.format("\t+ At service <%s>%n", href);
+                }
+            }
+            for (final Map.Entry<String, SortedSet<String>> resource : removedResources.entrySet()) {
+                formatter.format("- Resource: \"%s\"%n", resource.getKey());
+            }
+            for (final Map.Entry<String, Change> resource : changedResources.entrySet()) {
+                formatter.format("~ Resource: \"%s\"%n", resource.getKey());
+                for (final String href : resource.getValue().addedHrefs) {
+                    formatter.format("\t+ At service <%s>%n", href);
+                }
+                for (final String href : resource.getValue().removedHrefs) {
+                    formatter.format("\t- At service <%s>%n", href);
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
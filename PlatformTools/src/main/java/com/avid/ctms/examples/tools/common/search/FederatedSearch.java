@@ -0,0 +1,263 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.search;
+
+import com.avid.ctms.examples.tools.common.PlatformTools;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Sends the same simple search to all services, which registered a "search:simple-search" resource, and merges their
+ * result streams.
+ * <p>
+ * Each service is paged independently by following the "next" links, the hits are delivered in the order of their
+ * arrival, so a slow service does not hold up the hits of faster services. A service, which does not answer a page
+ * request within the per-service timeout, is dropped from the search and its request is aborted, so that it does not
+ * hold a pooled connection; the hits it has delivered so far are kept. The search ends, when all services are done or
+ * the global limit of hits has been reached. Services pause requesting further pages, while the consumer is more than
+ * a few pages behind.
+ */
+public class FederatedSearch {
+    private static final Logger LOG = Logger.getLogger(FederatedSearch.class.getName());
+
+    private final List<SimpleSearchClient> clients;
+    private final Duration perServiceTimeout;
+    private final long limit;
+
+    /**
+     * A hit and the service it has been found by.
+     */
+    public static final class Result {
+        public final String source;
+        public final SearchHit hit;
+
+        private Result(String source, SearchHit hit) {
+            this.source = source;
+            this.hit = hit;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s [%s]", hit, source);
+        }
+    }
+
+    /**
+     * Creates a federated search.
+     *
+     * @param uriTemplates      the URI templates of the simple search resources of all services to search
+     * @param pageSize          the count of hits requested per page from each service
+     * @param perServiceTimeout the maximum time to wait for a page of a single service
+     * @param limit             the maximum count of hits delivered in total
+     */
+    public FederatedSearch(List<String> uriTemplates, int pageSize, Duration perServiceTimeout, long limit) {
+        this.clients = new ArrayList<>(uriTemplates.size());
+        for (final String uriTemplate : uriTemplates) {
+            clients.add(new SimpleSearchClient(uriTemplate, pageSize, 1));
+        }
+        this.perServiceTimeout = perServiceTimeout;
+        this.limit = limit;
+    }
+
+    /**
+     * Looks up the URI templates of all simple search resources of the passed service types in the CTMS Registry.
+     *
+     * @param apiDomain              address to get "auth"
+     * @param serviceTypes           the service types to search, e.g. "avid.mam.assets.access"
+     * @param registryServiceVersion version of the CTMS Registry to query
+     * @return the URI templates of all registered simple search resources, empty, if the CTMS Registry is unreachable
+     * or no service registered the resource
+     */
+    public static List<String> findUriTemplates(String apiDomain, List<String> serviceTypes, String registryServiceVersion) {
+        final List<String> uriTemplates
+                = PlatformTools.findInRegistry(apiDomain, serviceTypes, registryServiceVersion, SimpleSearchClient.RESOURCE_NAME, null);
+        final List<String> found = new ArrayList<>(uriTemplates.size());
+        for (final String uriTemplate : uriTemplates) {
+            if (null != uriTemplate && !found.contains(uriTemplate)) {
+                found.add(uriTemplate);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Starts the passed search on all services. The returned stream is lazy, closing it aborts outstanding requests.
+     *
+     * @param searchExpression the search expression
+     * @return the merged hits of all services
+     */
+    public Stream<Result> search(String searchExpression) {
+        final Merge merge = new Merge(searchExpression);
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(merge, Spliterator.NONNULL), false)
+                .onClose(merge::close);
+    }
+
+    /**
+     * Receives the pages of all services and hands out their hits in the order of arrival.
+     */
+    private class Merge implements Iterator<Result> {
+        private final BlockingQueue<Object> arrivals = new LinkedBlockingQueue<>();
+        private final List<Source> suspended = new ArrayList<>();
+        private final List<Source> sources = new ArrayList<>();
+        private final int resumeThreshold;
+        private int activeSources;
+        private long delivered;
+        private Result nextResult;
+        private volatile boolean closed;
+
+        Merge(String searchExpression) {
+            int pageSize = 0;
+            for (final SimpleSearchClient client : clients) {
+                sources.add(new Source(client, searchExpression));
+                pageSize = Math.max(pageSize, client.getPageSize());
+            }
+            resumeThreshold = 2 * pageSize;
+            activeSources = sources.size();
+            for (final Source source : sources) {
+                source.request(null);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (null == nextResult) {
+                if (closed || 0 == activeSources || limit <= delivered) {
+                    close();
+                    return false;
+                }
+
+                final Object arrival;
+                try {
+                    arrival = arrivals.take();
+                } catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    return false;
+                }
+
+                if (arrival instanceof Result) {
+                    nextResult = (Result) arrival;
+                    resumeSuspended();
+                } else {
+                    --activeSources;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Result next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Result result = nextResult;
+            nextResult = null;
+            ++delivered;
+            return result;
+        }
+
+        private void resumeSuspended() {
+            final List<Source> resumed;
+            synchronized (this) {
+                if (suspended.isEmpty() || resumeThreshold < arrivals.size()) {
+                    return;
+                }
+                resumed = new ArrayList<>(suspended);
+                suspended.clear();
+            }
+            for (final Source source : resumed) {
+                source.requestNext();
+            }
+        }
+
+        /**
+         * Queues the hits of the passed page and requests the next page of the source, unless the consumer is behind.
+         */
+        private void arrived(Source source, SearchPage page) {
+            for (final SearchHit hit : page.getHits()) {
+                arrivals.add(new Result(source.client.getUriTemplate(), hit));
+            }
+            source.next = page.getNext();
+            if (closed || null == source.next || page.getHits().isEmpty()) {
+                arrivals.add(source);
+                return;
+            }
+
+            synchronized (this) {
+                if (resumeThreshold < arrivals.size()) {
+                    suspended.add(source);
+                    return;
+                }
+            }
+            source.requestNext();
+        }
+
+        private void failed(Source source, Throwable failure) {
+            final Throwable cause = failure instanceof CompletionException && null != failure.getCause() ? failure.getCause() : failure;
+            if (!closed) {
+                LOG.log(Level.INFO, "search service <{0}> dropped: {1}", new Object[] {source.client.getUriTemplate(), cause.toString()});
+            }
+            arrivals.add(source);
+        }
+
+        void close() {
+            closed = true;
+            for (final Source source : sources) {
+                final CompletableFuture<SearchPage> pending = source.pending;
+                if (null != pending) {
+                    pending.cancel(true);
+                }
+            }
+        }
+
+        /**
+         * The paging state of a single service.
+         */
+        private class Source {
+            private final SimpleSearchClient client;
+            private final String searchExpression;
+            private volatile String next;
+            private volatile CompletableFuture<SearchPage> pending;
+
+            Source(SimpleSearchClient client, String searchExpression) {
+                this.client = client;
+                this.searchExpression = searchExpression;
+            }
+
+            void requestNext() {
+                request(next);
+            }
+
+            void request(String url) {
+                if (closed) {
+                    arrivals.add(this);
+                    return;
+                }
+
+                // the clients have no cache, so timing out or cancelling a page aborts its request:
+                pending = (null == url ? client.fetchPage(searchExpression, 0) : SimpleSearchClient.fetch(url))
+                        .orTimeout(perServiceTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                pending.whenComplete((page, failure) -> {
+                    if (null != failure) {
+                        failed(this, failure);
+                    } else {
+                        arrived(this, page);
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.search;
+
+import com.avid.ctms.examples.tools.common.PlatformTools;
+import com.avid.ctms.examples.tools.common.transport.Transports;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import kong.unirest.RawResponse;
+import kong.unirest.Unirest;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Executes advanced searches in the iNews dialect (see {@link INewsQuery}) against a "search:advanced-search" resource.
+ * <p>
+ * The hits are requested in windows of windowSize hits, which are expressed as firsthit/lasthit of the query. Up to
+ * parallelWindows windows are requested in parallel ahead of the consumer. XML results are read with a StAX reader,
+ * HAL/JSON results with a streaming JSON parser, so only the hits of the requested windows are kept in memory.
+ */
+public class INewsAdvancedSearchClient {
+    /**
+     * The name of the resource in the CTMS Registry.
+     */
+    public static final String RESOURCE_NAME = "search:advanced-search";
+
+    private final String url;
+    private final int windowSize;
+    private final int parallelWindows;
+
+    /**
+     * Creates a client.
+     *
+     * @param url             the URL of the advanced search resource
+     * @param windowSize      the count of hits requested per window
+     * @param parallelWindows the maximum count of windows requested in parallel
+     */
+    public INewsAdvancedSearchClient(String url, int windowSize, int parallelWindows) {
+        if (0 >= windowSize || 0 >= parallelWindows) {
+            throw new IllegalArgumentException("windowSize and parallelWindows must be positive");
+        }
+        this.url = url;
+        this.windowSize = windowSize;
+        this.parallelWindows = parallelWindows;
+    }
+
+    /**
+     * Looks up the URL of the advanced search resource of the passed service in the CTMS Registry.
+     *
+     * @param apiDomain              address to get "auth"
+     * @param serviceType            the service type, e.g. "avid.inews"
+     * @param serviceVersion         the version of the service
+     * @param realm                  the realm of the service
+     * @param registryServiceVersion version of the CTMS Registry to query
+     * @return the URL of the advanced search resource of the realm, or a default URL, if the CTMS Registry is
+     * unreachable or the resource could not be found
+     */
+    public static String findUrl(String apiDomain, String serviceType, String serviceVersion, String realm, String registryServiceVersion) {
+        final String defaultAdvancedSearchUrl = String.format("https://%s/apis/%s;version=%s;realm=%s/searches/advanced", apiDomain, serviceType, serviceVersion, realm);
+        final List<String> advancedSearchUrls
+                = PlatformTools.findInRegistry(apiDomain, Collections.singletonList(serviceType), registryServiceVersion, RESOURCE_NAME, defaultAdvancedSearchUrl);
+        return advancedSearchUrls.stream().filter(it -> it.contains(realm)).findFirst().orElse(defaultAdvancedSearchUrl);
+    }
+
+    /**
+     * Requests a single window of hits. If the window is cancelled before it has been received, its request is
+     * aborted.
+     *
+     * @param query    the query
+     * @param firstHit the index of the first hit of the window
+     * @return the window, completes exceptionally, if the request failed
+     */
+    public CompletableFuture<SearchPage> fetchWindow(INewsQuery query, int firstHit) {
+        final String body = '"' + new String(JsonStringEncoder.getInstance().quoteAsString(query.toXml(firstHit, firstHit + windowSize - 1))) + '"';
+        return Transports.abortable(() -> Unirest
+                .post(url)
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .header(HttpHeaders.ACCEPT, "application/xml, application/hal+json;q=0.9, application/json;q=0.8")
+                .body(body)
+                .asObjectAsync(INewsAdvancedSearchClient::read)
+                .thenApply(response -> {
+                    if (null == response.getBody()) {
+                        throw new IllegalStateException(String.format("Advanced search request <%s> failed: %d %s", url, response.getStatus(), response.getStatusText()));
+                    }
+                    return response.getBody();
+                }));
+    }
+
+    /**
+     * Starts the passed search. The returned stream is lazy, windows are requested while the stream is consumed.
+     * Closing the stream aborts outstanding requests.
+     *
+     * @param query the query
+     * @return the hits of the search
+     */
+    public Stream<SearchHit> search(INewsQuery query) {
+        return PageWindow.byOffset(firstHit -> fetchWindow(query, firstHit), windowSize, parallelWindows).stream();
+    }
+
+    private static SearchPage read(RawResponse rawResponse) {
+        if (HttpURLConnection.HTTP_OK != rawResponse.getStatus()) {
+            return null;
+        }
+        final String contentType = Objects.toString(rawResponse.getContentType(), "").toLowerCase(Locale.ROOT);
+        try (final InputStream content = rawResponse.getContent()) {
+            return contentType.contains("json")
+                    ? SearchPage.read(content)
+                    : XmlSearchPageReader.read(content);
+        } catch (final IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.search;
+
+import javax.xml.stream.*;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.*;
+
+/**
+ * An advanced search query in the iNews dialect, e.g.:
+ * <pre>
+ *     &lt;query version='1.0' firsthit='0' lasthit='99'>
+ *         &lt;objectclasses />
+ *         &lt;search>&lt;attribute name='MAINTITLE'>*&lt;/attribute>&lt;/search>
+ *     &lt;/query>
+ * </pre>
+ * The hit window (firsthit/lasthit) is not part of the query, it is set when the query is rendered with
+ * {@link #toXml(int, int)}, so that the same query can be used to request several windows. Queries are immutable and
+ * created with {@link #builder()} or parsed from existing descriptions with {@link #parse(String)}.
+ */
+public final class INewsQuery {
+    private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newFactory();
+    private static final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newFactory();
+
+    private final String version;
+    private final List<String> objectClasses;
+    private final List<Map.Entry<String, String>> attributes;
+
+    /**
+     * Builds {@link INewsQuery}s.
+     */
+    public static final class Builder {
+        private String version = "1.0";
+        private final List<String> objectClasses = new ArrayList<>();
+        private final List<Map.Entry<String, String>> attributes = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder version(String version) {
+            this.version = Objects.requireNonNull(version);
+            return this;
+        }
+
+        /**
+         * Restricts the search to the passed object class, e.g. "STORY". Without object classes, all object classes are
+         * searched.
+         *
+         * @param objectClass the object class to search
+         * @return this builder
+         */
+        public Builder objectClass(String objectClass) {
+            objectClasses.add(Objects.requireNonNull(objectClass));
+            return this;
+        }
+
+        /**
+         * Adds an attribute condition, e.g. "MAINTITLE" with the pattern "*".
+         *
+         * @param name    the name of the attribute
+         * @param pattern the value or pattern the attribute has to match
+         * @return this builder
+         */
+        public Builder attribute(String name, String pattern) {
+            attributes.add(new AbstractMap.SimpleImmutableEntry<>(Objects.requireNonNull(name), Objects.requireNonNull(pattern)));
+            return this;
+        }
+
+        public INewsQuery build() {
+            return new INewsQuery(version, new ArrayList<>(objectClasses), new ArrayList<>(attributes));
+        }
+    }
+
+    private INewsQuery(String version, List<String> objectClasses, List<Map.Entry<String, String>> attributes) {
+        this.version = version;
+        this.objectClasses = Collections.unmodifiableList(objectClasses);
+        this.attributes = Collections.unmodifiableList(attributes);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Parses an existing query description. The hit window of the description is ignored.
+     *
+     * @param xml the query in the iNews dialect
+     * @return the parsed query
+     * @throws IllegalArgumentException if the passed description is no well-formed query
+     */
+    public static INewsQuery parse(String xml) {
+        final Builder builder = builder();
+        try {
+            final XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(new StringReader(xml));
+            try {
+                boolean inObjectClasses = false;
+                while (reader.hasNext()) {
+                    if (XMLStreamConstants.START_ELEMENT == reader.next()) {
+                        switch (reader.getLocalName()) {
+                            case "query":
+                                final String version = reader.getAttributeValue(null, "version");
+                                if (null != version) {
+                                    builder.version(version);
+                                }
+                                break;
+                            case "objectclasses":
+                                inObjectClasses = true;
+                                break;
+                            case "attribute":
+                                final String name = reader.getAttributeValue(null, "name");
+                                builder.attribute(Objects.toString(name, ""), reader.getElementText().trim());
+                                break;
+                            default:
+                                if (inObjectClasses) {
+                                    builder.objectClass(reader.getElementText().trim());
+                                }
+                        }
+                    } else if (XMLStreamConstants.END_ELEMENT == reader.getEventType() && "objectclasses".equals(reader.getLocalName())) {
+                        inObjectClasses = false;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException exception) {
+            throw new IllegalArgumentException("malformed iNews query", exception);
+        }
+        return builder.build();
+    }
+
+    public List<String> getObjectClasses() {
+        return objectClasses;
+    }
+
+    public List<Map.Entry<String, String>> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Renders this query for the passed hit window.
+     *
+     * @param firstHit the index of the first hit of the window
+     * @param lastHit  the index of the last hit of the window (inclusive)
+     * @return the query in the iNews dialect
+     */
+    public String toXml(int firstHit, int lastHit) {
+        final StringWriter xml = new StringWriter();
+        try {
+            final XMLStreamWriter writer = xmlOutputFactory.createXMLStreamWriter(xml);
+            writer.writeStartElement("query");
+            writer.writeAttribute("version", version);
+            writer.writeAttribute("firsthit", Integer.toString(firstHit));
+            writer.writeAttribute("lasthit", Integer.toString(lastHit));
+            if (objectClasses.isEmpty()) {
+                writer.writeEmptyElement("objectclasses");
+            } else {
+                writer.writeStartElement("objectclasses");
+                for (final String objectClass : objectClasses) {
+                    writer.writeStartElement("objectclass");
+                    writer.writeCharacters(objectClass);
+                    writer.writeEndElement();
+                }
+                writer.writeEndElement();
+            }
+            writer.writeStartElement("search");
+            for (final Map.Entry<String, String> attribute : attributes) {
+                writer.writeStartElement("attribute");
+                writer.writeAttribute("name", attribute.getKey());
+                writer.writeCharacters(attribute.getValue());
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.close();
+        } catch (final XMLStreamException exception) {
+            throw new IllegalStateException(exception);
+        }
+        return xml.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toXml(0, 0);
+    }
+}
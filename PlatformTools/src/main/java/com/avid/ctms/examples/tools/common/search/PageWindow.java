@@ -0,0 +1,182 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.search;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates the hits of a paged search, keeping up to prefetchPages requested pages ahead of the page being consumed.
+ * Pages are either addressed by offset, so that the pages of the window are requested in parallel, or by the "next"
+ * links, so that each page is requested as soon as its predecessor has arrived.
+ */
+class PageWindow implements Iterator<SearchHit> {
+    private final IntFunction<CompletableFuture<SearchPage>> fetchAt;
+    private final Function<String, CompletableFuture<SearchPage>> fetchNext;
+    private final int pageSize;
+    private final int prefetchPages;
+    private final Deque<CompletableFuture<SearchPage>> pending = new ArrayDeque<>();
+    private CompletableFuture<SearchPage> last;
+    private Iterator<SearchHit> current = Collections.emptyIterator();
+    private int nextOffset;
+    private long totalHits = -1;
+    private boolean exhausted;
+
+    private PageWindow(IntFunction<CompletableFuture<SearchPage>> fetchAt, Function<String, CompletableFuture<SearchPage>> fetchNext, CompletableFuture<SearchPage> first, int pageSize, int prefetchPages) {
+        this.fetchAt = fetchAt;
+        this.fetchNext = fetchNext;
+        this.pageSize = pageSize;
+        this.prefetchPages = prefetchPages;
+        last = first;
+        pending.add(last);
+        nextOffset = pageSize;
+        fill();
+    }
+
+    /**
+     * Creates a window, which requests the pages by offset. The search ends with the first page, which has less than
+     * pageSize hits, or when the total count of hits reported by the service has been reached.
+     *
+     * @param fetchAt       requests the page at the passed offset
+     * @param pageSize      the count of hits requested per page
+     * @param prefetchPages the maximum count of pages requested ahead of the consumer
+     * @return the window
+     */
+    static PageWindow byOffset(IntFunction<CompletableFuture<SearchPage>> fetchAt, int pageSize, int prefetchPages) {
+        return new PageWindow(fetchAt, null, fetchAt.apply(0), pageSize, prefetchPages);
+    }
+
+    /**
+     * Creates a window, which follows the "next" links of the pages. The search ends with the first page without
+     * "next" link.
+     *
+     * @param first         the first page
+     * @param fetchNext     requests the page behind the passed "next" link
+     * @param prefetchPages the maximum count of pages requested ahead of the consumer
+     * @return the window
+     */
+    static PageWindow byNextLink(CompletableFuture<SearchPage> first, Function<String, CompletableFuture<SearchPage>> fetchNext, int prefetchPages) {
+        return new PageWindow(null, fetchNext, first, Integer.MAX_VALUE, prefetchPages);
+    }
+
+    /**
+     * Wraps this window into a lazy stream, closing the stream cancels the outstanding pages.
+     *
+     * @return the stream of hits
+     */
+    Stream<SearchHit> stream() {
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    private void fill() {
+        while (!exhausted && pending.size() < prefetchPages) {
+            if (null != fetchAt) {
+                if (0 <= totalHits && totalHits <= nextOffset) {
+                    return;
+                }
+                last = fetchAt.apply(nextOffset);
+                nextOffset += pageSize;
+            } else {
+                last = fetchAfter(last);
+            }
+            pending.add(last);
+        }
+    }
+
+    /**
+     * Requests the page behind the "next" link of the passed page, as soon as it has arrived. Unlike thenCompose(),
+     * cancelling the returned page also cancels the request, which has been sent for it.
+     */
+    private CompletableFuture<SearchPage> fetchAfter(CompletableFuture<SearchPage> previous) {
+        final CompletableFuture<SearchPage> page = new CompletableFuture<>();
+        previous.whenComplete((previousPage, failure) -> {
+            if (null != failure) {
+                page.completeExceptionally(failure);
+            } else if (null == previousPage.getNext()) {
+                page.complete(SearchPage.EMPTY);
+            } else if (!page.isDone()) {
+                final CompletableFuture<SearchPage> request = fetchNext.apply(previousPage.getNext());
+                page.whenComplete((ignored, pageFailure) -> {
+                    if (page.isCancelled()) {
+                        request.cancel(true);
+                    }
+                });
+                request.whenComplete((nextPage, requestFailure) -> {
+                    if (null != requestFailure) {
+                        page.completeExceptionally(requestFailure);
+                    } else {
+                        page.complete(nextPage);
+                    }
+                });
+            }
+        });
+        return page;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (pending.isEmpty()) {
+                return false;
+            }
+
+            final SearchPage page = join(pending.removeFirst());
+            current = page.getHits().iterator();
+            totalHits = page.getTotalHits();
+            if (isLastPage(page)) {
+                close();
+            } else {
+                fill();
+            }
+        }
+        return true;
+    }
+
+    private boolean isLastPage(SearchPage page) {
+        if (null == fetchAt) {
+            return null == page.getNext();
+        }
+        // the page, which has just been taken from the window, ends at nextOffset - pending.size() * pageSize:
+        return page.getHits().size() < pageSize
+                || 0 <= page.getTotalHits() && page.getTotalHits() <= (long) nextOffset - (long) pending.size() * pageSize;
+    }
+
+    @Override
+    public SearchHit next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    void close() {
+        exhausted = true;
+        for (final CompletableFuture<SearchPage> page : pending) {
+            page.cancel(true);
+        }
+        pending.clear();
+    }
+
+    private static SearchPage join(CompletableFuture<SearchPage> page) {
+        try {
+            return page.join();
+        } catch (final CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+            throw exception;
+        } catch (final CancellationException exception) {
+            return SearchPage.EMPTY;
+        }
+    }
+}
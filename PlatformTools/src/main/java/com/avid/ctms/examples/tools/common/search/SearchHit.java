@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.search;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Represents a single hit of a search, i.e. an embedded asset of a search result page.
+ */
+public final class SearchHit {
+    public final String id;
+    public final String type;
+    public final String systemType;
+    public final String systemId;
+    public final String name;
+    public final String href;
+    private final Map<String, String> commonAttributes;
+
+    public SearchHit(String id, String type, String systemType, String systemId, String name, String href, Map<String, String> commonAttributes) {
+        this.id = id;
+        this.type = type;
+        this.systemType = systemType;
+        this.systemId = systemId;
+        this.name = name;
+        this.href = href;
+        this.commonAttributes = Collections.unmodifiableMap(commonAttributes);
+    }
+
+    /**
+     * Retrieves the scalar values of the "common" object of the hit.
+     *
+     * @return the common attributes, mapped by name
+     */
+    public Map<String, String> getCommonAttributes() {
+        return commonAttributes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (null == o || getClass() != o.getClass()) {
+            return false;
+        }
+        final SearchHit other = (SearchHit) o;
+        return Objects.equals(href, other.href) && Objects.equals(id, other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(href, id);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s, %s) <%s>", name, type, id, href);
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.search;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import kong.unirest.RawResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A single page of a search result: the hits embedded into the page, the link to the next page and the total count of
+ * hits, if the service reports it. Pages are scanned from the response stream with a streaming parser, only the hits
+ * of the page are kept.
+ */
+public final class SearchPage {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * An empty last page.
+     */
+    public static final SearchPage EMPTY = new SearchPage(Collections.emptyList(), null, -1);
+
+    private final List<SearchHit> hits;
+    private final String next;
+    private final long totalHits;
+
+    SearchPage(List<SearchHit> hits, String next, long totalHits) {
+        this.hits = hits;
+        this.next = next;
+        this.totalHits = totalHits;
+    }
+
+    public List<SearchHit> getHits() {
+        return hits;
+    }
+
+    /**
+     * Retrieves the href of the next page.
+     *
+     * @return the href of the next page or null, if this is the last page
+     */
+    public String getNext() {
+        return next;
+    }
+
+    /**
+     * Retrieves the total count of hits of the search.
+     *
+     * @return the total count of hits or -1, if the service did not report it
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Estimates the heap size of this page, used to bound caches of pages.
+     *
+     * @return the estimated size in bytes
+     */
+    long estimateBytes() {
+        long bytes = 64 + estimateBytes(next);
+        for (final SearchHit hit : hits) {
+            bytes += 64
+                    + estimateBytes(hit.id) + estimateBytes(hit.type) + estimateBytes(hit.systemType)
+                    + estimateBytes(hit.systemId) + estimateBytes(hit.name) + estimateBytes(hit.href);
+            for (final Map.Entry<String, String> attribute : hit.getCommonAttributes().entrySet()) {
+                bytes += 32 + estimateBytes(attribute.getKey()) + estimateBytes(attribute.getValue());
+            }
+        }
+        return bytes;
+    }
+
+    private static long estimateBytes(String value) {
+        return null != value ? 40 + value.length() : 0;
+    }
+
+    /**
+     * Creates a body handler to be passed to Unirest's asObject()/asObjectAsync(). The body of a response with a status
+     * other than 200 is not read and results in a null body.
+     *
+     * @return a body handler reading a search result page
+     */
+    public static Function<RawResponse, SearchPage> bodyHandler() {
+        return rawResponse -> {
+            if (HttpURLConnection.HTTP_OK != rawResponse.getStatus()) {
+                return null;
+            }
+            try (final InputStream content = rawResponse.getContent()) {
+                return read(content);
+            } catch (final IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        };
+    }
+
+    /**
+     * Reads a search result page.
+     *
+     * @param content the content of the page
+     * @return the page
+     */
+    public static SearchPage read(InputStream content) throws IOException {
+        try (final JsonParser parser = jsonFactory.createParser(content)) {
+            if (JsonToken.START_OBJECT != parser.nextToken()) {
+                return EMPTY;
+            }
+
+            final List<SearchHit> hits = new ArrayList<>();
+            String next = null;
+            long totalHits = -1;
+            while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                switch (fieldName) {
+                    case "_embedded":
+                        readEmbedded(parser, hits);
+                        break;
+                    case "_links":
+                        next = readHref(parser, "next");
+                        break;
+                    case "paging":
+                        totalHits = readTotalElements(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return new SearchPage(hits, next, totalHits);
+        }
+    }
+
+    /**
+     * Reads all embedded resources as hits, e.g. "aa:asset", regardless of the relation name.
+     */
+    private static void readEmbedded(JsonParser parser, List<SearchHit> hits) throws IOException {
+        if (JsonToken.START_OBJECT != parser.currentToken()) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (JsonToken.FIELD_NAME == parser.nextToken()) {
+            final JsonToken value = parser.nextToken();
+            if (JsonToken.START_ARRAY == value) {
+                while (JsonToken.START_OBJECT == parser.nextToken()) {
+                    hits.add(readHit(parser));
+                }
+            } else if (JsonToken.START_OBJECT == value) {
+                hits.add(readHit(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static SearchHit readHit(JsonParser parser) throws IOException {
+        String id = null;
+        String type = null;
+        String systemType = null;
+        String systemId = null;
+        String href = null;
+        final Map<String, String> commonAttributes = new LinkedHashMap<>();
+        while (JsonToken.FIELD_NAME == parser.nextToken()) {
+            final String fieldName = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if ("base".equals(fieldName) && JsonToken.START_OBJECT == value) {
+                while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                    final String baseFieldName = parser.getCurrentName();
+                    parser.nextToken();
+                    switch (baseFieldName) {
+                        case "id":
+                            id = parser.getValueAsString();
+                            break;
+                        case "type":
+                            type = parser.getValueAsString();
+                            break;
+                        case "systemType":
+                            systemType = parser.getValueAsString();
+                            break;
+                        case "systemID":
+                            systemId = parser.getValueAsString();
+                            break;
+                        default:
+                            parser.skipChildren();
+                    }
+                }
+            } else if ("common".equals(fieldName) && JsonToken.START_OBJECT == value) {
+                while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                    final String attributeName = parser.getCurrentName();
+                    if (parser.nextToken().isScalarValue()) {
+                        commonAttributes.put(attributeName, parser.getValueAsString());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else if ("_links".equals(fieldName)) {
+                href = readHref(parser, "self");
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new SearchHit(id, type, systemType, systemId, commonAttributes.get("name"), href, commonAttributes);
+    }
+
+    /**
+     * Reads the "_links" object the parser is positioned at and returns the href of the passed relation.
+     */
+    private static String readHref(JsonParser parser, String relation) throws IOException {
+        if (JsonToken.START_OBJECT != parser.currentToken()) {
+            parser.skipChildren();
+            return null;
+        }
+
+        String href = null;
+        while (JsonToken.FIELD_NAME == parser.nextToken()) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if (relation.equals(fieldName) && JsonToken.START_OBJECT == parser.currentToken()) {
+                while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                    final String linkFieldName = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("href".equals(linkFieldName)) {
+                        href = parser.getValueAsString();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return href;
+    }
+
+    private static long readTotalElements(JsonParser parser) throws IOException {
+        if (JsonToken.START_OBJECT != parser.currentToken()) {
+            parser.skipChildren();
+            return -1;
+        }
+
+        long totalElements = -1;
+        while (JsonToken.FIELD_NAME == parser.nextToken()) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ("totalElements".equals(fieldName)) {
+                totalElements = parser.getValueAsLong(-1);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return totalElements;
+    }
+}
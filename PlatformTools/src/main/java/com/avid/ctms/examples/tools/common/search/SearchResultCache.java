@@ -0,0 +1,244 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.search;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Caches search result pages on the client side.
+ * <ul>
+ *     <li>Pages are keyed by realm and the normalized query, see {@link #key(String, String)}.</li>
+ *     <li>The least recently used pages are evicted, when the estimated size of all cached pages exceeds the byte
+ *     bound.</li>
+ *     <li>Pages expire after the TTL.</li>
+ *     <li>Concurrent requests for the same key share a single in-flight request. Failed requests are not cached.</li>
+ * </ul>
+ * Requests, which are answered from the cache or join an in-flight request, count as hits.
+ */
+public class SearchResultCache {
+    private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static class Entry {
+        final CompletableFuture<SearchPage> page;
+        long bytes;
+        long expiresAtNanos = Long.MAX_VALUE;
+
+        Entry(CompletableFuture<SearchPage> page) {
+            this.page = page;
+        }
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxBytes the maximum estimated size of all cached pages in bytes
+     * @param ttl      the time after which a cached page expires
+     */
+    public SearchResultCache(long maxBytes, Duration ttl) {
+        this.maxBytes = maxBytes;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Creates the cache key for a query body, e.g. {"q": "wheather", "path": "", "offset": 0, "limit": 25}. The body is
+     * normalized: properties are sorted by name, text values are trimmed and whitespace is collapsed, so that bodies,
+     * which differ only in formatting, share a key.
+     *
+     * @param realm     the realm of the searched service
+     * @param queryBody the query as JSON object
+     * @return the cache key
+     * @throws IllegalArgumentException if the body is no JSON object
+     */
+    public static String key(String realm, String queryBody) {
+        try {
+            final JsonNode query = objectMapper.readTree(queryBody);
+            if (!(query instanceof ObjectNode)) {
+                throw new IllegalArgumentException("query body must be a JSON object");
+            }
+            return key(realm, (ObjectNode) query);
+        } catch (final JsonProcessingException exception) {
+            throw new IllegalArgumentException("malformed query body", exception);
+        }
+    }
+
+    /**
+     * Creates the cache key for a simple search.
+     *
+     * @param realm            the realm of the searched service
+     * @param searchExpression the search expression
+     * @param path             the path the search is restricted to, may be empty
+     * @param offset           the offset of the page
+     * @param limit            the size of the page
+     * @return the cache key
+     */
+    public static String key(String realm, String searchExpression, String path, int offset, int limit) {
+        final ObjectNode query = JsonNodeFactory.instance.objectNode();
+        query.put("q", searchExpression);
+        query.put("path", path);
+        query.put("offset", offset);
+        query.put("limit", limit);
+        return key(realm, query);
+    }
+
+    private static String key(String realm, ObjectNode query) {
+        final Map<String, Object> normalized = new TreeMap<>();
+        query.fields().forEachRemaining(field -> normalized.put(
+                field.getKey()
+                , field.getValue().isTextual()
+                        ? WHITESPACE.matcher(field.getValue().textValue().trim()).replaceAll(" ")
+                        : field.getValue()));
+        try {
+            return Objects.toString(realm, "") + '\n' + objectMapper.writeValueAsString(normalized);
+        } catch (final JsonProcessingException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * Retrieves the page for the passed key. If the page is not cached or has expired, it is requested with the passed
+     * loader, unless a request for the same key is in flight.
+     *
+     * @param key    the key as created by {@link #key(String, String)}
+     * @param loader requests the page
+     * @return the cached, in-flight or requested page, cancelling it does not affect other callers
+     */
+    public CompletableFuture<SearchPage> get(String key, Supplier<CompletableFuture<SearchPage>> loader) {
+        final Entry entry;
+        synchronized (this) {
+            final Entry cached = entries.get(key);
+            if (null != cached && System.nanoTime() - cached.expiresAtNanos < 0) {
+                hits.increment();
+                // a copy, so that cancelling it does not cancel the page for other callers
+                return cached.page.copy();
+            }
+            if (null != cached) {
+                remove(key, cached);
+            }
+            misses.increment();
+            entry = new Entry(new CompletableFuture<>());
+            entries.put(key, entry);
+        }
+
+        final CompletableFuture<SearchPage> loaded;
+        try {
+            loaded = loader.get();
+        } catch (final RuntimeException exception) {
+            // otherwise, the in-flight entry would never complete and block all later callers for that key:
+            synchronized (this) {
+                remove(key, entry);
+            }
+            entry.page.completeExceptionally(exception);
+            return entry.page.copy();
+        }
+        loaded.whenComplete((page, failure) -> {
+            if (null != failure) {
+                synchronized (this) {
+                    remove(key, entry);
+                }
+                entry.page.completeExceptionally(failure);
+            } else {
+                admit(key, entry, page);
+                entry.page.complete(page);
+            }
+        });
+        return entry.page.copy();
+    }
+
+    private synchronized void admit(String key, Entry entry, SearchPage page) {
+        if (entries.get(key) != entry) {
+            // invalidated while in flight
+            return;
+        }
+        entry.bytes = page.estimateBytes();
+        entry.expiresAtNanos = System.nanoTime() + ttlNanos;
+        bytes += entry.bytes;
+
+        final Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (maxBytes < bytes && eldest.hasNext()) {
+            final Entry candidate = eldest.next().getValue();
+            if (candidate.page.isDone()) {
+                bytes -= candidate.bytes;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            bytes -= entry.bytes;
+        }
+    }
+
+    /**
+     * Removes all pages from the cache. In-flight requests complete, but their pages are not cached.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Retrieves the share of requests answered from the cache or by joining an in-flight request.
+     *
+     * @return the hit rate between 0.0 and 1.0, 0.0 if nothing has been requested yet
+     */
+    public double getHitRate() {
+        final long hitCount = getHitCount();
+        final long requestCount = hitCount + getMissCount();
+        return 0 < requestCount
+                ? (double) hitCount / requestCount
+                : 0.0;
+    }
+
+    public synchronized long getEstimatedBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "hits: %d, misses: %d, hit rate: %.1f%%, evictions: %d, cached bytes: %d"
+                , getHitCount()
+                , getMissCount()
+                , 100.0 * getHitRate()
+                , getEvictionCount()
+                , getEstimatedBytes());
+    }
+}
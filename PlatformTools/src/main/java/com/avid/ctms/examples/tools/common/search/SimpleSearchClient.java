@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.search;
+
+import com.avid.ctms.examples.tools.common.PlatformTools;
+import com.avid.ctms.examples.tools.common.UriTemplates;
+import com.avid.ctms.examples.tools.common.transport.Transports;
+import kong.unirest.Unirest;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Executes simple searches against a "search:simple-search" resource and streams the hits page by page.
+ * <p>
+ * While the hits of a page are consumed, up to prefetchPages further pages are requested in the background. If the URI
+ * template has an "offset" variable, the pages of the window are requested in parallel, otherwise the "next" links are
+ * followed, each page being requested as soon as its predecessor has arrived. Only the pages of the window are kept in
+ * memory.
+ */
+public class SimpleSearchClient {
+    /**
+     * The name of the resource in the CTMS Registry.
+     */
+    public static final String RESOURCE_NAME = "search:simple-search";
+
+    private final String uriTemplate;
+    private final int pageSize;
+    private final int prefetchPages;
+    private final SearchResultCache cache;
+    private final String realm;
+
+    /**
+     * Creates a client.
+     *
+     * @param uriTemplate   the URI template of the simple search resource, as found in the CTMS Registry, variables:
+     *                      search, offset, limit
+     * @param pageSize      the count of hits requested per page
+     * @param prefetchPages the maximum count of pages requested ahead of the consumer
+     */
+    public SimpleSearchClient(String uriTemplate, int pageSize, int prefetchPages) {
+        this(uriTemplate, pageSize, prefetchPages, null, null);
+    }
+
+    /**
+     * Creates a client, which answers page requests from the passed cache. Pages are only cached by offset, pages
+     * reached by following "next" links are always requested.
+     *
+     * @param uriTemplate   the URI template of the simple search resource, as found in the CTMS Registry, variables:
+     *                      search, offset, limit
+     * @param pageSize      the count of hits requested per page
+     * @param prefetchPages the maximum count of pages requested ahead of the consumer
+     * @param cache         the cache of pages, may be shared between clients
+     * @param realm         the realm of the service, part of the cache key
+     */
+    public SimpleSearchClient(String uriTemplate, int pageSize, int prefetchPages, SearchResultCache cache, String realm) {
+        if (0 >= pageSize || 0 >= prefetchPages) {
+            throw new IllegalArgumentException("pageSize and prefetchPages must be positive");
+        }
+        this.uriTemplate = uriTemplate;
+        this.pageSize = pageSize;
+        this.prefetchPages = prefetchPages;
+        this.cache = cache;
+        this.realm = realm;
+    }
+
+    /**
+     * Looks up the URI templates of the simple search resources of the passed service in the CTMS Registry.
+     *
+     * @param apiDomain              address to get "auth"
+     * @param serviceType            the service type, e.g. "avid.mam.assets.access"
+     * @param serviceVersion         the version of the service
+     * @param realm                  the realm of the service
+     * @param registryServiceVersion version of the CTMS Registry to query
+     * @return the URI templates matching the realm, or a default URI template, if the CTMS Registry is unreachable or
+     * the resource could not be found
+     */
+    public static List<String> findUriTemplates(String apiDomain, String serviceType, String serviceVersion, String realm, String registryServiceVersion) {
+        final String defaultSimpleSearchUriTemplate
+                = String.format("https://%s/apis/%s;version=%s;realm=%s/searches/simple?search={search}{&offset,limit,sort}", apiDomain, serviceType, serviceVersion, realm);
+        final List<String> simpleSearchUriTemplates
+                = PlatformTools.findInRegistry(apiDomain, Collections.singletonList(serviceType), registryServiceVersion, RESOURCE_NAME, defaultSimpleSearchUriTemplate);
+
+        final List<String> inRealm = new ArrayList<>(simpleSearchUriTemplates.size());
+        for (final String simpleSearchUriTemplate : simpleSearchUriTemplates) {
+            if (simpleSearchUriTemplate.contains(realm)) {
+                inRealm.add(simpleSearchUriTemplate);
+            }
+        }
+        return inRealm.isEmpty()
+                ? Collections.singletonList(defaultSimpleSearchUriTemplate)
+                : inRealm;
+    }
+
+    public String getUriTemplate() {
+        return uriTemplate;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Requests a single page of hits. Cancelling the page aborts its request, unless the page is requested via the
+     * cache, because other callers may share the request.
+     *
+     * @param searchExpression the search expression
+     * @param offset           the offset of the first hit of the page
+     * @return the page, completes exceptionally, if the request failed
+     */
+    public CompletableFuture<SearchPage> fetchPage(String searchExpression, int offset) {
+        return null != cache
+                ? cache.get(SearchResultCache.key(realm, searchExpression, "", offset, pageSize), () -> fetch(expand(searchExpression, offset)))
+                : fetch(expand(searchExpression, offset));
+    }
+
+    /**
+     * Starts the passed search. The returned stream is lazy, pages are requested while the stream is consumed. Closing
+     * the stream aborts outstanding requests, except requests of pages shared via the cache.
+     *
+     * @param searchExpression the search expression
+     * @return the hits of the search
+     */
+    public Stream<SearchHit> search(String searchExpression) {
+        final boolean offsetPaging = UriTemplates.hasVariable(uriTemplate, "offset");
+        final PageWindow window
+                = offsetPaging
+                ? PageWindow.byOffset(offset -> fetchPage(searchExpression, offset), pageSize, prefetchPages)
+                : PageWindow.byNextLink(fetchPage(searchExpression, 0), SimpleSearchClient::fetch, prefetchPages);
+        return window.stream();
+    }
+
+    private String expand(String searchExpression, int offset) {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("search", searchExpression);
+        values.put("offset", offset);
+        values.put("limit", pageSize);
+        return UriTemplates.expand(uriTemplate, values);
+    }
+
+    /**
+     * Requests the page behind the passed URL, e.g. the "next" link of a page. If the page is cancelled or times out
+     * (orTimeout()) before it has been received, its request is aborted.
+     *
+     * @param url the URL of the page
+     * @return the page, completes exceptionally, if the request failed
+     */
+    static CompletableFuture<SearchPage> fetch(String url) {
+        return Transports.abortable(() -> Unirest
+                .get(url)
+                .asObjectAsync(SearchPage.bodyHandler())
+                .thenApply(response -> {
+                    if (null == response.getBody()) {
+                        throw new IllegalStateException(String.format("Search request <%s> failed: %d %s", url, response.getStatus(), response.getStatusText()));
+                    }
+                    return response.getBody();
+                }));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.search;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Reads XML search results with a StAX reader, no DOM tree is built. Each child element of the root element is read as
+ * a hit: the attributes of the hit element and the texts of its descendant elements (by local name) become the fields
+ * of the hit. A "totalhits" attribute of the root element is read as total count of hits.
+ */
+final class XmlSearchPageReader {
+    private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newFactory();
+
+    static {
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private XmlSearchPageReader() {
+    }
+
+    static SearchPage read(InputStream content) throws IOException {
+        try {
+            final XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(content);
+            try {
+                if (!nextStartElement(reader)) {
+                    return SearchPage.EMPTY;
+                }
+
+                final long totalHits = parseLong(reader.getAttributeValue(null, "totalhits"));
+                final List<SearchHit> hits = new ArrayList<>();
+                while (nextChildElement(reader)) {
+                    hits.add(readHit(reader));
+                }
+                return new SearchPage(hits, null, totalHits);
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException exception) {
+            throw new IOException("malformed search result", exception);
+        }
+    }
+
+    /**
+     * Reads the hit element the reader is positioned at, the reader is left at its end element.
+     */
+    private static SearchHit readHit(XMLStreamReader reader) throws XMLStreamException {
+        final Map<String, String> fields = new LinkedHashMap<>();
+        for (int i = 0; i < reader.getAttributeCount(); ++i) {
+            fields.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+        final String elementName = reader.getLocalName();
+
+        final StringBuilder text = new StringBuilder();
+        int depth = 1;
+        String fieldName = null;
+        while (0 < depth) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    ++depth;
+                    fieldName = reader.getLocalName();
+                    text.setLength(0);
+                    for (int i = 0; i < reader.getAttributeCount(); ++i) {
+                        fields.putIfAbsent(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    if (null != fieldName) {
+                        text.append(reader.getText());
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    --depth;
+                    if (null != fieldName) {
+                        fields.put(fieldName, text.toString().trim());
+                        fieldName = null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return new SearchHit(
+                first(fields, "id", "guid")
+                , first(fields, "type", "objectclass")
+                , first(fields, "systemType")
+                , first(fields, "systemID", "systemId")
+                , first(fields, "name", "title", "MAINTITLE")
+                , first(fields, "href", "uri", "url")
+                , fields);
+    }
+
+    private static boolean nextStartElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (XMLStreamConstants.START_ELEMENT == reader.next()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves to the next child element of the current element, returns false at the end element of the current element.
+     */
+    private static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    return true;
+                case XMLStreamConstants.END_ELEMENT:
+                    return false;
+                default:
+                    break;
+            }
+        }
+        return false;
+    }
+
+    private static String first(Map<String, String> fields, String... names) {
+        for (final String name : names) {
+            final String value = fields.get(name);
+            if (null != value) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return null != value ? Long.parseLong(value.trim()) : -1;
+        } catch (final NumberFormatException exception) {
+            return -1;
+        }
+    }
+}
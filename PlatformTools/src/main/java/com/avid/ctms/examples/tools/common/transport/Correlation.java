@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.transport;
+
+import reactor.util.context.Context;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Correlation ids group the requests of a logical operation, e.g. of a login, which consists of several requests. The
+ * {@link RequestTrackingInterceptor} sends the current correlation id with each request as header {@link #HEADER}, it is
+ * also written to the trace log and the flight recording, see {@link RequestRecord}.
+ * <p>
+ * The current correlation id is bound to the current thread by a {@link Scope}. Chains, whose stages run on other
+ * threads, carry the id as follows:
+ * <ul>
+ *     <li>Reactor pipelines carry the id in their Context under {@link #CONTEXT_KEY}, e.g. with
+ *     {@code .contextWrite(Correlation.ensureId())}, code creating requests opens a scope with
+ *     {@link #open(Context)} and the Context of its sink.</li>
+ *     <li>CompletionStage chains wrap their stages with {@link #with(String, Function)}.</li>
+ * </ul>
+ */
+public final class Correlation {
+    /**
+     * The request header carrying the correlation id.
+     */
+    public static final String HEADER = "X-Correlation-ID";
+    /**
+     * The key of the correlation id in a Reactor Context.
+     */
+    public static final String CONTEXT_KEY = Correlation.class.getName();
+
+    private static final ThreadLocal<String> current = new ThreadLocal<>();
+    private static final Scope NO_SCOPE = () -> {
+    };
+
+    /**
+     * Binds a correlation id to the current thread, closing the scope restores the previous id.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private Correlation() {
+    }
+
+    /**
+     * @return a new random correlation id of 16 hex digits
+     */
+    public static String newId() {
+        return String.format("%016x", ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * @return the correlation id bound to the current thread or null
+     */
+    public static String current() {
+        return current.get();
+    }
+
+    /**
+     * Binds the passed correlation id to the current thread.
+     *
+     * @param correlationId the correlation id, null leaves the current id untouched
+     * @return the scope, which must be closed on the current thread
+     */
+    public static Scope open(String correlationId) {
+        if (null == correlationId) {
+            return NO_SCOPE;
+        }
+        final String previous = current.get();
+        current.set(correlationId);
+        return () -> {
+            if (null != previous) {
+                current.set(previous);
+            } else {
+                current.remove();
+            }
+        };
+    }
+
+    /**
+     * Binds the correlation id of the passed Reactor Context to the current thread.
+     *
+     * @param context the Context, e.g. of a MonoSink or FluxSink
+     * @return the scope, which must be closed on the current thread
+     */
+    public static Scope open(Context context) {
+        return open(context.<String>getOrDefault(CONTEXT_KEY, null));
+    }
+
+    /**
+     * Creates a function for Reactor's contextWrite(), which adds a new correlation id to the Context, if it has none.
+     * The correlation id bound to the subscribing thread is used, if any.
+     *
+     * @return the function
+     */
+    public static Function<Context, Context> ensureId() {
+        return context -> context.hasKey(CONTEXT_KEY)
+                ? context
+                : context.put(CONTEXT_KEY, null != current() ? current() : newId());
+    }
+
+    /**
+     * Wraps the passed function, so that it runs with the passed correlation id bound to the executing thread, e.g. as
+     * a stage of a CompletionStage chain.
+     *
+     * @param correlationId the correlation id
+     * @param function      the function
+     * @return the wrapping function
+     */
+    public static <T, R> Function<T, R> with(String correlationId, Function<T, R> function) {
+        return argument -> {
+            final Scope scope = open(correlationId);
+            try {
+                return function.apply(argument);
+            } finally {
+                scope.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.transport;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps an entity and adds the count of bytes read from its content to a counter. Optionally, the end of the content,
+ * i.e. the end of the stream or closing it, is signalled.
+ */
+class CountingEntity extends HttpEntityWrapper {
+    private static final Runnable NO_END = () -> {
+    };
+
+    private final LongAdder counter;
+    private final Runnable atEnd;
+
+    CountingEntity(HttpEntity wrappedEntity, LongAdder counter) {
+        this(wrappedEntity, counter, NO_END);
+    }
+
+    /**
+     * @param atEnd called at the end of the content, possibly more than once
+     */
+    CountingEntity(HttpEntity wrappedEntity, LongAdder counter, Runnable atEnd) {
+        super(wrappedEntity);
+        this.counter = counter;
+        this.atEnd = atEnd;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        final InputStream content = super.getContent();
+        return null != content
+                ? new CountingInputStream(content, counter, atEnd)
+                : null;
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        try (final InputStream content = getContent()) {
+            if (null != content) {
+                content.transferTo(outStream);
+            }
+        }
+    }
+
+    static class CountingInputStream extends FilterInputStream {
+        private final LongAdder counter;
+        private final Runnable atEnd;
+
+        CountingInputStream(InputStream in, LongAdder counter, Runnable atEnd) {
+            super(in);
+            this.counter = counter;
+            this.atEnd = atEnd;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (-1 != b) {
+                counter.increment();
+            } else {
+                atEnd.run();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int count = super.read(b, off, len);
+            if (0 < count) {
+                counter.add(count);
+            } else if (-1 == count) {
+                atEnd.run();
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long count = super.skip(n);
+            counter.add(count);
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                atEnd.run();
+            }
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
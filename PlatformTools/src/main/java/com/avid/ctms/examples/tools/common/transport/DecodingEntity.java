@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.transport;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.entity.DeflateInputStream;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Wraps an entity with gzip or deflate content encoding and decompresses its content while it is being read. The
+ * content is not buffered. The wrapping entity has no content encoding and an unknown length.
+ */
+class DecodingEntity extends HttpEntityWrapper {
+    private final String encoding;
+
+    private DecodingEntity(HttpEntity wrappedEntity, String encoding) {
+        super(wrappedEntity);
+        this.encoding = encoding;
+    }
+
+    /**
+     * Retrieves the supported content encoding of the passed entity.
+     *
+     * @param entity the entity to check
+     * @return "gzip", "deflate" or null, if the entity has no content encoding, which can be decoded
+     */
+    static String supportedEncoding(HttpEntity entity) {
+        final Header contentEncoding = null != entity ? entity.getContentEncoding() : null;
+        if (null == contentEncoding) {
+            return null;
+        }
+        switch (contentEncoding.getValue().trim().toLowerCase(Locale.ROOT)) {
+            case "gzip":
+            case "x-gzip":
+                return "gzip";
+            case "deflate":
+                return "deflate";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Wraps the passed entity, if it has a supported content encoding.
+     *
+     * @param entity the entity to wrap
+     * @return the wrapping entity or the passed entity, if it has no supported content encoding
+     */
+    static HttpEntity decode(HttpEntity entity) {
+        final String encoding = supportedEncoding(entity);
+        return null != encoding
+                ? new DecodingEntity(entity, encoding)
+                : entity;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        final InputStream content = super.getContent();
+        return "gzip".equals(encoding)
+                ? new GZIPInputStream(content)
+                : new DeflateInputStream(content);
+    }
+
+    @Override
+    public Header getContentEncoding() {
+        return null;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        try (final InputStream content = getContent()) {
+            content.transferTo(outStream);
+        }
+    }
+}
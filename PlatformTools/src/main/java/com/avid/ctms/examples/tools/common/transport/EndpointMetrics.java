@@ -0,0 +1,377 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.transport;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import kong.unirest.HttpRequestSummary;
+import kong.unirest.MetricContext;
+import kong.unirest.UniMetric;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records metrics per endpoint of all requests sent through Unirest configs instrumented with {@link #SHARED}: the count
+ * of requests, the count of responses per status class, the bytes sent and received and a {@link LatencyHistogram}.
+ * <p>
+ * Endpoints are identified by the HTTP method and the endpoint template, see {@link #endpointOf(String, String)}, so
+ * e.g. the listings of all folders of a service share an endpoint.
+ * <ul>
+ *     <li>Requests, statuses and latencies are recorded through Unirest's {@link UniMetric}. The latency of synchronous
+ *     requests lasts until the response head has been received, asynchronous requests buffer the response body, so
+ *     their latency includes receiving the body.</li>
+ *     <li>Bytes are recorded by the transports built with {@link Transports}: bytes out are the lengths of the request
+ *     bodies, bytes in are the bytes of the response bodies as received, i.e. compressed.</li>
+ * </ul>
+ * The metrics can be written as JSON or in the Prometheus text format at any time. If the system property
+ * "ctms.metrics" is set to "json" or "prometheus", the metrics are written at shutdown, to the file named by the system
+ * property "ctms.metrics.file" or to stderr.
+ */
+public final class EndpointMetrics implements UniMetric {
+    private static final Logger LOG = Logger.getLogger(EndpointMetrics.class.getName());
+
+    /**
+     * The metrics shared by all instrumented Unirest configs in this process.
+     */
+    public static final EndpointMetrics SHARED = new EndpointMetrics();
+
+    /**
+     * The system property selecting the format of the metrics written at shutdown.
+     */
+    public static final String FORMAT_PROPERTY = "ctms.metrics";
+    /**
+     * The system property naming the file the metrics are written to at shutdown.
+     */
+    public static final String FILE_PROPERTY = "ctms.metrics.file";
+
+    private static final int MAX_ENDPOINTS = 512;
+    private static final String OTHER_ENDPOINTS = "(other)";
+    private static final String[] STATUS_CLASSES = {"failed", "1xx", "2xx", "3xx", "4xx", "5xx"};
+    private static final double[] BUCKET_BOUNDS_SECONDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public enum Format {
+        JSON,
+        PROMETHEUS
+    }
+
+    /**
+     * The metrics of a single endpoint.
+     */
+    public static final class Endpoint {
+        private final String name;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder[] statusClasses = new LongAdder[STATUS_CLASSES.length];
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private Endpoint(String name) {
+            this.name = name;
+            for (int i = 0; i < statusClasses.length; ++i) {
+                statusClasses[i] = new LongAdder();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getRequestCount() {
+            return requests.sum();
+        }
+
+        /**
+         * @param status the status, e.g. 404, or 0 for requests, which failed without response
+         * @return the count of responses in the status class of the passed status
+         */
+        public long getStatusClassCount(int status) {
+            return statusClasses[statusClassOf(status)].sum();
+        }
+
+        public long getBytesIn() {
+            return bytesIn.sum();
+        }
+
+        public long getBytesOut() {
+            return bytesOut.sum();
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        LongAdder bytesInCounter() {
+            return bytesIn;
+        }
+
+        LongAdder bytesOutCounter() {
+            return bytesOut;
+        }
+
+        private void reset() {
+            requests.reset();
+            for (final LongAdder statusClass : statusClasses) {
+                statusClass.reset();
+            }
+            bytesIn.reset();
+            bytesOut.reset();
+            latency.reset();
+        }
+    }
+
+    private EndpointMetrics() {
+        final String format = System.getProperty(FORMAT_PROPERTY);
+        if (null != format) {
+            try {
+                final Format dumpFormat = Format.valueOf(format.trim().toUpperCase(Locale.ROOT));
+                final String file = System.getProperty(FILE_PROPERTY);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(dumpFormat, file), "endpoint-metrics-dump"));
+            } catch (final IllegalArgumentException exception) {
+                LOG.log(Level.WARNING, "Unknown metrics format {0}, use json or prometheus", format);
+            }
+        }
+    }
+
+    private static int statusClassOf(int status) {
+        return 100 <= status && 600 > status
+                ? status / 100
+                : 0;
+    }
+
+    /**
+     * Creates the endpoint template of the passed request: the scheme and authority are removed, path segments, which
+     * look like ids, are replaced by "{id}" and only the sorted names of the query parameters are kept. E.g.
+     * "GET https://host/apis/avid.pam;version=0;realm=BEEF/locations/folders/1234?offset=25&amp;limit=25" yields
+     * "GET /apis/avid.pam;version=0;realm=BEEF/locations/folders/{id}?limit&amp;offset".
+     * <p>
+     * A segment looks like an id, if it is percent-encoded or consists of digits only or, if it is at least 8 characters
+     * long and contains digits, but no ';' or '.'.
+     *
+     * @param method the HTTP method
+     * @param uri    the absolute or relative URI of the request
+     * @return the endpoint template
+     */
+    public static String endpointOf(String method, String uri) {
+        final int authority = uri.indexOf("://");
+        final int pathStart
+                = -1 != authority
+                ? uri.indexOf('/', authority + 3)
+                : 0;
+        final String pathAndQuery = -1 != pathStart ? uri.substring(pathStart) : "/";
+        final int fragment = pathAndQuery.indexOf('#');
+        final String withoutFragment = -1 != fragment ? pathAndQuery.substring(0, fragment) : pathAndQuery;
+        final int queryStart = withoutFragment.indexOf('?');
+        final String path = -1 != queryStart ? withoutFragment.substring(0, queryStart) : withoutFragment;
+
+        final StringBuilder endpoint = new StringBuilder(method.length() + path.length() + 16).append(method).append(' ');
+        final StringJoiner segments = new StringJoiner("/");
+        for (final String segment : path.split("/", -1)) {
+            segments.add(looksLikeId(segment) ? "{id}" : segment);
+        }
+        endpoint.append(segments);
+
+        if (-1 != queryStart) {
+            final SortedSet<String> parameterNames = new TreeSet<>();
+            for (final String parameter : withoutFragment.substring(queryStart + 1).split("&")) {
+                final int equals = parameter.indexOf('=');
+                final String parameterName = -1 != equals ? parameter.substring(0, equals) : parameter;
+                if (!parameterName.isEmpty()) {
+                    parameterNames.add(parameterName);
+                }
+            }
+            if (!parameterNames.isEmpty()) {
+                endpoint.append('?').append(String.join("&", parameterNames));
+            }
+        }
+        return endpoint.toString();
+    }
+
+    private static boolean looksLikeId(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        if (-1 != segment.indexOf('%')) {
+            return true;
+        }
+        int digits = 0;
+        for (int i = 0; i < segment.length(); ++i) {
+            final char c = segment.charAt(i);
+            if (';' == c || '.' == c) {
+                return false;
+            }
+            if (Character.isDigit(c)) {
+                ++digits;
+            }
+        }
+        return segment.length() == digits
+                || 8 <= segment.length() && 0 < digits;
+    }
+
+    /**
+     * Retrieves the metrics of the passed endpoint, once MAX_ENDPOINTS endpoints exist, further endpoints are combined
+     * per method.
+     *
+     * @param method the HTTP method
+     * @param uri    the absolute or relative URI of the request
+     * @return the metrics
+     */
+    public Endpoint endpoint(String method, String uri) {
+        final String name = endpointOf(method, uri);
+        final Endpoint endpoint = endpoints.get(name);
+        if (null != endpoint) {
+            return endpoint;
+        }
+        return MAX_ENDPOINTS > endpoints.size()
+                ? endpoints.computeIfAbsent(name, Endpoint::new)
+                : endpoints.computeIfAbsent(method + ' ' + OTHER_ENDPOINTS, Endpoint::new);
+    }
+
+    @Override
+    public MetricContext begin(HttpRequestSummary request) {
+        final Endpoint endpoint = endpoint(request.getHttpMethod().name(), request.getUrl());
+        endpoint.requests.increment();
+        final long start = System.nanoTime();
+        return (response, exception) -> {
+            endpoint.latency.record(System.nanoTime() - start);
+            endpoint.statusClasses[null != response && null == exception ? statusClassOf(response.getStatus()) : 0].increment();
+        };
+    }
+
+    /**
+     * @return the metrics of all endpoints, sorted by name
+     */
+    public List<Endpoint> getEndpoints() {
+        final List<Endpoint> sorted = new ArrayList<>(endpoints.values());
+        sorted.sort(Comparator.comparing(Endpoint::getName));
+        return sorted;
+    }
+
+    public void reset() {
+        endpoints.values().forEach(Endpoint::reset);
+    }
+
+    /**
+     * Writes the metrics of all endpoints.
+     *
+     * @param format the format
+     * @param writer the writer to write to, it is flushed, but not closed
+     * @throws IOException if writing failed
+     */
+    public void write(Format format, Writer writer) throws IOException {
+        if (Format.JSON == format) {
+            writeJson(writer);
+        } else {
+            writePrometheus(writer);
+        }
+        writer.flush();
+    }
+
+    private void writeJson(Writer writer) throws IOException {
+        try (final JsonGenerator generator = new JsonFactory().createGenerator(writer)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("endpoints");
+            for (final Endpoint endpoint : getEndpoints()) {
+                generator.writeStartObject();
+                generator.writeStringField("endpoint", endpoint.name);
+                generator.writeNumberField("requests", endpoint.getRequestCount());
+                generator.writeObjectFieldStart("statusClasses");
+                for (int i = 0; i < STATUS_CLASSES.length; ++i) {
+                    generator.writeNumberField(STATUS_CLASSES[i], endpoint.statusClasses[i].sum());
+                }
+                generator.writeEndObject();
+                generator.writeNumberField("bytesIn", endpoint.getBytesIn());
+                generator.writeNumberField("bytesOut", endpoint.getBytesOut());
+                generator.writeObjectFieldStart("latencyMs");
+                generator.writeNumberField("mean", endpoint.latency.getMean() / 1e6);
+                generator.writeNumberField("p50", endpoint.latency.getValueAtPercentile(50) / 1e6);
+                generator.writeNumberField("p90", endpoint.latency.getValueAtPercentile(90) / 1e6);
+                generator.writeNumberField("p99", endpoint.latency.getValueAtPercentile(99) / 1e6);
+                generator.writeNumberField("p999", endpoint.latency.getValueAtPercentile(99.9) / 1e6);
+                generator.writeNumberField("max", endpoint.latency.getMax() / 1e6);
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        writer.write(System.lineSeparator());
+    }
+
+    private void writePrometheus(Writer writer) throws IOException {
+        final List<Endpoint> sorted = getEndpoints();
+        final StringBuilder sb = new StringBuilder();
+        try (final Formatter formatter = new Formatter(sb, Locale.ROOT)) {
+            formatter.format("# HELP ctms_client_requests_total Responses received from CTMS endpoints, by status class.%n");
+            formatter.format("# TYPE ctms_client_requests_total counter%n");
+            for (final Endpoint endpoint : sorted) {
+                for (int i = 0; i < STATUS_CLASSES.length; ++i) {
+                    final long count = endpoint.statusClasses[i].sum();
+                    if (0 < count) {
+                        formatter.format("ctms_client_requests_total{endpoint=\"%s\",status=\"%s\"} %d%n", escape(endpoint.name), STATUS_CLASSES[i], count);
+                    }
+                }
+            }
+
+            formatter.format("# HELP ctms_client_bytes_total Body bytes sent to and received from CTMS endpoints.%n");
+            formatter.format("# TYPE ctms_client_bytes_total counter%n");
+            for (final Endpoint endpoint : sorted) {
+                formatter.format("ctms_client_bytes_total{endpoint=\"%s\",direction=\"in\"} %d%n", escape(endpoint.name), endpoint.getBytesIn());
+                formatter.format("ctms_client_bytes_total{endpoint=\"%s\",direction=\"out\"} %d%n", escape(endpoint.name), endpoint.getBytesOut());
+            }
+
+            formatter.format("# HELP ctms_client_request_duration_seconds Latency of requests to CTMS endpoints.%n");
+            formatter.format("# TYPE ctms_client_request_duration_seconds histogram%n");
+            for (final Endpoint endpoint : sorted) {
+                final String name = escape(endpoint.name);
+                for (final double bound : BUCKET_BOUNDS_SECONDS) {
+                    formatter.format("ctms_client_request_duration_seconds_bucket{endpoint=\"%s\",le=\"%s\"} %d%n"
+                            , name, bound, endpoint.latency.getCountAtOrBelow((long) (bound * TimeUnit.SECONDS.toNanos(1))));
+                }
+                final long count = endpoint.latency.getCount();
+                formatter.format("ctms_client_request_duration_seconds_bucket{endpoint=\"%s\",le=\"+Inf\"} %d%n", name, count);
+                formatter.format("ctms_client_request_duration_seconds_sum{endpoint=\"%s\"} %.6f%n", name, endpoint.latency.getSum() / 1e9);
+                formatter.format("ctms_client_request_duration_seconds_count{endpoint=\"%s\"} %d%n", name, count);
+            }
+        }
+        writer.write(sb.toString());
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private void dump(Format format, String file) {
+        try {
+            if (null != file) {
+                try (final Writer writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+                    write(format, writer);
+                }
+            } else {
+                write(format, new OutputStreamWriter(System.err, StandardCharsets.UTF_8));
+            }
+        } catch (final IOException | RuntimeException exception) {
+            LOG.log(Level.WARNING, "Writing the endpoint metrics failed: {0}", exception.toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d endpoints", endpoints.size());
+    }
+}
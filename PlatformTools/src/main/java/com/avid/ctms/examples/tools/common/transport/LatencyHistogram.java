@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.transport;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with log-linear buckets in the style of HdrHistogram: values are recorded with a
+ * resolution of 1 microsecond, each power of two is divided into 16 linear sub-buckets, so the relative error of a
+ * recorded value is below 1/16 (6.25%). The range is 1 microsecond to about 38h, larger values are recorded in the last
+ * bucket. The histogram has a fixed size of about 4KB, recording is a single atomic increment per value.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds, negative values are recorded as zero
+     */
+    public void record(long nanos) {
+        final long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        counts.incrementAndGet(indexOf(micros));
+        count.increment();
+        sumMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    static int indexOf(long micros) {
+        if (SUB_BUCKET_COUNT > micros) {
+            return (int) micros;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (MAX_EXPONENT < exponent) {
+            return BUCKET_COUNT - 1;
+        }
+        final int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * @return the smallest value in microseconds, which is recorded in the bucket with the passed index
+     */
+    static long lowerBoundOf(int index) {
+        if (SUB_BUCKET_COUNT > index) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        final long subBucket = index % SUB_BUCKET_COUNT;
+        return (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @return the smallest value in microseconds, which is not recorded in the bucket with the passed index anymore
+     */
+    static long upperBoundOf(int index) {
+        return BUCKET_COUNT - 1 > index
+                ? lowerBoundOf(index + 1)
+                : Long.MAX_VALUE;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the mean latency in nanoseconds, 0 if nothing has been recorded
+     */
+    public long getMean() {
+        final long n = getCount();
+        return 0 < n
+                ? TimeUnit.MICROSECONDS.toNanos(sumMicros.sum()) / n
+                : 0;
+    }
+
+    /**
+     * @return the sum of all latencies in nanoseconds
+     */
+    public long getSum() {
+        return TimeUnit.MICROSECONDS.toNanos(sumMicros.sum());
+    }
+
+    /**
+     * @return the maximum latency in nanoseconds
+     */
+    public long getMax() {
+        return TimeUnit.MICROSECONDS.toNanos(maxMicros.get());
+    }
+
+    /**
+     * Retrieves a latency percentile. The value is the upper bound of the bucket, in which the percentile falls, but
+     * never more than the maximum.
+     *
+     * @param percentile the percentile between 0 and 100
+     * @return the latency in nanoseconds, 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        final long n = getCount();
+        if (0 == n) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long cumulated = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            cumulated += counts.get(i);
+            if (rank <= cumulated) {
+                return TimeUnit.MICROSECONDS.toNanos(Math.min(upperBoundOf(i) - 1, maxMicros.get()));
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Counts the latencies up to the passed bound. Buckets, which straddle the bound, are not counted, so the result is
+     * accurate within the relative error of the histogram.
+     *
+     * @param nanos the bound in nanoseconds
+     * @return the count of latencies less than or equal to the bound
+     */
+    public long getCountAtOrBelow(long nanos) {
+        final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        long cumulated = 0;
+        for (int i = 0; i < BUCKET_COUNT && upperBoundOf(i) - 1 <= micros; ++i) {
+            cumulated += counts.get(i);
+        }
+        return cumulated;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sumMicros.reset();
+        maxMicros.reset();
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.transport;
+
+import com.avid.ctms.examples.tools.common.jfr.RequestEvent;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The state of a single request sent through a client built with {@link Transports}, kept in the HttpContext of the
+ * request, which is shared by the interceptors and the response handling of the transports. A record only exists,
+ * while the {@link RequestEvent} is enabled, i.e. while a flight recording with the event is running, or while the
+ * {@link TraceLog} is written, so the transports do nothing extra otherwise.
+ * <p>
+ * The transports mark the points in time, which divide a request into phases:
+ * <ul>
+ *     <li>wait: until a connection is being established or, if a pooled connection is reused, until the connection is
+ *     ready,</li>
+ *     <li>connect: establishing the TCP connection, for asynchronous requests including waiting for the connection,</li>
+ *     <li>tls: the TLS handshake of a new connection,</li>
+ *     <li>ttfb: from sending the request until the response head has been received,</li>
+ *     <li>body: until the response body has been received, streaming body handlers of synchronous requests parse
+ *     while receiving, so this includes their parsing,</li>
+ *     <li>parse: until Unirest is done with the response, i.e. has transformed the body.</li>
+ * </ul>
+ * A record is finished, when Unirest is done with the response:
+ * <ul>
+ *     <li>Synchronous requests are sent, received and read on the calling thread, so their records are kept as pending
+ *     record of the thread and finished by the {@link RequestTrackingInterceptor}.</li>
+ *     <li>Asynchronous requests are finished by the asynchronous transport, after the callback of Unirest, which reads
+ *     the response body, has returned.</li>
+ * </ul>
+ */
+final class RequestRecord {
+    private static final Logger LOG = Logger.getLogger(RequestRecord.class.getName());
+
+    private static final String ATTRIBUTE = RequestRecord.class.getName();
+    private static final ThreadLocal<RequestRecord> pending = new ThreadLocal<>();
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final RequestEvent event;
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final LongAdder bytesIn = new LongAdder();
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private volatile String method;
+    private volatile String url;
+    private volatile String endpoint;
+    private volatile String correlationId;
+    private volatile long bytesOut;
+    private volatile int status;
+    private volatile long connectNanos;
+    private volatile long tlsStartNanos;
+    private volatile long tlsEndNanos;
+    private volatile long readyNanos;
+    private volatile long headNanos;
+    private volatile long bodyEndNanos;
+
+    private RequestRecord(RequestEvent event) {
+        this.event = event;
+    }
+
+    /**
+     * Begins a record for the request of the passed context, if the request event is enabled or the trace log is
+     * written.
+     *
+     * @param context the context of the request
+     * @return the record or null
+     */
+    static RequestRecord begin(HttpContext context) {
+        final RequestEvent event = new RequestEvent();
+        if (null == context || !event.isEnabled() && !TraceLog.SHARED.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        final RequestRecord record = new RequestRecord(event);
+        context.setAttribute(ATTRIBUTE, record);
+        return record;
+    }
+
+    /**
+     * Begins a record for a synchronous request and makes it the pending record of the current thread. A record, which
+     * is still pending, e.g. because its end has not been signalled, is finished first.
+     *
+     * @param context the context of the request
+     * @return the record or null
+     */
+    static RequestRecord beginPending(HttpContext context) {
+        finishPending();
+        final RequestRecord record = begin(context);
+        if (null != record) {
+            pending.set(record);
+        }
+        return record;
+    }
+
+    /**
+     * Finishes the pending record of the current thread, if any.
+     */
+    static void finishPending() {
+        final RequestRecord record = pending.get();
+        if (null != record) {
+            pending.remove();
+            record.finish();
+        }
+    }
+
+    /**
+     * @return the record of the request of the passed context or null
+     */
+    static RequestRecord of(HttpContext context) {
+        final Object record = null != context ? context.getAttribute(ATTRIBUTE) : null;
+        return record instanceof RequestRecord
+                ? (RequestRecord) record
+                : null;
+    }
+
+    void request(String method, String url, EndpointMetrics.Endpoint endpoint, long bytesOut, String correlationId) {
+        this.method = method;
+        this.url = url;
+        this.endpoint = endpoint.getName();
+        this.bytesOut = bytesOut;
+        this.correlationId = correlationId;
+    }
+
+    /**
+     * Marks the start of establishing a new connection.
+     */
+    void connecting() {
+        connectNanos = System.nanoTime();
+    }
+
+    /**
+     * Passes the TLS handshake of the connection, over which the request is sent. The handshake is ignored, if it
+     * happened before the request, i.e. if the connection is reused.
+     */
+    void tls(long startNanos, long endNanos) {
+        if (this.startNanos <= startNanos && startNanos <= endNanos) {
+            tlsStartNanos = startNanos;
+            tlsEndNanos = endNanos;
+        }
+    }
+
+    /**
+     * Marks, that the connection is ready and the request is being sent.
+     */
+    void ready() {
+        readyNanos = System.nanoTime();
+    }
+
+    /**
+     * Marks, that the response head has been received.
+     */
+    void response(int status) {
+        headNanos = System.nanoTime();
+        this.status = status;
+    }
+
+    /**
+     * Marks, that the response body has been received completely, only the first call counts.
+     */
+    void bodyEnd() {
+        if (0 == bodyEndNanos) {
+            bodyEndNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * @return the counter of the bytes of the response body as received
+     */
+    LongAdder bytesInCounter() {
+        return bytesIn;
+    }
+
+    private static long between(long fromNanos, long toNanos) {
+        return 0 != fromNanos && fromNanos <= toNanos
+                ? toNanos - fromNanos
+                : 0;
+    }
+
+    /**
+     * Ends this record, commits its event and writes it to the trace log, subsequent calls do nothing.
+     */
+    void finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        final long finishNanos = System.nanoTime();
+        final boolean handshake = 0 != tlsStartNanos;
+        final long connectStartNanos
+                = 0 != connectNanos
+                ? connectNanos
+                : handshake ? startNanos : 0;
+        final long waitNanos = between(startNanos, 0 != connectStartNanos ? connectStartNanos : readyNanos);
+        final long connectPhaseNanos = between(connectStartNanos, handshake ? tlsStartNanos : readyNanos);
+        final long tlsNanos = between(tlsStartNanos, tlsEndNanos);
+        final long ttfbNanos = between(readyNanos, headNanos);
+        final long bodyNanos = between(headNanos, bodyEndNanos);
+        final long parseNanos = between(0 != bodyEndNanos ? bodyEndNanos : headNanos, finishNanos);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.method = method;
+            event.url = url;
+            event.endpoint = endpoint;
+            event.correlationId = correlationId;
+            event.status = status;
+            event.bytesOut = bytesOut;
+            event.bytesIn = bytesIn.sum();
+            event.waitTime = waitNanos;
+            event.connectTime = connectPhaseNanos;
+            event.tlsTime = tlsNanos;
+            event.timeToFirstByte = ttfbNanos;
+            event.bodyTime = bodyNanos;
+            event.parseTime = parseNanos;
+            event.commit();
+        }
+
+        if (TraceLog.SHARED.isEnabled()) {
+            final StringWriter line = new StringWriter(256);
+            try (final JsonGenerator generator = jsonFactory.createGenerator(line)) {
+                generator.writeStartObject();
+                generator.writeStringField("start", Instant.ofEpochMilli(startMillis).toString());
+                if (null != correlationId) {
+                    generator.writeStringField("correlationId", correlationId);
+                }
+                generator.writeStringField("thread", Thread.currentThread().getName());
+                generator.writeStringField("method", method);
+                generator.writeStringField("url", url);
+                generator.writeStringField("endpoint", endpoint);
+                generator.writeNumberField("status", status);
+                generator.writeNumberField("bytesOut", bytesOut);
+                generator.writeNumberField("bytesIn", bytesIn.sum());
+                generator.writeBooleanField("newConnection", 0 != connectStartNanos);
+                generator.writeNumberField("totalUs", TimeUnit.NANOSECONDS.toMicros(finishNanos - startNanos));
+                generator.writeNumberField("waitUs", TimeUnit.NANOSECONDS.toMicros(waitNanos));
+                generator.writeNumberField("connectUs", TimeUnit.NANOSECONDS.toMicros(connectPhaseNanos));
+                generator.writeNumberField("tlsUs", TimeUnit.NANOSECONDS.toMicros(tlsNanos));
+                generator.writeNumberField("ttfbUs", TimeUnit.NANOSECONDS.toMicros(ttfbNanos));
+                generator.writeNumberField("bodyUs", TimeUnit.NANOSECONDS.toMicros(bodyNanos));
+                generator.writeNumberField("parseUs", TimeUnit.NANOSECONDS.toMicros(parseNanos));
+                generator.writeEndObject();
+            } catch (final IOException exception) {
+                LOG.log(Level.WARNING, "Tracing the request failed: {0}", exception.toString());
+                return;
+            }
+            TraceLog.SHARED.append(line.toString());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.transport;
+
+import kong.unirest.Config;
+import kong.unirest.HttpRequest;
+import kong.unirest.HttpRequestSummary;
+import kong.unirest.HttpResponse;
+import kong.unirest.Interceptor;
+
+/**
+ * Adds the current {@link Correlation} id to each request, unless the request has one already, and signals the
+ * transports built with {@link Transports}, that Unirest is done with the response of a synchronous request, so that
+ * the request is recorded including reading and parsing its body, see {@link RequestRecord}.
+ * <p>
+ * Unirest calls onRequest on the thread, which sends the request, also for asynchronous requests.
+ * <p>
+ * Unirest asks its interceptors one after another to recover from failures, until one of them returns a response or
+ * throws. This interceptor returns no response, but it must be registered before interceptors, which throw, e.g. the
+ * SessionCredentialsInterceptor, to be asked at all.
+ */
+public class RequestTrackingInterceptor implements Interceptor {
+    public static final RequestTrackingInterceptor INSTANCE = new RequestTrackingInterceptor();
+
+    private RequestTrackingInterceptor() {
+    }
+
+    @Override
+    public void onRequest(HttpRequest<?> request, Config config) {
+        final String correlationId = Correlation.current();
+        if (null != correlationId && !request.getHeaders().containsKey(Correlation.HEADER)) {
+            request.header(Correlation.HEADER, correlationId);
+        }
+    }
+
+    @Override
+    public void onResponse(HttpResponse<?> response, HttpRequestSummary request, Config config) {
+        RequestRecord.finishPending();
+    }
+
+    @Override
+    public HttpResponse<?> onFail(Exception exception, HttpRequestSummary request, Config config) {
+        RequestRecord.finishPending();
+        return null;
+    }
+}
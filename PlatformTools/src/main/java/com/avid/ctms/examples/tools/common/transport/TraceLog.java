@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.transport;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes a trace of all requests sent through the transports built with {@link Transports} as JSON lines, one line per
+ * request with its correlation id and the timing of its phases, see {@link RequestRecord}. The trace is written, if
+ * the system property "ctms.trace.file" names a file, an existing file is overwritten.
+ * <p>
+ * Lines are written by a background thread, so that the threads finishing requests, e.g. IO reactor threads, do not
+ * wait for the file. The file is flushed, whenever no more lines are queued, and closed at shutdown.
+ */
+public final class TraceLog {
+    private static final Logger LOG = Logger.getLogger(TraceLog.class.getName());
+
+    /**
+     * The system property naming the file the trace is written to.
+     */
+    public static final String FILE_PROPERTY = "ctms.trace.file";
+
+    static final TraceLog SHARED = new TraceLog(System.getProperty(FILE_PROPERTY));
+
+    private final BufferedWriter writer;
+    private final ThreadPoolExecutor executor;
+
+    private TraceLog(String file) {
+        BufferedWriter fileWriter = null;
+        if (null != file) {
+            try {
+                fileWriter = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8);
+            } catch (final IOException | RuntimeException exception) {
+                LOG.log(Level.WARNING, "Creating the trace log failed: {0}", exception.toString());
+            }
+        }
+        writer = fileWriter;
+        if (null != writer) {
+            executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                final Thread thread = new Thread(runnable, "ctms-trace-1");
+                thread.setDaemon(true);
+                return thread;
+            });
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close, "ctms-trace-close"));
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * @return whether the trace is written
+     */
+    boolean isEnabled() {
+        return null != writer;
+    }
+
+    /**
+     * Queues a line to be written.
+     *
+     * @param line the JSON line without line break
+     */
+    void append(String line) {
+        if (null == executor) {
+            return;
+        }
+        try {
+            executor.execute(() -> write(line));
+        } catch (final RejectedExecutionException exception) {
+            // shutting down, the line is dropped
+        }
+    }
+
+    private void write(String line) {
+        try {
+            writer.write(line);
+            writer.newLine();
+            if (executor.getQueue().isEmpty()) {
+                writer.flush();
+            }
+        } catch (final IOException exception) {
+            LOG.log(Level.WARNING, "Writing the trace log failed: {0}", exception.toString());
+        }
+    }
+
+    private void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            writer.close();
+        } catch (final IOException exception) {
+            LOG.log(Level.WARNING, "Closing the trace log failed: {0}", exception.toString());
+        }
+    }
+}
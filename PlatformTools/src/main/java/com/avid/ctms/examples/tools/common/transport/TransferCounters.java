@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.transport;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the requests and response body bytes of all transports configured with {@link Transports}. "Wire bytes" are
+ * the bytes of the response bodies as received, i.e. compressed, if the server applied a content encoding. "Decoded
+ * bytes" are the bytes of the response bodies after decompression. Only bytes, which have actually been read from the
+ * response bodies, are counted.
+ */
+public final class TransferCounters {
+    /**
+     * The counters shared by all transports in this process.
+     */
+    public static final TransferCounters SHARED = new TransferCounters();
+
+    final LongAdder requests = new LongAdder();
+    final LongAdder encodedResponses = new LongAdder();
+    final LongAdder wireBytes = new LongAdder();
+    final LongAdder decodedBytes = new LongAdder();
+
+    private TransferCounters() {
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Retrieves the count of responses, which had a gzip or deflate content encoding.
+     *
+     * @return the count of compressed responses
+     */
+    public long getEncodedResponseCount() {
+        return encodedResponses.sum();
+    }
+
+    public long getWireBytes() {
+        return wireBytes.sum();
+    }
+
+    public long getDecodedBytes() {
+        return decodedBytes.sum();
+    }
+
+    /**
+     * Retrieves the ratio of decoded bytes to wire bytes.
+     *
+     * @return the compression ratio, e.g. 10.0, if the decoded bodies are ten times as large as the received bodies, or
+     * 1.0, if nothing has been received yet
+     */
+    public double getCompressionRatio() {
+        final long wire = getWireBytes();
+        return 0 < wire
+                ? (double) getDecodedBytes() / wire
+                : 1.0;
+    }
+
+    public void reset() {
+        requests.reset();
+        encodedResponses.reset();
+        wireBytes.reset();
+        decodedBytes.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "requests: %d, compressed responses: %d, wire bytes: %d, decoded bytes: %d, ratio: %.1f"
+                , getRequestCount()
+                , getEncodedResponseCount()
+                , getWireBytes()
+                , getDecodedBytes()
+                , getCompressionRatio());
+    }
+}
@@ -0,0 +1,506 @@
+/*
+ * Copyright 2021 by Avid Technology, Inc.
+ */
+
+package com.avid.ctms.examples.tools.common.transport;
+
+import org.apache.http.Header;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.conn.ManagedNHttpClientConnection;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.nio.reactor.ssl.SSLIOSession;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Builds the Apache HTTP clients, which are passed to Unirest by the tools, so that all of them negotiate gzip/deflate
+ * compression, decompress response bodies while they are being read and update the {@link TransferCounters} and the
+ * bytes of the {@link EndpointMetrics}. While a flight recording is running, each request is recorded as
+ * {@link com.avid.ctms.examples.tools.common.jfr.RequestEvent}, if the {@link TraceLog} is enabled, each request is
+ * written to it. Both include the {@link Correlation} id of the request and the timing of its phases: waiting for a
+ * connection, connect, TLS handshake, time to first byte, receiving and parsing the body, see {@link RequestRecord}.
+ * <ul>
+ *     <li>The synchronous client uses HttpClient's built-in compression support (Accept-Encoding and decompression),
+ *     content compression must not be disabled on the passed builder.</li>
+ *     <li>HttpAsyncClient has no compression support, so Accept-Encoding is added to each request and the content of
+ *     compressed responses is decoded, when the body is read by Unirest.</li>
+ * </ul>
+ * The TCP connect and the TLS handshake can only be timed, if the TLS connections are created by
+ * {@link #sslSocketFactory(SSLContext, HostnameVerifier)} or {@link #sslStrategy(SSLContext, HostnameVerifier)}.
+ * <p>
+ * Cancelling the CompletableFuture of an asynchronous Unirest request does not abort the request, Unirest drops the
+ * Future of the asynchronous client. Requests sent with {@link #abortable(Supplier)} can be aborted.
+ * <p>
+ * Usage: {@code Transports.build(HttpClients.custom().setSSLSocketFactory(Transports.sslSocketFactory(sslContext, verifier)))}
+ */
+public final class Transports {
+    /**
+     * The encodings offered with Accept-Encoding.
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final TransferCounters counters = TransferCounters.SHARED;
+    private static final String ENDPOINT_ATTRIBUTE = EndpointMetrics.class.getName();
+    private static final String TLS_START_ATTRIBUTE = Transports.class.getName() + ".tlsStart";
+    private static final String TLS_END_ATTRIBUTE = Transports.class.getName() + ".tlsEnd";
+    private static final ThreadLocal<List<Future<?>>> sentRequests = new ThreadLocal<>();
+
+    private Transports() {
+    }
+
+    /**
+     * Builds a synchronous client from the passed builder.
+     *
+     * @param builder the configured builder
+     * @return the client
+     */
+    public static CloseableHttpClient build(HttpClientBuilder builder) {
+        return builder
+                .setRequestExecutor(new TimedRequestExecutor())
+                .addInterceptorLast((HttpRequestInterceptor) (request, context) -> {
+                    RequestRecord.beginPending(context);
+                    countRequest(request, context);
+                })
+                // runs before the built-in decompression:
+                .addInterceptorFirst((HttpResponseInterceptor) (response, context) -> {
+                    final RequestRecord record = RequestRecord.of(context);
+                    if (null != record) {
+                        record.response(response.getStatusLine().getStatusCode());
+                    }
+                    final HttpEntity entity = response.getEntity();
+                    if (null != entity) {
+                        if (null != DecodingEntity.supportedEncoding(entity)) {
+                            counters.encodedResponses.increment();
+                        }
+                        response.setEntity(countWireBytes(entity, context));
+                    }
+                })
+                // runs after the built-in decompression:
+                .addInterceptorLast((HttpResponseInterceptor) (response, context) -> {
+                    final HttpEntity entity = response.getEntity();
+                    if (null != entity) {
+                        response.setEntity(new CountingEntity(entity, counters.decodedBytes));
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Builds an asynchronous client from the passed builder and starts it.
+     *
+     * @param builder the configured builder
+     * @return the started client
+     */
+    public static CloseableHttpAsyncClient build(HttpAsyncClientBuilder builder) {
+        final CloseableHttpAsyncClient client
+                = builder
+                .addInterceptorLast((HttpRequestInterceptor) (request, context) -> {
+                    if (!request.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+                        request.addHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING);
+                    }
+                    countRequest(request, context);
+                })
+                .addInterceptorFirst((HttpResponseInterceptor) (response, context) -> {
+                    final RequestRecord record = RequestRecord.of(context);
+                    if (null != record) {
+                        record.response(response.getStatusLine().getStatusCode());
+                        final Object connection = context.getAttribute(HttpCoreContext.HTTP_CONNECTION);
+                        if (connection instanceof ManagedNHttpClientConnection) {
+                            final IOSession session = ((ManagedNHttpClientConnection) connection).getIOSession();
+                            final Object tlsStart = session.getAttribute(TLS_START_ATTRIBUTE);
+                            final Object tlsEnd = session.getAttribute(TLS_END_ATTRIBUTE);
+                            if (tlsStart instanceof Long && tlsEnd instanceof Long) {
+                                record.tls((Long) tlsStart, (Long) tlsEnd);
+                            }
+                        }
+                    }
+                })
+                .build();
+        // Unirest replaces async clients, which are not running, with a default client:
+        client.start();
+        return new DecodingAsyncClient(client);
+    }
+
+    /**
+     * Counts the passed request and the length of its body, the endpoint is kept in the context for the response.
+     */
+    private static void countRequest(HttpRequest request, HttpContext context) {
+        counters.requests.increment();
+        final String method = request.getRequestLine().getMethod();
+        final EndpointMetrics.Endpoint endpoint = EndpointMetrics.SHARED.endpoint(method, request.getRequestLine().getUri());
+        if (null != context) {
+            context.setAttribute(ENDPOINT_ATTRIBUTE, endpoint);
+        }
+        long bytesOut = 0;
+        if (request instanceof HttpEntityEnclosingRequest) {
+            final HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (null != entity && 0 < entity.getContentLength()) {
+                bytesOut = entity.getContentLength();
+                endpoint.bytesOutCounter().add(bytesOut);
+            }
+        }
+        final RequestRecord record = RequestRecord.of(context);
+        if (null != record) {
+            final Header correlationId = request.getFirstHeader(Correlation.HEADER);
+            record.request(method, urlOf(request, context), endpoint, bytesOut, null != correlationId ? correlationId.getValue() : null);
+        }
+    }
+
+    /**
+     * Creates a socket factory for the TLS connections of a synchronous client, which times the TCP connect and the TLS
+     * handshake of new connections.
+     *
+     * @param sslContext       the SSL context
+     * @param hostnameVerifier the hostname verifier
+     * @return the socket factory
+     */
+    public static SSLConnectionSocketFactory sslSocketFactory(SSLContext sslContext, HostnameVerifier hostnameVerifier) {
+        return new TimedSSLConnectionSocketFactory(sslContext, hostnameVerifier);
+    }
+
+    /**
+     * Creates a strategy for the TLS connections of an asynchronous client, which times the TLS handshake of new
+     * connections.
+     *
+     * @param sslContext       the SSL context
+     * @param hostnameVerifier the hostname verifier
+     * @return the strategy
+     */
+    public static SSLIOSessionStrategy sslStrategy(SSLContext sslContext, HostnameVerifier hostnameVerifier) {
+        return new TimedSSLIOSessionStrategy(sslContext, hostnameVerifier);
+    }
+
+    /**
+     * Sends the asynchronous requests of the passed supplier, e.g. {@code () -> Unirest.get(url).asJsonAsync()}, so
+     * that they are aborted, if the returned future completes exceptionally before them, e.g. because it has been
+     * cancelled or timed out with orTimeout(). Aborting a request closes its connection instead of reading the response
+     * to its end. Only requests, which the supplier sends on the calling thread through a client built with
+     * {@link #build(HttpAsyncClientBuilder)}, are aborted.
+     *
+     * @param requests sends the requests and returns their result
+     * @param <T>      type of the result
+     * @return the future returned by the supplier
+     */
+    public static <T> CompletableFuture<T> abortable(Supplier<CompletableFuture<T>> requests) {
+        final List<Future<?>> outerRequests = sentRequests.get();
+        final List<Future<?>> sent = new ArrayList<>(1);
+        sentRequests.set(sent);
+        final CompletableFuture<T> result;
+        try {
+            result = requests.get();
+        } finally {
+            if (null != outerRequests) {
+                outerRequests.addAll(sent);
+                sentRequests.set(outerRequests);
+            } else {
+                sentRequests.remove();
+            }
+        }
+        if (!sent.isEmpty()) {
+            result.whenComplete((ignored, failure) -> {
+                if (null != failure) {
+                    // requests, which are done already, are not affected:
+                    for (final Future<?> request : sent) {
+                        request.cancel(true);
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * @return the absolute URL of the passed request, the request line of requests sent without proxy only contains
+     * the path
+     */
+    private static String urlOf(HttpRequest request, HttpContext context) {
+        final String uri = request.getRequestLine().getUri();
+        final Object target = context.getAttribute(HttpCoreContext.HTTP_TARGET_HOST);
+        return uri.startsWith("/") && target instanceof HttpHost
+                ? ((HttpHost) target).toURI() + uri
+                : uri;
+    }
+
+    /**
+     * Wraps the passed entity, so that the bytes read from it are counted as wire bytes and as bytes in of the endpoint
+     * and the record of the request.
+     */
+    private static HttpEntity countWireBytes(HttpEntity entity, HttpContext context) {
+        final Object endpoint = null != context ? context.getAttribute(ENDPOINT_ATTRIBUTE) : null;
+        final HttpEntity endpointEntity
+                = endpoint instanceof EndpointMetrics.Endpoint
+                ? new CountingEntity(entity, ((EndpointMetrics.Endpoint) endpoint).bytesInCounter())
+                : entity;
+        final RequestRecord record = RequestRecord.of(context);
+        final HttpEntity recordEntity
+                = null != record
+                ? new CountingEntity(endpointEntity, record.bytesInCounter(), record::bodyEnd)
+                : endpointEntity;
+        return new CountingEntity(recordEntity, counters.wireBytes);
+    }
+
+    /**
+     * Replaces the entity of the passed response with an entity, which decodes and counts its content.
+     */
+    private static void decode(HttpResponse response, HttpContext context) {
+        final HttpEntity entity = response.getEntity();
+        if (null == entity) {
+            return;
+        }
+
+        final HttpEntity wireEntity = countWireBytes(entity, context);
+        final HttpEntity decodedEntity = DecodingEntity.decode(wireEntity);
+        if (decodedEntity != wireEntity) {
+            counters.encodedResponses.increment();
+            response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+            response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+            response.removeHeaders(HttpHeaders.CONTENT_MD5);
+        }
+        response.setEntity(new CountingEntity(decodedEntity, counters.decodedBytes));
+    }
+
+    /**
+     * Marks the points in time, when the request is sent over the connection, in the record of the request.
+     */
+    private static class TimedRequestExecutor extends HttpRequestExecutor {
+        @Override
+        protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection connection, HttpContext context) throws IOException, HttpException {
+            final RequestRecord record = RequestRecord.of(context);
+            if (null != record) {
+                record.ready();
+            }
+            return super.doSendRequest(request, connection, context);
+        }
+    }
+
+    /**
+     * Marks the start of the TCP connect and times the TLS handshake in the record of the request, for which a new
+     * connection is established.
+     */
+    private static class TimedSSLConnectionSocketFactory extends SSLConnectionSocketFactory {
+        TimedSSLConnectionSocketFactory(SSLContext sslContext, HostnameVerifier hostnameVerifier) {
+            super(sslContext, hostnameVerifier);
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress, InetSocketAddress localAddress, HttpContext context) throws IOException {
+            final RequestRecord record = RequestRecord.of(context);
+            if (null != record) {
+                record.connecting();
+            }
+            return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+            final long start = System.nanoTime();
+            try {
+                return super.createLayeredSocket(socket, target, port, context);
+            } finally {
+                final RequestRecord record = RequestRecord.of(context);
+                if (null != record) {
+                    record.tls(start, System.nanoTime());
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps the start and the end of the TLS handshake in the attributes of the IO session. The strategy does not know
+     * the request, for which the connection is established, so the handshake is passed to the record of the request,
+     * when its response head has been received.
+     */
+    private static class TimedSSLIOSessionStrategy extends SSLIOSessionStrategy {
+        TimedSSLIOSessionStrategy(SSLContext sslContext, HostnameVerifier hostnameVerifier) {
+            super(sslContext, hostnameVerifier);
+        }
+
+        @Override
+        public SSLIOSession upgrade(HttpHost host, IOSession session) throws IOException {
+            session.setAttribute(TLS_START_ATTRIBUTE, System.nanoTime());
+            return super.upgrade(host, session);
+        }
+
+        @Override
+        protected void verifySession(HttpHost host, IOSession session, SSLSession sslSession) throws SSLException {
+            session.setAttribute(TLS_END_ATTRIBUTE, System.nanoTime());
+            super.verifySession(host, session, sslSession);
+        }
+    }
+
+    /**
+     * Marks, when the request is being sent, i.e. when the connection is ready, in the record of the request.
+     */
+    private static class TimedRequestProducer implements HttpAsyncRequestProducer {
+        private final HttpAsyncRequestProducer delegate;
+        private final RequestRecord record;
+
+        TimedRequestProducer(HttpAsyncRequestProducer delegate, RequestRecord record) {
+            this.delegate = delegate;
+            this.record = record;
+        }
+
+        @Override
+        public HttpHost getTarget() {
+            return delegate.getTarget();
+        }
+
+        @Override
+        public HttpRequest generateRequest() throws IOException, HttpException {
+            record.ready();
+            return delegate.generateRequest();
+        }
+
+        @Override
+        public void produceContent(ContentEncoder encoder, IOControl ioControl) throws IOException {
+            delegate.produceContent(encoder, ioControl);
+        }
+
+        @Override
+        public void requestCompleted(HttpContext context) {
+            delegate.requestCompleted(context);
+        }
+
+        @Override
+        public void failed(Exception exception) {
+            delegate.failed(exception);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return delegate.isRepeatable();
+        }
+
+        @Override
+        public void resetRequest() throws IOException {
+            delegate.resetRequest();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    /**
+     * Delegates to an asynchronous client and decodes the responses before they are passed to the callbacks. The
+     * record of a request is finished, after the callback has returned.
+     */
+    private static class DecodingAsyncClient extends CloseableHttpAsyncClient {
+        private final CloseableHttpAsyncClient delegate;
+
+        DecodingAsyncClient(CloseableHttpAsyncClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return delegate.isRunning();
+        }
+
+        @Override
+        public void start() {
+            delegate.start();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public <T> Future<T> execute(HttpAsyncRequestProducer requestProducer, HttpAsyncResponseConsumer<T> responseConsumer, HttpContext context, FutureCallback<T> callback) {
+            final RequestRecord record = RequestRecord.begin(context);
+            final HttpAsyncRequestProducer producer
+                    = null != record
+                    ? new TimedRequestProducer(requestProducer, record)
+                    : requestProducer;
+            final Future<T> request = delegate.execute(producer, responseConsumer, context, new FutureCallback<T>() {
+                @Override
+                public void completed(T result) {
+                    // the response body has been buffered completely:
+                    if (null != record) {
+                        record.bodyEnd();
+                    }
+                    try {
+                        if (result instanceof HttpResponse) {
+                            decode((HttpResponse) result, context);
+                        }
+                        if (null != callback) {
+                            callback.completed(result);
+                        }
+                    } finally {
+                        finish(record);
+                    }
+                }
+
+                @Override
+                public void failed(Exception exception) {
+                    try {
+                        if (null != callback) {
+                            callback.failed(exception);
+                        }
+                    } finally {
+                        finish(record);
+                    }
+                }
+
+                @Override
+                public void cancelled() {
+                    try {
+                        if (null != callback) {
+                            callback.cancelled();
+                        }
+                    } finally {
+                        finish(record);
+                    }
+                }
+            });
+            final List<Future<?>> sent = sentRequests.get();
+            if (null != sent) {
+                sent.add(request);
+            }
+            return request;
+        }
+    }
+
+    private static void finish(RequestRecord record) {
+        if (null != record) {
+            record.finish();
+        }
+    }
+}
@@ -7,6 +7,16 @@ package com.avid.ctms.examples.tools.reactor;
  * Project: CTMS
  */
 
+import com.avid.ctms.examples.tools.common.SessionCredentials;
+import com.avid.ctms.examples.tools.common.SessionCredentialsInterceptor;
+import com.avid.ctms.examples.tools.common.jfr.LoginEvent;
+import com.avid.ctms.examples.tools.common.jfr.PageFetchEvent;
+import com.avid.ctms.examples.tools.common.jfr.TokenRefreshEvent;
+import com.avid.ctms.examples.tools.common.transport.Correlation;
+import com.avid.ctms.examples.tools.common.transport.EndpointMetrics;
+import com.avid.ctms.examples.tools.common.transport.RequestTrackingInterceptor;
+import com.avid.ctms.examples.tools.common.transport.Transports;
+
 import kong.unirest.*;
 import kong.unirest.apache.ApacheAsyncClient;
 import kong.unirest.json.*;
@@ -89,15 +99,16 @@ public class PlatformToolsReactor {
         final Config requestConfig
                 = new Config()
                 .cookieSpec(CookieSpecs.STANDARD)
+                .interceptor(RequestTrackingInterceptor.INSTANCE)
+                .interceptor(SessionCredentialsInterceptor.INSTANCE)
+                .instrumentWith(EndpointMetrics.SHARED)
                 .proxy((null != proxyHost) ? new kong.unirest.Proxy(proxyHost, Integer.parseInt(proxyPort)) : null);
 
         final CloseableHttpAsyncClient httpAsyncClient
-                = HttpAsyncClients
+                = Transports.build(HttpAsyncClients
                 .custom()
                 .disableCookieManagement()
-                .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
-                .setSSLContext(sslContext)
-                .build();
+                .setSSLStrategy(Transports.sslStrategy(sslContext, NoopHostnameVerifier.INSTANCE)));
         return ApacheAsyncClient.builder(httpAsyncClient).apply(requestConfig);
 
 //        return HttpAsyncClients.custom()
@@ -132,6 +143,7 @@ public class PlatformToolsReactor {
      */
     public static Mono<HttpResponse<JsonNode>> getAuthEndpoint(String apiDomain) {
         return Mono.<HttpResponse<JsonNode>>create(sink -> {
+            final Correlation.Scope scope = Correlation.open(sink.currentContext());
             try {
 
                 Unirest
@@ -162,6 +174,8 @@ public class PlatformToolsReactor {
             } catch (Exception e) {
                 LOG.log(Level.SEVERE, "{0}", e);
                 sink.error(e);
+            } finally {
+                scope.close();
             }
         });
     }
@@ -176,6 +190,7 @@ public class PlatformToolsReactor {
      */
     public static Mono<HttpResponse<JsonNode>> getIdentityProviders(HttpResponse<JsonNode> lastResponse) {
         return Mono.<HttpResponse<JsonNode>>create(sink -> {
+            final Correlation.Scope scope = Correlation.open(sink.currentContext());
             try {
                 final JSONObject authResult = lastResponse.getBody().getObject();
                 final String urlIdentityProviders = authResult.getJSONObject("_links").getJSONArray("auth:identity-providers").getJSONObject(0).getString("href");
@@ -205,10 +220,29 @@ public class PlatformToolsReactor {
                         });
             } catch (final Exception e) {
                 sink.error(new Exception("Requesting auth has failed", e));
+            } finally {
+                scope.close();
             }
         });
     }
 
+    /**
+     * Promises OAuth2-identity-provider based authorization via an HTTP Basic Auth String, i.e. chains
+     * {@link #getAuthEndpoint(String)}, {@link #getIdentityProviders(HttpResponse)} and
+     * {@link #authorize(HttpResponse, String, String)}. All requests of the chain carry the same correlation id, which
+     * is taken from the subscriber's Context or created.
+     *
+     * @param apiDomain address to get "auth"
+     * @param httpBasicAuthString HTTP Basic Auth String
+     * @return  promise, which promises authorization
+     */
+    public static Mono<Object> login(String apiDomain, String httpBasicAuthString) {
+        return getAuthEndpoint(apiDomain)
+                .flatMap(PlatformToolsReactor::getIdentityProviders)
+                .flatMap(it -> authorize(it, apiDomain, httpBasicAuthString))
+                .contextWrite(Correlation.ensureId());
+    }
+
     /**
      * Promises OAuth2-identity-provider based authorization via an HTTP Basic Auth String.
      *
@@ -218,6 +252,11 @@ public class PlatformToolsReactor {
      */
     public static Mono<Object> authorize(HttpResponse<JsonNode> lastResponse, String apiDomain, String httpBasicAuthString) {
         return Mono.create(sink -> {
+            final LoginEvent event = new LoginEvent();
+            event.begin();
+            event.apiDomain = apiDomain;
+            sink.onDispose(event::commit);
+            final Correlation.Scope scope = Correlation.open(sink.currentContext());
             try {
                 // Select ropc-default identity provider and retrieve login URL:
                 String urlAuthorization = null;
@@ -234,6 +273,7 @@ public class PlatformToolsReactor {
                     }
                 }
                 if (null != urlAuthorization) {
+                    event.identityProvider = urlAuthorization;
                     final String loginContent = "grant_type=client_credentials&scope=openid";
                     final String authorizationDefaultToken = String.format("Basic %s", httpBasicAuthString);
                     Unirest
@@ -245,10 +285,11 @@ public class PlatformToolsReactor {
                         .asJsonAsync(new Callback<JsonNode>() {
                             @Override
                             public void completed(HttpResponse<JsonNode> response) {
+                                event.status = response.getStatus();
                                 if (HttpURLConnection.HTTP_OK == response.getStatus() || HttpURLConnection.HTTP_SEE_OTHER == response.getStatus()) {
                                     final String id_token = response.getBody().getObject().getString("id_token");
                                     final String accessTokenHeaderFieldValue = String.format("Bearer %s", id_token);
-                                    Unirest.config().setDefaultHeader(HttpHeaders.AUTHORIZATION, accessTokenHeaderFieldValue);
+                                    SessionCredentials.startSession(accessTokenHeaderFieldValue);
 
                                     scheduler = Executors.newScheduledThreadPool(1);
                                     final Runnable sessionRefresherCode = () -> {
@@ -261,6 +302,7 @@ public class PlatformToolsReactor {
 
                                     final long refreshPeriodSeconds = 120;
                                     sessionRefresher = scheduler.scheduleAtFixedRate(sessionRefresherCode, refreshPeriodSeconds, refreshPeriodSeconds, TimeUnit.SECONDS);
+                                    event.success = true;
                                     sink.success(new Object());
                                 } else {
                                     sink.error(new Exception(response.getStatusText()));
@@ -284,6 +326,8 @@ public class PlatformToolsReactor {
                 }
             } catch (final JSONException e) {
                 sink.error(e);
+            } finally {
+                scope.close();
             }
         });
     }
@@ -304,6 +348,7 @@ public class PlatformToolsReactor {
      */
     public static Mono<List<String>> findInRegistry(String apiDomain, List<String> serviceTypes, String registryServiceVersion, String resourceName, String orDefaultUriTemplate) {
         return Mono.<List<String>>create(sink -> {
+            final Correlation.Scope scope = Correlation.open(sink.currentContext());
             try {
                 Unirest.get(String.format("https://%s/apis/avid.ctms.registry;version=%s/serviceroots", apiDomain, registryServiceVersion))
                                         .header( HttpHeaders.ACCEPT, "application/json")
@@ -375,6 +420,8 @@ public class PlatformToolsReactor {
                     });
             } catch (final JSONException e) {
                 sink.error(e);
+            } finally {
+                scope.close();
             }
         });
     }
@@ -389,6 +436,7 @@ public class PlatformToolsReactor {
      */
     public static Mono<HttpResponse<JsonNode>> getCurrentToken(HttpResponse<JsonNode> lastResponse) {
         return Mono.<HttpResponse<JsonNode>>create(sink -> {
+            final Correlation.Scope scope = Correlation.open(sink.currentContext());
             try {
                 final JsonNode authResult = lastResponse.getBody();
                 final JSONArray authTokens = authResult.getObject().getJSONObject("_links").getJSONArray("auth:token");
@@ -430,6 +478,8 @@ public class PlatformToolsReactor {
                 }
             } catch (final JSONException e) {
                 sink.error(e);
+            } finally {
+                scope.close();
             }
         });
     }
@@ -442,6 +492,7 @@ public class PlatformToolsReactor {
      */
     public static Mono<HttpResponse<Empty>> removeToken(HttpResponse<JsonNode> lastResponse){
         return Mono.<HttpResponse<Empty>>create(sink -> {
+            final Correlation.Scope scope = Correlation.open(sink.currentContext());
             try {
                 final String tokenRemoval = lastResponse.getBody().getObject().getJSONObject("_links").getJSONArray("auth-token:removal").getJSONObject(0).getString("href");
 
@@ -469,16 +520,34 @@ public class PlatformToolsReactor {
                         });
             } catch (final JSONException e) {
                 sink.error(e);
+            } finally {
+                scope.close();
             }
         });
     }
 
+    /**
+     * Promises delivery of all pages representing the HAL resources available via the passed resultPageURL, see
+     * {@link #pageThroughResultsAsync(String, FluxSink)}. All page requests carry the same correlation id, which is
+     * taken from the subscriber's Context or created.
+     *
+     * @param resultPageURL URL to a HAL resource, which supports paging
+     * @return  promise, which promises delivery of the "_embedded" objects of all pages
+     */
+    public static Flux<JSONObject> pageThroughResultsAsync(String resultPageURL) {
+        return Flux.<JSONObject>create(sink -> pageThroughResultsAsync(resultPageURL, sink))
+                .contextWrite(Correlation.ensureId());
+    }
+
     /**
      * Promises delivery of all pages representing the HAL resources available via the passed resultPageURL.
      * <p>
      * If the HAL resource available from resultPageURL has the property "_embedded", its content will be collected
      * And if this HAL resource has the property "pageResult._links.next", its href will be used to fetch and collect
      * the next page and call this method recursively.
+     * <p>
+     * The page requests carry the correlation id of the sink's Context, if any, e.g. if the Flux has been created with
+     * {@code .contextWrite(Correlation.ensureId())}, as {@link #pageThroughResultsAsync(String)} does.
      *
      * @param resultPageURL URL to a HAL resource, which supports paging
      * @return  promise, which promises delivery of all pages representing the HAL resources available via the passed
@@ -486,6 +555,10 @@ public class PlatformToolsReactor {
      */
     public static void pageThroughResultsAsync(String resultPageURL, FluxSink<JSONObject> sink) {
         if(!sink.isCancelled()) {
+            final PageFetchEvent event = new PageFetchEvent();
+            event.begin();
+            event.url = resultPageURL;
+            final Correlation.Scope scope = Correlation.open(sink.currentContext());
             try {
                 Unirest
                         .get(resultPageURL)
@@ -493,6 +566,11 @@ public class PlatformToolsReactor {
                         .asJsonAsync(new Callback<JsonNode>() {
                             @Override
                             public void completed(HttpResponse<JsonNode> response) {
+                                // the page has been read and parsed, processing it and requesting the next page is
+                                // not included:
+                                event.status = response.getStatus();
+                                event.items = countEmbeddedItems(response.getBody());
+                                event.commit();
                                 try {
                                     if (HttpURLConnection.HTTP_OK == response.getStatus() || HttpURLConnection.HTTP_SEE_OTHER == response.getStatus()) {
                                         if (response.getBody().getObject().has("_embedded")) { // Do we have (more) results?
@@ -521,18 +599,22 @@ public class PlatformToolsReactor {
 
                             @Override
                             public void cancelled() {
+                                event.commit();
                                 LOG.log(Level.INFO, "Paging cancelled for <{0}>", resultPageURL);
                                 sink.complete();
                             }
 
                             @Override
                             public void failed(UnirestException e) {
+                                event.commit();
                                 LOG.log(Level.SEVERE, e, () -> String.format("Paging failed for <%s>", resultPageURL));
                                 sink.error(new Exception(String.format("Paging failed for <%s>", resultPageURL)));
                             }
                         });
             } catch (final Exception e) {
                 sink.error(e);
+            } finally {
+                scope.close();
             }
         } else {
             sink.complete();
@@ -547,18 +629,27 @@ public class PlatformToolsReactor {
      * @throws IOException
      */
     public static void sessionKeepAlive(String apiDomain) throws IOException {
-        final HttpResponse<String> jsonNodeHttpResponse
-                = Unirest
-                .get(String.format("https://%s/auth/", apiDomain))
-                .asString();
-        final JSONObject authResponse = new JSONObject(jsonNodeHttpResponse.getBody());
-
-        final String urlCurrentToken
-                = authResponse
-                .getJSONObject("_links")
-                .getJSONArray("auth:token")
-                .getJSONObject(0)
-                .getString("href");
+        final TokenRefreshEvent event = new TokenRefreshEvent();
+        event.begin();
+        event.apiDomain = apiDomain;
+        final String urlCurrentToken;
+        try {
+            final HttpResponse<String> jsonNodeHttpResponse
+                    = Unirest
+                    .get(String.format("https://%s/auth/", apiDomain))
+                    .asString();
+            final JSONObject authResponse = new JSONObject(jsonNodeHttpResponse.getBody());
+
+            urlCurrentToken
+                    = authResponse
+                    .getJSONObject("_links")
+                    .getJSONArray("auth:token")
+                    .getJSONObject(0)
+                    .getString("href");
+        } catch (final RuntimeException exception) {
+            event.commit();
+            throw exception;
+        }
 
         Unirest.get(urlCurrentToken)
                 .asStringAsync()
@@ -571,9 +662,30 @@ public class PlatformToolsReactor {
                             .get("href")
                             .toString();
                     final String accessToken = currentTokenResult.getString("accessToken");
-                    Unirest.config().setDefaultHeader(HttpHeaders.COOKIE, "avidAccessToken="+accessToken);
-                    Unirest.post(urlExtend).asEmpty();
-                });
+                    SessionCredentials.updateAccessToken(accessToken);
+                    event.success = Unirest.post(urlExtend).asEmpty().isSuccess();
+                })
+                // the token is extended on an IO reactor thread, so the event is committed there:
+                .whenComplete((ignored, failure) -> event.commit());
+    }
+
+    /**
+     * Counts the items embedded into the passed HAL resource.
+     *
+     * @param page the HAL resource or null
+     * @return the total length of the arrays in the property "_embedded"
+     */
+    private static int countEmbeddedItems(JsonNode page) {
+        final JSONObject embedded = null != page && null != page.getObject() ? page.getObject().optJSONObject("_embedded") : null;
+        if (null == embedded) {
+            return 0;
+        }
+        int items = 0;
+        for (final String key : embedded.keySet()) {
+            final JSONArray embeddedArray = embedded.optJSONArray(key);
+            items += null != embeddedArray ? embeddedArray.length() : 1;
+        }
+        return items;
     }
 
     public static void unregister() {
@@ -582,6 +694,7 @@ public class PlatformToolsReactor {
             scheduler.shutdown();
             sessionRefresher.cancel(true);
         }
+        SessionCredentials.clear();
         try {
             Unirest.shutDown();
         } catch (final Exception exception) {
@@ -2,12 +2,13 @@ package com.avid.ctms.examples.queryaggregatedattributes;
 
 import com.avid.ctms.examples.tools.common.AuthorizationResponse;
 import com.avid.ctms.examples.tools.common.PlatformTools;
-import com.damnhandy.uri.template.*;
+import com.avid.ctms.examples.tools.common.datamodel.AggregatedDataModel;
+import com.avid.ctms.examples.tools.common.datamodel.AggregatedDataModelCache;
+import com.avid.ctms.examples.tools.common.datamodel.LocalizedAttributeTable;
+import com.fasterxml.jackson.databind.JsonNode;
 import kong.unirest.*;
-import kong.unirest.json.*;
 
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.time.Duration;
 import java.util.*;
 import java.util.Formatter;
 import java.util.logging.*;
@@ -21,21 +22,33 @@ import java.util.logging.*;
  */
 
 /**
- * This example enumerates the aggregated attributes.
+ * This example enumerates the aggregated attributes or looks up a single attribute by name. With a list of languages,
+ * the data models of all languages are retrieved concurrently and the attribute labels are listed per language. The
+ * aggregated data models are cached on local disk and only revalidated by later runs.
  */
 public class QueryAggregatedAttributes {
     private static final Logger LOG = Logger.getLogger(QueryAggregatedAttributes.class.getName());
 
+    private static final Duration REVALIDATE_AFTER = Duration.ofMinutes(10);
+    private static final String LANGS_OPTION = "--langs=";
+
     private QueryAggregatedAttributes() {
     }
 
     public static void main(String[] args) throws Exception {
-        if (3 != args.length) {
-            LOG.log(Level.INFO, "Usage: {0} <apidomain> <httpbasicauthstring> <serviceversion>", QueryAggregatedAttributes.class.getSimpleName());
+        if (3 != args.length && 4 != args.length) {
+            LOG.log(Level.INFO, "Usage: {0} <apidomain> <httpbasicauthstring> <serviceversion> [attributename|--langs=<lang>,<lang>...]", QueryAggregatedAttributes.class.getSimpleName());
         } else {
             final String apiDomain = args[0];
             final String httpBasicAuthString = args[1];
             final String serviceVersion = args[2];
+            // Either look up a single attribute or merge the data models of several IETF BCP 47 language tags:
+            final String optionalArg = 4 == args.length ? args[3] : null;
+            final List<String> langs
+                    = null != optionalArg && optionalArg.startsWith(LANGS_OPTION)
+                    ? Arrays.asList(optionalArg.substring(LANGS_OPTION.length()).split(","))
+                    : null;
+            final String attributeName = null == langs ? optionalArg : null;
 
             // Specify an IETF BCP 47 language tag, such as "en-US":
             final String lang = ""; // "" represents the default language, which is "en"
@@ -43,47 +56,42 @@ public class QueryAggregatedAttributes {
             final AuthorizationResponse authorizationResponse = PlatformTools.authorize(apiDomain, httpBasicAuthString);
             if (authorizationResponse.getLoginResponse().map(HttpResponse::isSuccess).orElse(false)) {
                 try {
-                    final String dataModelAggregatorServiceType = "avid.ctms.datamodel.aggregator";
-
                     /// Query CTMS Registry:
                     final String registryServiceVersion = "0";
-                    final String defaultAggregatedDataModelUriTemplate = String.format("https://%s/apis/%s;version=%s/aggregateddatamodel{?lang}", apiDomain, dataModelAggregatorServiceType, serviceVersion);
-                    final List<String> aggregatedDataModelUriTemplates = PlatformTools.findInRegistry(apiDomain, Collections.singletonList(dataModelAggregatorServiceType), registryServiceVersion, "datamodel:aggregated-model", defaultAggregatedDataModelUriTemplate);
-
-                    /// Prepare simple search request:
-                    final UriTemplate aggregatedDataModeUriTemplate = UriTemplate.fromTemplate(aggregatedDataModelUriTemplates.get(0));
-
-                    /// Check, whether the service registry is available:
-                    final URL aggregatedDataModelResourceURL = new URL(aggregatedDataModeUriTemplate.set("lang", lang).expand());
-
-                    final HttpResponse<String> response
-                            = Unirest.get(aggregatedDataModelResourceURL.toString()).asString();
-
-                    final int aggregatedDataModelStatus = response.getStatus();
-                    if (HttpURLConnection.HTTP_OK == aggregatedDataModelStatus) {
-                        final String rawAggregatedDataModelResult = response.getBody();
-                        final JSONObject aggregatedDataModelResult = new JSONObject(rawAggregatedDataModelResult);
-
-                        final JSONObject attributes = aggregatedDataModelResult.optJSONObject("attributes");
-                        if (null != attributes && !JSONObject.NULL.equals(attributes)) {
+                    final String aggregatedDataModelUriTemplate = AggregatedDataModelCache.findUriTemplate(apiDomain, serviceVersion, registryServiceVersion);
+
+                    /// Get the data model, a copy cached by a previous run is only revalidated:
+                    final AggregatedDataModelCache dataModelCache
+                            = new AggregatedDataModelCache(apiDomain, aggregatedDataModelUriTemplate, AggregatedDataModelCache.defaultDirectory(), REVALIDATE_AFTER);
+                    if (null != langs) {
+                        /// Get the data models of all languages concurrently and merge them:
+                        final LocalizedAttributeTable localizedAttributes = LocalizedAttributeTable.merge(dataModelCache.getAll(langs));
+                        LOG.log(Level.INFO, format(localizedAttributes));
+                    } else {
+                        final AggregatedDataModel aggregatedDataModel = dataModelCache.get(lang);
+
+                        if (null != attributeName) {
+                            final Optional<JsonNode> attribute = aggregatedDataModel.findAttribute(attributeName);
+                            if (attribute.isPresent()) {
+                                LOG.log(Level.INFO, "{0}:{1}{2}", new Object[]{attributeName, System.lineSeparator(), attribute.get()});
+                            } else {
+                                LOG.log(Level.INFO, "Attribute {0} not found.", attributeName);
+                            }
+                        } else if (!aggregatedDataModel.getCustomAttributes().isEmpty() || !aggregatedDataModel.getCommonAttributes().isEmpty()) {
                             final StringBuilder sb = new StringBuilder();
                             try (final Formatter formatter = new Formatter(sb)) {
-                                final Object customAttributes = attributes.opt("custom");
-                                if (null != customAttributes) {
-                                    final List<Object> customAttributeList = flatten(customAttributes);
+                                if (!aggregatedDataModel.getCustomAttributes().isEmpty()) {
                                     formatter.format("%ncustom attributes:%n");
                                     int nCustomAttributes = 0;
-                                    for (final Object attribute : customAttributeList) {
+                                    for (final JsonNode attribute : aggregatedDataModel.getCustomAttributes()) {
                                         formatter.format("%s%n%s%n", ++nCustomAttributes, attribute);
                                     }
                                 }
 
-                                final Object commonAttributes = attributes.opt("common");
-                                if (null != commonAttributes) {
-                                    final List<Object> commonAttributeList = flatten(commonAttributes);
+                                if (!aggregatedDataModel.getCommonAttributes().isEmpty()) {
                                     formatter.format("%ncommon attributes:%n");
                                     int nCommonAttributes = 0;
-                                    for (final Object attribute : commonAttributeList) {
+                                    for (final JsonNode attribute : aggregatedDataModel.getCommonAttributes()) {
                                         formatter.format("%s%n%s%n", ++nCommonAttributes, attribute);
                                     }
                                 }
@@ -94,8 +102,6 @@ public class QueryAggregatedAttributes {
                         } else {
                             LOG.log(Level.INFO, "No attributes found.");
                         }
-                    } else {
-                        LOG.log(Level.SEVERE, "Problem accessing <{0}> - {1}", new Object[]{aggregatedDataModelResourceURL, response.getStatusText()});
                     }
                 } catch (final Exception exception) {
                     LOG.log(Level.SEVERE, "failure", exception);
@@ -110,17 +116,18 @@ public class QueryAggregatedAttributes {
         }
     }
 
-    private static List<Object> flatten(Object customAttributes) {
-        ArrayList<Object> attributeList = new ArrayList<>();
-        if (customAttributes instanceof JSONArray) {
-            final JSONArray array = (JSONArray) customAttributes;
-            attributeList.ensureCapacity(array.length());
-            for (final Object attribute : array) {
-                attributeList.add(attribute);
+    private static String format(LocalizedAttributeTable localizedAttributes) {
+        final StringBuilder sb = new StringBuilder();
+        try (final Formatter formatter = new Formatter(sb)) {
+            formatter.format("%nattributes (%s):%n", String.join(", ", localizedAttributes.getLangs()));
+            int nAttributes = 0;
+            for (final LocalizedAttributeTable.LocalizedAttribute attribute : localizedAttributes.getAttributes().values()) {
+                formatter.format("%s. %s (%s)%n", ++nAttributes, attribute.id, attribute.name);
+                for (final String lang : localizedAttributes.getLangs()) {
+                    formatter.format("\t%s: %s%n", lang.isEmpty() ? "default" : lang, Objects.toString(attribute.getLabel(lang), "-"));
+                }
             }
-        } else {
-            attributeList.add(customAttributes);
         }
-        return attributeList;
+        return sb.toString();
     }
 }
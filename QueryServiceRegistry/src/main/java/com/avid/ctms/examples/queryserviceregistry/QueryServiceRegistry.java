@@ -2,13 +2,22 @@ package com.avid.ctms.examples.queryserviceregistry;
 
 import com.avid.ctms.examples.tools.common.AuthorizationResponse;
 import com.avid.ctms.examples.tools.common.PlatformTools;
+import com.avid.ctms.examples.tools.common.registry.RegistryWatcher;
+import com.avid.ctms.examples.tools.common.registry.ServiceProbe;
+import com.avid.ctms.examples.tools.common.registry.ServiceRootsDiff;
 import kong.unirest.HttpResponse;
 import kong.unirest.Unirest;
+import kong.unirest.UnirestException;
 import kong.unirest.json.*;
 
 
+import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.time.Duration;
 import java.util.Formatter;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.logging.*;
 
 /**
@@ -21,24 +30,117 @@ import java.util.logging.*;
 
 /**
  * This example enumerates the entries in the service registry and writes the results to stdout.
+ * <p>
+ * With the option --watch=&lt;seconds>, the registry is polled in the passed interval within a single session, and only
+ * the added, removed or changed services and resources are written, until the process is terminated.
+ * <p>
+ * With the option --probe=&lt;rounds>, each distinct service root is requested concurrently in the passed count of
+ * rounds, and the statuses and latency percentiles are written per service.
  */
 public class QueryServiceRegistry {
     private static final Logger LOG = Logger.getLogger(QueryServiceRegistry.class.getName());
 
+    private static final String WATCH_OPTION = "--watch=";
+    private static final String PROBE_OPTION = "--probe=";
+    private static final int PROBE_CONCURRENCY = 16;
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(5);
+
     private QueryServiceRegistry() {
     }
 
+    /**
+     * Polls the registry until the process is terminated, on termination the main thread is interrupted, so that the
+     * session is logged out.
+     */
+    private static void watch(String apiDomain, String serviceVersion, Duration interval) {
+        final Thread mainThread = Thread.currentThread();
+        final Thread shutdownHook = new Thread(() -> {
+            mainThread.interrupt();
+            try {
+                mainThread.join(SHUTDOWN_TIMEOUT.toMillis());
+            } catch (final InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }, "registry-watch-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        final RegistryWatcher watcher = RegistryWatcher.of(apiDomain, serviceVersion);
+        LOG.log(Level.INFO, "Watching the registry every {0}s, terminate with Ctrl-C", interval.getSeconds());
+        boolean initial = true;
+        try {
+            while (true) {
+                try {
+                    final Optional<ServiceRootsDiff> diff = watcher.poll();
+                    if (diff.isPresent()) {
+                        LOG.log(Level.INFO, "{0}{1}", new Object[] {initial ? "Registered:" : "Changed:", System.lineSeparator() + diff.get()});
+                    }
+                    initial = false;
+                } catch (final IOException | UnirestException exception) {
+                    LOG.log(Level.WARNING, "Polling the registry failed: {0}", exception.getMessage());
+                }
+                Thread.sleep(interval.toMillis());
+            }
+        } catch (final InterruptedException ignored) {
+            // terminated, the interrupt is consumed here, so that the session can be logged out
+        } finally {
+            LOG.log(Level.INFO, "Stopped watching: {0}", watcher);
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (final IllegalStateException ignored) {
+                // already shutting down
+            }
+        }
+    }
+
+    /**
+     * Requests each distinct service root of the registry in the passed count of rounds and writes the statistics.
+     */
+    private static void probe(String apiDomain, String serviceVersion, int rounds) throws IOException, InterruptedException {
+        final RegistryWatcher registry = RegistryWatcher.of(apiDomain, serviceVersion);
+        registry.poll();
+        final Set<String> serviceRoots = registry.getCurrent().getServices().keySet();
+        LOG.log(Level.INFO, "Probing {0} services in {1} rounds", new Object[] {serviceRoots.size(), rounds});
+
+        final Map<String, ServiceProbe.Stats> stats = new ServiceProbe(PROBE_CONCURRENCY, PROBE_TIMEOUT).probe(serviceRoots, rounds);
+        final StringBuilder sb = new StringBuilder();
+        try (final Formatter formatter = new Formatter(sb)) {
+            for (final ServiceProbe.Stats serviceStats : stats.values()) {
+                formatter.format("Service <%s>%n\t%s%n", serviceStats.getServiceRoot(), serviceStats);
+            }
+        }
+        LOG.log(Level.INFO, sb::toString);
+    }
+
     public static void main(String[] args) throws Exception {
-        if (3 != args.length) {
-            LOG.log(Level.INFO, "Usage: {0} <apidomain> <httpbasicauthstring> <serviceversion>", QueryServiceRegistry.class.getSimpleName());
+        final String optionalArg = 4 == args.length ? args[3] : null;
+        if (3 != args.length && (null == optionalArg || !optionalArg.startsWith(WATCH_OPTION) && !optionalArg.startsWith(PROBE_OPTION))) {
+            LOG.log(Level.INFO, "Usage: {0} <apidomain> <httpbasicauthstring> <serviceversion> [--watch=<seconds>|--probe=<rounds>]", QueryServiceRegistry.class.getSimpleName());
         } else {
             final String apiDomain = args[0];
             final String httpBasicAuthString = args[1];
             final String serviceVersion = args[2];
+            final Duration watchInterval
+                    = null != optionalArg && optionalArg.startsWith(WATCH_OPTION)
+                    ? Duration.ofSeconds(Long.parseLong(optionalArg.substring(WATCH_OPTION.length())))
+                    : null;
+            final int probeRounds
+                    = null != optionalArg && optionalArg.startsWith(PROBE_OPTION)
+                    ? Integer.parseInt(optionalArg.substring(PROBE_OPTION.length()))
+                    : 0;
 
             final AuthorizationResponse authorizationResponse = PlatformTools.authorize(apiDomain, httpBasicAuthString);
             if (authorizationResponse.getLoginResponse().map(HttpResponse::isSuccess).orElse(false)) {
                 try {
+                    if (null != watchInterval) {
+                        watch(apiDomain, serviceVersion, watchInterval);
+                        return;
+                    }
+                    if (0 < probeRounds) {
+                        probe(apiDomain, serviceVersion, probeRounds);
+                        return;
+                    }
+
                     final String registryServiceType = "avid.ctms.registry";
                     /// Check, whether the service registry is available:
 
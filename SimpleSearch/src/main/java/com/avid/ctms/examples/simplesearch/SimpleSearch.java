@@ -0,0 +1,117 @@
+package com.avid.ctms.examples.simplesearch;
+
+import com.avid.ctms.examples.tools.common.AuthorizationResponse;
+import com.avid.ctms.examples.tools.common.PlatformTools;
+import com.avid.ctms.examples.tools.common.search.FederatedSearch;
+import com.avid.ctms.examples.tools.common.search.SearchHit;
+import com.avid.ctms.examples.tools.common.search.SearchResultCache;
+import com.avid.ctms.examples.tools.common.search.SimpleSearchClient;
+import kong.unirest.HttpResponse;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Copyright 2021 by Avid Technology, Inc.
+ * Project: CTMS
+ */
+
+/**
+ * This example performs a simple search via "search:simple-search" and prints the hits to stdout as they arrive. The
+ * result pages are streamed, a bounded window of pages is requested ahead of the hits being printed.
+ * <p>
+ * If "*" is passed as realm, the search is sent to all services of the passed service types, which registered
+ * "search:simple-search", and the hits are merged in the order of their arrival (federated search). Multiple service
+ * types can be passed separated by commas.
+ * <p>
+ * Optionally, a count of repetitions can be passed, then the search is repeated, like a dashboard refreshing its
+ * results. The result pages of a search in a single realm are cached client side for {@link #CACHE_TTL}, so repeated
+ * searches are answered from the cache, the hit rate of the cache is logged at the end.
+ */
+public class SimpleSearch {
+    private static final Logger LOG = Logger.getLogger(SimpleSearch.class.getName());
+
+    private static final int PAGE_SIZE = 25;
+    private static final int PREFETCH_PAGES = 4;
+    private static final String ALL_REALMS = "*";
+    private static final Duration PER_SERVICE_TIMEOUT = Duration.ofSeconds(10);
+    private static final long FEDERATED_LIMIT = 1000;
+    private static final long CACHE_MAX_BYTES = 16L * 1024 * 1024;
+    private static final Duration CACHE_TTL = Duration.ofSeconds(60);
+
+    private SimpleSearch() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (6 != args.length && 7 != args.length) {
+            LOG.log(Level.INFO, "Usage: {0} <apidomain> <httpbasicauthstring> <servicetype> <serviceversion> <realm> <simplesearchexpression> [repetitions]", SimpleSearch.class.getSimpleName());
+        } else {
+            final String apiDomain = args[0];
+            final String httpBasicAuthString = args[1];
+            final String serviceType = args[2];
+            final String serviceVersion = args[3];
+            final String realm = args[4];
+            final String rawSearchExpression = args[5];
+            final int repetitions = 7 == args.length ? Integer.parseInt(args[6]) : 1;
+
+            final AuthorizationResponse authorizationResponse = PlatformTools.authorize(apiDomain, httpBasicAuthString);
+            if (authorizationResponse.getLoginResponse().map(HttpResponse::isSuccess).orElse(false)) {
+                try {
+                    final String registryServiceVersion = "0";
+                    if (ALL_REALMS.equals(realm)) {
+                        /// Query CTMS Registry for all services:
+                        final List<String> simpleSearchUriTemplates
+                                = FederatedSearch.findUriTemplates(apiDomain, Arrays.asList(serviceType.split(",")), registryServiceVersion);
+                        LOG.log(Level.INFO, "searching {0} services", simpleSearchUriTemplates.size());
+
+                        final FederatedSearch federatedSearch = new FederatedSearch(simpleSearchUriTemplates, PAGE_SIZE, PER_SERVICE_TIMEOUT, FEDERATED_LIMIT);
+                        for (int i = 0; i < repetitions; ++i) {
+                            final long then = System.currentTimeMillis();
+                            long hitCount = 0;
+                            /// Stream the merged hits of all services:
+                            try (final Stream<FederatedSearch.Result> results = federatedSearch.search(rawSearchExpression)) {
+                                for (final FederatedSearch.Result result : (Iterable<FederatedSearch.Result>) results::iterator) {
+                                    LOG.log(Level.INFO, "{0}. {1}", new Object[] {++hitCount, result});
+                                }
+                            }
+                            final long took = System.currentTimeMillis() - then;
+                            LOG.log(Level.INFO, "hits: {0}, elapsed: {1}", new Object[] {hitCount, took});
+                        }
+                    } else {
+                        /// Query CTMS Registry:
+                        final List<String> simpleSearchUriTemplates
+                                = SimpleSearchClient.findUriTemplates(apiDomain, serviceType, serviceVersion, realm, registryServiceVersion);
+
+                        final SearchResultCache cache = new SearchResultCache(CACHE_MAX_BYTES, CACHE_TTL);
+                        final SimpleSearchClient simpleSearch = new SimpleSearchClient(simpleSearchUriTemplates.get(0), PAGE_SIZE, PREFETCH_PAGES, cache, realm);
+                        for (int i = 0; i < repetitions; ++i) {
+                            final long then = System.currentTimeMillis();
+                            long hitCount = 0;
+                            /// Stream the hits page by page:
+                            try (final Stream<SearchHit> hits = simpleSearch.search(rawSearchExpression)) {
+                                for (final SearchHit hit : (Iterable<SearchHit>) hits::iterator) {
+                                    LOG.log(Level.INFO, "{0}. {1}", new Object[] {++hitCount, hit});
+                                }
+                            }
+                            final long took = System.currentTimeMillis() - then;
+                            LOG.log(Level.INFO, "hits: {0}, elapsed: {1}", new Object[] {hitCount, took});
+                        }
+                        LOG.log(Level.INFO, "search cache: {0}", cache);
+                    }
+                } catch (final Exception exception) {
+                    LOG.log(Level.SEVERE, "failure", exception);
+                } finally {
+                    PlatformTools.logout(apiDomain);
+                }
+            } else {
+                LOG.log(Level.INFO, "Authorization failed.");
+            }
+
+            LOG.log(Level.INFO, "End");
+        }
+    }
+}